@@ -0,0 +1,367 @@
+package com.example.myproject.actor;
+
+import com.example.myproject.model.TicketEngine;
+import com.example.myproject.model.TicketLease;
+import com.example.myproject.model.TicketPool;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Simulated customers kept as data instead of threads. Each shopper is one slot in a few primitive arrays
+// (tier, quota, tickets bought, next action time and a link for the timing wheel), 13 bytes in all, and its
+// number is its index. A handful of event-loop workers step the crowd against a live pool in real time.
+// Each worker owns a contiguous share of the shoppers and files every one of them in a timing wheel under
+// the tick of its next action, so a tick only touches the shoppers due in it however large the crowd is.
+// Shoppers are paced like TicketConsumers, between 50% and 150% of the retrieval rate between attempts.
+//
+// With a lease block size each worker leases blocks of ticket numbers from the pool and sells its shoppers
+// tickets straight from its own block, so no producers are needed and a sale takes no lock and writes
+// nothing shared; the pool's counters catch up once per block.
+public class ShopperCrowd {
+    private static final Logger LOGGER = Logger.getLogger(ShopperCrowd.class.getName());
+    // Held strongly so the level set in main is not lost if the logger is garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+
+    public static final byte REGULAR = 0;
+    public static final byte VIP = 1;
+    private static final int TICK_MILLIS = 10;
+    // Ten seconds of ticks; shoppers due further out stay filed until their turn of the wheel comes round
+    private static final int WHEEL_SIZE = 1024;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int NONE = -1;
+
+    private final TicketEngine ticketPool;
+    private final int retrievalRate;
+    private final int leaseBlockSize;
+    private final byte[] tier;
+    private final short[] quota;
+    private final short[] purchased;
+    // Milliseconds after start
+    private final int[] nextAction;
+    private final int[] nextInWheel;
+    private final EventLoop[] loops;
+    private final Thread[] threads;
+    private volatile long startedNanos;
+    private volatile boolean running = false;
+
+    // Arrivals are spread over the first retrieval interval; each shopper wants 1 to maxQuota tickets
+    public ShopperCrowd(TicketEngine ticketPool, int shoppers, int maxQuota, double vipShare, int retrievalRate,
+                        int workers, long seed) {
+        this(ticketPool, shoppers, maxQuota, vipShare, retrievalRate, workers, seed, 0);
+    }
+
+    public ShopperCrowd(TicketEngine ticketPool, int shoppers, int maxQuota, double vipShare, int retrievalRate,
+                        int workers, long seed, int leaseBlockSize) {
+        if (shoppers <= 0) {
+            throw new IllegalArgumentException("Shopper count must be positive");
+        }
+        if (workers <= 0 || workers > shoppers) {
+            throw new IllegalArgumentException("Worker count must be between 1 and the number of shoppers");
+        }
+        if (maxQuota <= 0 || maxQuota > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Ticket quota must be between 1 and " + Short.MAX_VALUE);
+        }
+        if (vipShare < 0 || vipShare > 1) {
+            throw new IllegalArgumentException("VIP share must be between 0 and 1");
+        }
+        if (retrievalRate < 2) {
+            throw new IllegalArgumentException("Customer retrieval rate must be at least 2 ms");
+        }
+        if (leaseBlockSize < 0) {
+            throw new IllegalArgumentException("Lease block size cannot be negative");
+        }
+        this.ticketPool = ticketPool;
+        this.retrievalRate = retrievalRate;
+        this.leaseBlockSize = leaseBlockSize;
+        this.tier = new byte[shoppers];
+        this.quota = new short[shoppers];
+        this.purchased = new short[shoppers];
+        this.nextAction = new int[shoppers];
+        this.nextInWheel = new int[shoppers];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < shoppers; i++) {
+            tier[i] = random.nextDouble() < vipShare ? VIP : REGULAR;
+            quota[i] = (short) (1 + random.nextInt(maxQuota));
+            nextAction[i] = random.nextInt(retrievalRate);
+        }
+        this.loops = new EventLoop[workers];
+        this.threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            loops[i] = new EventLoop((int) ((long) shoppers * i / workers), (int) ((long) shoppers * (i + 1) / workers),
+                    new Random(seed + i + 1));
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startedNanos = System.nanoTime();
+        for (int i = 0; i < loops.length; i++) {
+            threads[i] = new Thread(loops[i], "shopper-loop-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        LOGGER.info(String.format("%d shoppers stepped by %d event loops against %s%s",
+                tier.length, loops.length, ticketPool.getEventName(),
+                leaseBlockSize > 0 ? ", selling from leased blocks of " + leaseBlockSize : ""));
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    // Workers finish once the pool's run completes or every shopper in their share is done
+    public void awaitTermination() throws InterruptedException {
+        for (Thread thread : threads) {
+            if (thread != null) {
+                thread.join();
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        for (Thread thread : threads) {
+            if (thread == null || thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String customerId(int shopper) {
+        return (tier[shopper] == VIP ? "Priority-Consumer-" : "Consumer-") + (shopper + 1);
+    }
+
+    // Steps one share of the crowd; the arrays are only ever touched for that share by this loop's thread
+    private class EventLoop implements Runnable {
+        private final int from;
+        private final int to;
+        private final Random random;
+        private final int[] wheel = new int[WHEEL_SIZE];
+        private int active;
+        // Opened and used by this loop's thread only
+        private TicketLease lease;
+        // Written by the loop's thread only; volatile so progress can be reported while it runs
+        private volatile long attempts = 0;
+        private volatile long purchases = 0;
+        private volatile long maxLagMillis = 0;
+
+        EventLoop(int from, int to, Random random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            Arrays.fill(wheel, NONE);
+            for (int shopper = from; shopper < to; shopper++) {
+                file(shopper);
+            }
+            active = to - from;
+            long tick = 0;
+            if (leaseBlockSize > 0) {
+                lease = ticketPool.openLease(Thread.currentThread().getName(), leaseBlockSize);
+            }
+            try {
+                while (running && active > 0 && !ticketPool.isRunComplete()) {
+                    long elapsedMillis = (System.nanoTime() - startedNanos) / 1_000_000;
+                    long tickStart = tick * TICK_MILLIS;
+                    if (tickStart > elapsedMillis) {
+                        LockSupport.parkNanos((tickStart - elapsedMillis) * 1_000_000L);
+                        continue;
+                    }
+                    // How far behind the crowd's own schedule this loop is running
+                    if (elapsedMillis - tickStart > maxLagMillis) {
+                        maxLagMillis = elapsedMillis - tickStart;
+                    }
+                    step(tick++);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, Thread.currentThread().getName() + " failed", e);
+            } finally {
+                // Settles this loop's sales and hands its unsold numbers back
+                if (lease != null) {
+                    lease.close();
+                }
+            }
+        }
+
+        private void step(long tick) {
+            int bucket = (int) (tick & WHEEL_MASK);
+            int shopper = wheel[bucket];
+            wheel[bucket] = NONE;
+            while (shopper != NONE) {
+                int following = nextInWheel[shopper];
+                if (nextAction[shopper] / TICK_MILLIS > tick) {
+                    // Due on a later turn of the wheel
+                    nextInWheel[shopper] = wheel[bucket];
+                    wheel[bucket] = shopper;
+                } else {
+                    act(shopper, tick);
+                }
+                shopper = following;
+            }
+        }
+
+        private void act(int shopper, long tick) {
+            boolean vip = tier[shopper] == VIP;
+            if (lease != null) {
+                attempts++;
+                if (lease.sell(customerId(shopper), vip) != null) {
+                    purchases++;
+                    if (++purchased[shopper] >= quota[shopper]) {
+                        active--;
+                        return;
+                    }
+                } else if (vip) {
+                    // The VIP cap is reached or every number is issued
+                    active--;
+                    return;
+                } else {
+                    // Every number has been issued, so nobody in this share can buy any more
+                    active = 0;
+                    return;
+                }
+            } else if (ticketPool.getAvailableTickets() > 0) {
+                // A shopper facing an empty pool comes back later without building an id or taking the pool lock
+                attempts++;
+                if (ticketPool.purchaseTicket(customerId(shopper), vip) != null) {
+                    purchases++;
+                    if (++purchased[shopper] >= quota[shopper]) {
+                        active--;
+                        return;
+                    }
+                } else if (vip && ticketPool.getAvailableTickets() > 0) {
+                    // Tickets are there but the VIP cap is reached, so this VIP drops out
+                    active--;
+                    return;
+                }
+            }
+            long due = tick * TICK_MILLIS + TicketConsumer.nextRetrievalDelay(random, retrievalRate);
+            nextAction[shopper] = (int) Math.max(due, (tick + 1) * TICK_MILLIS);
+            file(shopper);
+        }
+
+        private void file(int shopper) {
+            int bucket = (nextAction[shopper] / TICK_MILLIS) & WHEEL_MASK;
+            nextInWheel[shopper] = wheel[bucket];
+            wheel[bucket] = shopper;
+        }
+    }
+
+    public int getShopperCount() {
+        return tier.length;
+    }
+
+    public long getAttempts() {
+        long attempts = 0;
+        for (EventLoop loop : loops) {
+            attempts += loop.attempts;
+        }
+        return attempts;
+    }
+
+    public long getPurchases() {
+        long purchases = 0;
+        for (EventLoop loop : loops) {
+            purchases += loop.purchases;
+        }
+        return purchases;
+    }
+
+    public long getMaxLagMillis() {
+        long lag = 0;
+        for (EventLoop loop : loops) {
+            lag = Math.max(lag, loop.maxLagMillis);
+        }
+        return lag;
+    }
+
+    // Counts read while the loops run may be slightly behind
+    public int getShoppersServed() {
+        int served = 0;
+        for (short count : purchased) {
+            if (count > 0) {
+                served++;
+            }
+        }
+        return served;
+    }
+
+    public int getShoppersSatisfied() {
+        int satisfied = 0;
+        for (int i = 0; i < purchased.length; i++) {
+            if (purchased[i] >= quota[i]) {
+                satisfied++;
+            }
+        }
+        return satisfied;
+    }
+
+    public long getFootprintBytes() {
+        return tier.length + 2L * quota.length + 2L * purchased.length + 4L * nextAction.length
+                + 4L * nextInWheel.length + (long) loops.length * WHEEL_SIZE * 4;
+    }
+
+    // Usage: ShopperCrowd <shoppers> [totalTickets] [workers] [retrievalRateMs] [maxQuota] [seed] [leaseBlockSize]
+    // Stocks a pool with every ticket up front and lets the crowd buy it out, printing progress each second.
+    // With a lease block size the pool is left empty and the workers sell from leased blocks instead.
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: ShopperCrowd <shoppers> [totalTickets] [workers] [retrievalRateMs] [maxQuota] [seed] [leaseBlockSize]");
+            return;
+        }
+        POOL_LOGGER.setLevel(Level.WARNING);
+        int shoppers = Integer.parseInt(args[0]);
+        int totalTickets = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int retrievalRate = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int maxQuota = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42L;
+        int leaseBlockSize = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+
+        TicketPool ticketPool = new TicketPool("ShopperCrowd", totalTickets, totalTickets);
+        if (leaseBlockSize == 0) {
+            TicketProducer stocker = new TicketProducer("Producer-1", ticketPool, 2);
+            while (ticketPool.produceTicket(stocker)) {
+                // Fill the pool up front so the run measures the crowd, not the producers
+            }
+        }
+
+        long heapBefore = usedHeap();
+        ShopperCrowd crowd = new ShopperCrowd(ticketPool, shoppers, maxQuota, 0.25, retrievalRate, workers, seed,
+                leaseBlockSize);
+        long heapAfter = usedHeap();
+        System.out.println(String.format("%,d shoppers in %.1f MB of arrays (%.1f bytes each), heap grew %.1f MB, max heap %.0f MB",
+                shoppers, crowd.getFootprintBytes() / 1e6, (double) crowd.getFootprintBytes() / shoppers,
+                (heapAfter - heapBefore) / 1e6, Runtime.getRuntime().maxMemory() / 1e6));
+
+        long started = System.nanoTime();
+        crowd.start();
+        while (!crowd.isFinished()) {
+            Thread.sleep(1000);
+            System.out.println(String.format("%5.1f s: sold %,d of %,d, %,d purchase attempts, event loops at most %d ms behind",
+                    (System.nanoTime() - started) / 1e9, ticketPool.getTicketsConsumed(), totalTickets,
+                    crowd.getAttempts(), crowd.getMaxLagMillis()));
+        }
+        crowd.awaitTermination();
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        System.out.println(String.format("Done in %.2f s: %,d sold (VIP %,d), %,d shoppers served, %,d got their full quota, "
+                        + "%,.0f sales/s, max loop lag %d ms",
+                elapsed, ticketPool.getTicketsConsumed(), ticketPool.getVIPTicketsConsumed(), crowd.getShoppersServed(),
+                crowd.getShoppersSatisfied(), ticketPool.getTicketsConsumed() / elapsed, crowd.getMaxLagMillis()));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
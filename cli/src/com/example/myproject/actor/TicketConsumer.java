@@ -1,5 +1,6 @@
 package com.example.myproject.actor;
 
+import com.example.myproject.model.TicketEngine;
 import com.example.myproject.model.TicketPool;
 import java.util.logging.Logger;
 import java.util.concurrent.locks.Lock;
@@ -10,15 +11,15 @@ public class TicketConsumer implements Runnable {
     private static final Logger LOGGER = Logger.getLogger(TicketConsumer.class.getName());
 
     protected final String consumerId;
-    protected final TicketPool ticketPool;
-    protected final int maxConsumptionRate;
+    protected final TicketEngine ticketPool;
+    protected volatile int maxConsumptionRate;
     protected volatile boolean isRunning = true;
     protected int ticketsConsumed = 0;
     protected final Lock consumerLock;
     private final boolean isPriority;
     protected final Random random = new Random();
 
-    public TicketConsumer(String consumerId, TicketPool ticketPool, int maxConsumptionRate, boolean isPriority) {
+    public TicketConsumer(String consumerId, TicketEngine ticketPool, int maxConsumptionRate, boolean isPriority) {
         this.consumerId = consumerId;
         this.ticketPool = ticketPool;
         this.maxConsumptionRate = maxConsumptionRate;
@@ -29,7 +30,7 @@ public class TicketConsumer implements Runnable {
     @Override
     public void run() {
         try {
-            while (isRunning && !ticketPool.isAllTicketsConsumed()) {
+            while (isRunning && !ticketPool.isRunComplete() && !ticketPool.isAllTicketsConsumed()) {
                 consumerLock.lock();
                 try {
                     boolean ticketPurchased = ticketPool.consumeTicket(this);
@@ -38,21 +39,30 @@ public class TicketConsumer implements Runnable {
                         LOGGER.info(String.format("%s bought Ticket ID: %d", consumerId, ticketsConsumed));
                     }
                 } catch (TicketPool.TicketException e) {
-                    LOGGER.warning(consumerId + " encountered an error: " + e.getMessage());
+                    // A stopped consumer is interrupted out of its wait; that is not an error
+                    if (isRunning) {
+                        LOGGER.warning(consumerId + " encountered an error: " + e.getMessage());
+                    }
                 } finally {
                     consumerLock.unlock();
                 }
 
-                // Randomize sleep time between 50% and 150% of original consumption rate
-                int actualConsumptionRate = random.nextInt(maxConsumptionRate / 2) + (maxConsumptionRate / 2);
-                Thread.sleep(actualConsumptionRate);
+                Thread.sleep(nextRetrievalDelay(random, maxConsumptionRate));
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            LOGGER.warning(consumerId + " interrupted: " + e.getMessage());
+            if (isRunning) {
+                LOGGER.warning(consumerId + " interrupted: " + e.getMessage());
+            }
         }
     }
 
+    // Randomize sleep time between 50% and 150% of original consumption rate; a 1 ms rate is too short to vary
+    public static int nextRetrievalDelay(Random random, int retrievalRate) {
+        int half = retrievalRate / 2;
+        return half == 0 ? retrievalRate : random.nextInt(half) + half;
+    }
+
     public void stop() {
         isRunning = false;
     }
@@ -69,11 +79,23 @@ public class TicketConsumer implements Runnable {
         return isPriority;
     }
 
+    public int getRetrievalRate() {
+        return maxConsumptionRate;
+    }
+
+    // Picked up on the next pacing tick
+    public void setRetrievalRate(int retrievalRate) {
+        if (retrievalRate <= 0) {
+            throw new IllegalArgumentException("Customer retrieval rate must be positive");
+        }
+        this.maxConsumptionRate = retrievalRate;
+    }
+
     public static class VIPTicketConsumer extends TicketConsumer {
         private static final Logger LOGGER = Logger.getLogger(VIPTicketConsumer.class.getName());
         private final int maxTickets;
 
-        public VIPTicketConsumer(String consumerId, TicketPool ticketPool, int consumptionRate, int maxTickets) {
+        public VIPTicketConsumer(String consumerId, TicketEngine ticketPool, int consumptionRate, int maxTickets) {
             super(consumerId, ticketPool, consumptionRate, true);
             this.maxTickets = maxTickets;
         }
@@ -81,7 +103,7 @@ public class TicketConsumer implements Runnable {
         @Override
         public void run() {
             try {
-                while (isRunning && !ticketPool.isAllTicketsConsumed() && ticketsConsumed < maxTickets) {
+                while (isRunning && !ticketPool.isRunComplete() && !ticketPool.isAllTicketsConsumed() && ticketsConsumed < maxTickets) {
                     consumerLock.lock();
                     try {
                         boolean ticketPurchased = ticketPool.consumeVIPTicket(this);
@@ -90,18 +112,20 @@ public class TicketConsumer implements Runnable {
                             LOGGER.info(String.format("Priority %s bought Ticket ID: %d, Remaining VIP tickets: %d", consumerId, ticketsConsumed, (maxTickets - ticketsConsumed)));
                         }
                     } catch (TicketPool.TicketException e) {
-                        LOGGER.warning("VIP " + consumerId + " encountered an error: " + e.getMessage());
+                        if (isRunning) {
+                            LOGGER.warning("VIP " + consumerId + " encountered an error: " + e.getMessage());
+                        }
                     } finally {
                         consumerLock.unlock();
                     }
 
-                    // Randomize sleep time between 50% and 150% of original consumption rate
-                    int actualConsumptionRate = random.nextInt(maxConsumptionRate / 2) + (maxConsumptionRate / 2);
-                    Thread.sleep(actualConsumptionRate);
+                    Thread.sleep(nextRetrievalDelay(random, maxConsumptionRate));
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                LOGGER.warning("VIP " + consumerId + " interrupted: " + e.getMessage());
+                if (isRunning) {
+                    LOGGER.warning("VIP " + consumerId + " interrupted: " + e.getMessage());
+                }
             }
         }
 
@@ -1,5 +1,7 @@
 package com.example.myproject.actor;
 
+import com.example.myproject.model.TicketEngine;
+import com.example.myproject.model.TicketLease;
 import com.example.myproject.model.TicketPool;
 import java.util.logging.Logger;
 import java.util.concurrent.locks.Lock;
@@ -9,23 +11,38 @@ import java.util.Random;
 public class TicketProducer implements Runnable {
     private static final Logger LOGGER = Logger.getLogger(TicketProducer.class.getName());
     private final String producerId;
-    private final TicketPool ticketPool;
-    private final int maxReleaseRate;
+    private final TicketEngine ticketPool;
+    private volatile int maxReleaseRate;
     private final Random random = new Random();
     private volatile boolean isRunning = true;
     private int ticketsProduced = 0;
     private final Lock producerLock = new ReentrantLock();
+    private final int leaseBlockSize;
+    private TicketLease lease;
 
-    public TicketProducer(String producerId, TicketPool ticketPool, int maxReleaseRate) {
+    public TicketProducer(String producerId, TicketEngine ticketPool, int maxReleaseRate) {
+        this(producerId, ticketPool, maxReleaseRate, 0);
+    }
+
+    // A positive lease block size numbers tickets from a per-producer block instead of the shared counter
+    public TicketProducer(String producerId, TicketEngine ticketPool, int maxReleaseRate, int leaseBlockSize) {
+        if (leaseBlockSize < 0) {
+            throw new IllegalArgumentException("Lease block size cannot be negative");
+        }
         this.producerId = producerId;
         this.ticketPool = ticketPool;
         this.maxReleaseRate = maxReleaseRate;
+        this.leaseBlockSize = leaseBlockSize;
     }
 
     @Override
     public void run() {
+        if (leaseBlockSize > 0) {
+            lease = ticketPool.openLease(producerId, leaseBlockSize);
+        }
         try {
-            while (isRunning && !ticketPool.isAllTicketsProduced()) {
+            // A pool fed by an inventory source can run dry while this producer still holds leased numbers
+            while (isRunning && !ticketPool.isRunComplete() && (!ticketPool.isAllTicketsProduced() || (lease != null && lease.getRemaining() > 0))) {
                 producerLock.lock();
                 try {
                     if (ticketPool.produceTicket(this)) {
@@ -33,25 +50,59 @@ public class TicketProducer implements Runnable {
                         LOGGER.info(producerId + " produced a ticket. Total produced: " + ticketsProduced);
                     }
                 } catch (TicketPool.TicketException e) {
-                    LOGGER.warning(producerId + " encountered an error: " + e.getMessage());
+                    // A stopped producer is interrupted out of its wait; that is not an error
+                    if (isRunning) {
+                        LOGGER.warning(producerId + " encountered an error: " + e.getMessage());
+                    }
                 } finally {
                     producerLock.unlock();
                 }
 
-                // Randomize sleep time between 50% and 150% of original release rate
-                int actualReleaseRate = random.nextInt(maxReleaseRate / 2) + (maxReleaseRate / 2);
-                Thread.sleep(actualReleaseRate);
+                Thread.sleep(nextReleaseDelay(random, maxReleaseRate));
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            LOGGER.warning(producerId + " interrupted: " + e.getMessage());
+            if (isRunning) {
+                LOGGER.warning(producerId + " interrupted: " + e.getMessage());
+            }
+        } finally {
+            // Unused numbers go back to the pool so a retired producer cannot strand tickets
+            if (lease != null) {
+                lease.close();
+            }
         }
     }
+    // Randomize sleep time between 50% and 150% of original release rate; a 1 ms rate is too short to vary
+    public static int nextReleaseDelay(Random random, int releaseRate) {
+        int half = releaseRate / 2;
+        return half == 0 ? releaseRate : random.nextInt(half) + half;
+    }
+
     public String getProducerId() {
 
         return producerId;
     }
 
+    public int getReleaseRate() {
+        return maxReleaseRate;
+    }
+
+    // Picked up on the next pacing tick
+    public void setReleaseRate(int releaseRate) {
+        if (releaseRate <= 0) {
+            throw new IllegalArgumentException("Ticket release rate must be positive");
+        }
+        this.maxReleaseRate = releaseRate;
+    }
+
+    public TicketLease getLease() {
+        return lease;
+    }
+
+    public int getLeaseBlockSize() {
+        return leaseBlockSize;
+    }
+
     public int getTicketsProduced() {
         return ticketsProduced;
     }
@@ -0,0 +1,414 @@
+package com.example.myproject.admission;
+
+import com.example.myproject.model.Ticket;
+import com.example.myproject.model.TicketPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// Queue in front of a TicketPool for on-sale spikes. Every arrival gets a token with a queue number at
+// once, and an admitter lets numbers through a few at a time, so the pool only ever sees a bounded
+// number of active buyers.
+//
+// Pacing: the admission rate follows the pool's measured sales rate, starting from a configured rate
+// until the first sales. Nobody is admitted beyond the number of tickets still unsold. An admitted
+// customer must start buying within the admission TTL or loses the place, and an active buyer that goes
+// quiet for a TTL is dropped.
+//
+// Sold-out cutoff: once the tickets left cannot cover everyone ahead of a customer, that customer is
+// told the event is sold out straight away. A sold-out answer is final, so the cutoff only ever moves
+// down, and nobody behind it is admitted.
+//
+// With RANDOM ordering, arrivals before open() are shuffled as they join (an inside-out Fisher-Yates
+// step, O(1) per arrival), so everyone in the pre-sale window has the same chance of being first.
+// Arrivals after open() queue in FIFO order behind them.
+public class WaitingRoom implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(WaitingRoom.class.getName());
+    private static final long TICK_MILLIS = 50;
+    // Admit a little faster than the pool sells so it never idles waiting for buyers
+    private static final double RATE_HEADROOM = 1.5;
+    private static final double RATE_SMOOTHING = 0.3;
+
+    public enum Ordering {
+        FIFO,
+        RANDOM
+    }
+
+    public enum Status {
+        WAITING,
+        ADMITTED,
+        DONE,
+        EXPIRED,
+        SOLD_OUT
+    }
+
+    public static class Token {
+        private static final int WAITING = 0;
+        private static final int ACTIVE = 1;
+        private static final int DONE = 2;
+        private static final int EXPIRED = 3;
+
+        private final long tokenId;
+        private final String customerId;
+        // Only changes while RANDOM arrivals are still being shuffled before open()
+        private volatile long queueNumber;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile long lastActiveNanos;
+
+        private Token(long tokenId, String customerId, long queueNumber) {
+            this.tokenId = tokenId;
+            this.customerId = customerId;
+            this.queueNumber = queueNumber;
+        }
+
+        public long getTokenId() {
+            return tokenId;
+        }
+
+        public String getCustomerId() {
+            return customerId;
+        }
+
+        public long getQueueNumber() {
+            return queueNumber;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Token{id=%d, customer='%s', number=%d}", tokenId, customerId, queueNumber);
+        }
+    }
+
+    // Queue numbers [from, to] admitted together. Admitted customers claim their place by entering before
+    // the deadline; claimed < 0 means the batch has expired.
+    private static class AdmissionBatch {
+        private final long from;
+        private final long to;
+        private final long deadlineNanos;
+        private final AtomicInteger claimed = new AtomicInteger(0);
+
+        AdmissionBatch(long from, long to, long deadlineNanos) {
+            this.from = from;
+            this.to = to;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        boolean claim() {
+            while (true) {
+                int current = claimed.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (claimed.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private final TicketPool ticketPool;
+    private final Ordering ordering;
+    private final int maxActiveBuyers;
+    private final int initialAdmissionsPerSecond;
+    private final long admissionTtlNanos;
+    private final Random random = new Random();
+
+    private final AtomicLong nextTokenId = new AtomicLong(0);
+    private final AtomicLong lastQueueNumber = new AtomicLong(0);
+    private final List<Token> lottery = new ArrayList<>();
+    private volatile boolean open = false;
+
+    private volatile long admittedThrough = 0;
+    private volatile long cutoff = Long.MAX_VALUE;
+    private final Deque<AdmissionBatch> batches = new ArrayDeque<>();
+    private final AtomicInteger activeBuyers = new AtomicInteger(0);
+    // Admitted buyers that may still take a ticket. A buyer leaves this count before buying and comes
+    // back if the purchase fails, so reading it after the pool's sales count never undercounts inventory.
+    private final AtomicInteger unservedBuyers = new AtomicInteger(0);
+    private final AtomicInteger peakActiveBuyers = new AtomicInteger(0);
+    private final Map<Long, Token> activeTokens = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService admitter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "waiting-room-admitter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private double admissionCredit = 0;
+    private double salesPerSecond = 0;
+    private int lastTicketsSold = 0;
+    private long lastTickNanos;
+
+    public WaitingRoom(TicketPool ticketPool, Ordering ordering, int maxActiveBuyers, int initialAdmissionsPerSecond,
+                       long admissionTtlMillis) {
+        if (maxActiveBuyers <= 0 || initialAdmissionsPerSecond <= 0 || admissionTtlMillis <= 0) {
+            throw new IllegalArgumentException("Active buyers, admission rate and admission TTL must be positive");
+        }
+        this.ticketPool = ticketPool;
+        this.ordering = ordering;
+        this.maxActiveBuyers = maxActiveBuyers;
+        this.initialAdmissionsPerSecond = initialAdmissionsPerSecond;
+        this.admissionTtlNanos = TimeUnit.MILLISECONDS.toNanos(admissionTtlMillis);
+    }
+
+    public Token join(String customerId) {
+        long tokenId = nextTokenId.incrementAndGet();
+        if (ordering == Ordering.RANDOM && !open) {
+            synchronized (lottery) {
+                if (!open) {
+                    // Swap the newcomer with a uniformly chosen earlier arrival
+                    int size = lottery.size();
+                    int swapWith = random.nextInt(size + 1);
+                    Token token = new Token(tokenId, customerId, swapWith + 1);
+                    if (swapWith == size) {
+                        lottery.add(token);
+                    } else {
+                        Token displaced = lottery.get(swapWith);
+                        displaced.queueNumber = size + 1;
+                        lottery.add(displaced);
+                        lottery.set(swapWith, token);
+                    }
+                    lastQueueNumber.incrementAndGet();
+                    return token;
+                }
+            }
+        }
+        return new Token(tokenId, customerId, lastQueueNumber.incrementAndGet());
+    }
+
+    // Starts admitting; with RANDOM ordering this also fixes the order of everyone who joined so far
+    public void open() {
+        synchronized (lottery) {
+            if (open) {
+                return;
+            }
+            open = true;
+            lottery.clear();
+        }
+        lastTickNanos = System.nanoTime();
+        lastTicketsSold = ticketPool.getTicketsConsumed();
+        admitter.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        LOGGER.info(String.format("Waiting room for %s opened with %d waiting, %s order, at most %d active buyers",
+                ticketPool.getEventName(), lastQueueNumber.get(), ordering, maxActiveBuyers));
+    }
+
+    // Cheap enough to poll: a few volatile reads, plus a short scan of live batches for admitted tokens
+    public Status getStatus(Token token) {
+        switch (token.state.get()) {
+            case Token.ACTIVE:
+                return Status.ADMITTED;
+            case Token.DONE:
+                return Status.DONE;
+            case Token.EXPIRED:
+                return Status.EXPIRED;
+            default:
+                break;
+        }
+        long number = token.queueNumber;
+        if (number <= admittedThrough) {
+            AdmissionBatch batch = findBatch(number);
+            return batch != null && batch.claimed.get() >= 0 ? Status.ADMITTED : Status.EXPIRED;
+        }
+        if (number > cutoff || ticketPool.isRunComplete()) {
+            return Status.SOLD_OUT;
+        }
+        return Status.WAITING;
+    }
+
+    // Customers still waiting ahead of this token; 0 once it is admitted
+    public long getPeopleAhead(Token token) {
+        return Math.max(0, token.queueNumber - admittedThrough - 1);
+    }
+
+    // Buys through the room. An empty list means nothing was bought: check getStatus() for whether to retry
+    // (still ADMITTED: tickets are not released yet) or give up.
+    public List<Ticket> purchase(Token token, int count, boolean vip) {
+        if (!enter(token)) {
+            return Collections.emptyList();
+        }
+        unservedBuyers.decrementAndGet();
+        List<Ticket> tickets = ticketPool.purchaseTickets(token.customerId, count, vip);
+        if (!tickets.isEmpty()) {
+            finish(token, Token.DONE, false);
+            return tickets;
+        }
+        unservedBuyers.incrementAndGet();
+        if (ticketPool.isAllTicketsConsumed() || ticketPool.isRunComplete()) {
+            finish(token, Token.DONE);
+        }
+        return tickets;
+    }
+
+    // Gives up the place in the queue or the active buyer slot
+    public void leave(Token token) {
+        // An admitted customer who never entered hands the slot back now instead of at batch expiry
+        if (token.state.get() == Token.WAITING && token.queueNumber <= admittedThrough) {
+            enter(token);
+        }
+        finish(token, Token.DONE);
+    }
+
+    private boolean enter(Token token) {
+        if (token.state.get() == Token.ACTIVE) {
+            token.lastActiveNanos = System.nanoTime();
+            return true;
+        }
+        if (token.state.get() != Token.WAITING || token.queueNumber > admittedThrough) {
+            return false;
+        }
+        AdmissionBatch batch = findBatch(token.queueNumber);
+        if (batch == null || !batch.claim()) {
+            token.state.compareAndSet(Token.WAITING, Token.EXPIRED);
+            return false;
+        }
+        token.lastActiveNanos = System.nanoTime();
+        if (!token.state.compareAndSet(Token.WAITING, Token.ACTIVE)) {
+            // Entered twice at once; the other call took the slot this claim was counted against
+            activeBuyers.decrementAndGet();
+            unservedBuyers.decrementAndGet();
+            return token.state.get() == Token.ACTIVE;
+        }
+        activeTokens.put(token.tokenId, token);
+        return true;
+    }
+
+    private void finish(Token token, int finalState) {
+        finish(token, finalState, true);
+    }
+
+    private void finish(Token token, int finalState, boolean unserved) {
+        if (token.state.compareAndSet(Token.ACTIVE, finalState)) {
+            activeTokens.remove(token.tokenId);
+            activeBuyers.decrementAndGet();
+            if (unserved) {
+                unservedBuyers.decrementAndGet();
+            }
+        } else {
+            token.state.compareAndSet(Token.WAITING, finalState);
+        }
+    }
+
+    private AdmissionBatch findBatch(long number) {
+        synchronized (batches) {
+            for (AdmissionBatch batch : batches) {
+                if (number >= batch.from && number <= batch.to) {
+                    return batch;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            expire(now);
+
+            int remaining = ticketPool.getTotalTickets() - ticketPool.getTicketsConsumed() - ticketPool.getTicketsHeld();
+            if (ticketPool.isRunComplete() || remaining <= 0) {
+                cutoff = admittedThrough;
+                return;
+            }
+
+            // Every admitted buyer could still take a ticket, so only the rest are open to the queue
+            int uncommitted = Math.max(0, remaining - unservedBuyers.get());
+            cutoff = Math.min(cutoff, admittedThrough + uncommitted);
+
+            int sold = ticketPool.getTicketsConsumed();
+            double elapsed = (now - lastTickNanos) / 1e9;
+            if (elapsed > 0) {
+                double measured = (sold - lastTicketsSold) / elapsed;
+                salesPerSecond = salesPerSecond == 0 ? measured
+                        : salesPerSecond + RATE_SMOOTHING * (measured - salesPerSecond);
+            }
+            lastTicketsSold = sold;
+            lastTickNanos = now;
+
+            double rate = sold == 0 ? initialAdmissionsPerSecond
+                    : Math.max(1, salesPerSecond * RATE_HEADROOM);
+            admissionCredit = Math.min(admissionCredit + rate * elapsed, Math.max(1, rate));
+
+            long waiting = lastQueueNumber.get() - admittedThrough;
+            long admit = Math.min(Math.min((long) admissionCredit, maxActiveBuyers - activeBuyers.get()),
+                    Math.min(cutoff - admittedThrough, waiting));
+            if (admit <= 0) {
+                return;
+            }
+            admissionCredit -= admit;
+            AdmissionBatch batch = new AdmissionBatch(admittedThrough + 1, admittedThrough + admit,
+                    now + admissionTtlNanos);
+            synchronized (batches) {
+                batches.addLast(batch);
+            }
+            unservedBuyers.addAndGet((int) admit);
+            peakActiveBuyers.accumulateAndGet(activeBuyers.addAndGet((int) admit), Math::max);
+            admittedThrough = batch.to;
+        } catch (RuntimeException e) {
+            LOGGER.warning("Waiting room admitter error: " + e.getMessage());
+        }
+    }
+
+    // Frees the slots of admitted customers who never entered and of buyers who went quiet
+    private void expire(long now) {
+        synchronized (batches) {
+            while (!batches.isEmpty() && batches.peekFirst().deadlineNanos <= now) {
+                AdmissionBatch batch = batches.pollFirst();
+                int unclaimed = (int) (batch.to - batch.from + 1) - batch.claimed.getAndSet(-1);
+                activeBuyers.addAndGet(-unclaimed);
+                unservedBuyers.addAndGet(-unclaimed);
+            }
+        }
+        for (Token token : activeTokens.values()) {
+            if (now - token.lastActiveNanos > admissionTtlNanos) {
+                finish(token, Token.EXPIRED);
+            }
+        }
+    }
+
+    public long getWaitingCount() {
+        return Math.max(0, lastQueueNumber.get() - admittedThrough);
+    }
+
+    public long getAdmittedCount() {
+        return admittedThrough;
+    }
+
+    public int getActiveBuyers() {
+        return activeBuyers.get();
+    }
+
+    public int getPeakActiveBuyers() {
+        return peakActiveBuyers.get();
+    }
+
+    public int getMaxActiveBuyers() {
+        return maxActiveBuyers;
+    }
+
+    public TicketPool getTicketPool() {
+        return ticketPool;
+    }
+
+    @Override
+    public void close() {
+        admitter.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WaitingRoom{event='%s', waiting=%d, admitted=%d, active=%d, peakActive=%d}",
+                ticketPool.getEventName(), getWaitingCount(), admittedThrough, activeBuyers.get(),
+                peakActiveBuyers.get());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.myproject.admission;
+
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.config.Configuration;
+import com.example.myproject.core.RunController;
+import com.example.myproject.metrics.LatencyHistogram;
+import com.example.myproject.model.TicketPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// On-sale spike: every customer joins the waiting room before it opens, then polls and buys one ticket
+// when admitted. Reports how many buyers the pool saw at once and how quickly customers got an answer.
+public class WaitingRoomDemo {
+    // Held strongly so the levels set in main are not lost if the loggers are garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    private static final Logger PRODUCER_LOGGER = Logger.getLogger(TicketProducer.class.getName());
+    private static final long POLL_MILLIS = 25;
+
+    // Usage: WaitingRoomDemo [customers] [totalTickets] [maxActiveBuyers] [fifo|random] [producers]
+    public static void main(String[] args) throws Exception {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int totalTickets = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int maxActiveBuyers = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        WaitingRoom.Ordering ordering = args.length > 3 && args[3].equalsIgnoreCase("fifo")
+                ? WaitingRoom.Ordering.FIFO : WaitingRoom.Ordering.RANDOM;
+        int producers = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        POOL_LOGGER.setLevel(Level.WARNING);
+        PRODUCER_LOGGER.setLevel(Level.WARNING);
+
+        Configuration config = new Configuration("WaitingRoomDemo", totalTickets, 2, 2, Math.min(totalTickets, 1000));
+        TicketPool ticketPool = new TicketPool(config.getEventName(), config.getMaxTicketCapacity(), totalTickets);
+        ExecutorService actorExecutor = Executors.newCachedThreadPool();
+        RunController runController = new RunController(ticketPool, actorExecutor, config);
+        runController.start();
+
+        AtomicInteger inPool = new AtomicInteger();
+        AtomicInteger peakInPool = new AtomicInteger();
+        AtomicInteger bought = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger expired = new AtomicInteger();
+        LatencyHistogram buyerWait = new LatencyHistogram();
+        LatencyHistogram soldOutWait = new LatencyHistogram();
+
+        try (WaitingRoom waitingRoom = new WaitingRoom(ticketPool, ordering, maxActiveBuyers, maxActiveBuyers, 5_000);
+             ExecutorService shoppers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<WaitingRoom.Token> tokens = new ArrayList<>(customers);
+            for (int i = 1; i <= customers; i++) {
+                tokens.add(waitingRoom.join("Customer-" + i));
+            }
+            long opened = System.nanoTime();
+            runController.setProducerCount(producers);
+            waitingRoom.open();
+
+            for (WaitingRoom.Token token : tokens) {
+                shoppers.submit(() -> {
+                    try {
+                        // Spread the first polls so the room is not hit by every customer in the same instant
+                        Thread.sleep(ThreadLocalRandom.current().nextLong(POLL_MILLIS));
+                        while (true) {
+                            WaitingRoom.Status status = waitingRoom.getStatus(token);
+                            if (status == WaitingRoom.Status.ADMITTED) {
+                                peakInPool.accumulateAndGet(inPool.incrementAndGet(), Math::max);
+                                boolean success;
+                                try {
+                                    success = !waitingRoom.purchase(token, 1, false).isEmpty();
+                                } finally {
+                                    inPool.decrementAndGet();
+                                }
+                                if (success) {
+                                    bought.incrementAndGet();
+                                    buyerWait.record(System.nanoTime() - opened);
+                                    return;
+                                }
+                            } else if (status == WaitingRoom.Status.SOLD_OUT || status == WaitingRoom.Status.DONE) {
+                                soldOut.incrementAndGet();
+                                soldOutWait.record(System.nanoTime() - opened);
+                                return;
+                            } else if (status == WaitingRoom.Status.EXPIRED) {
+                                expired.incrementAndGet();
+                                return;
+                            }
+                            Thread.sleep(POLL_MILLIS);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            shoppers.shutdown();
+            shoppers.awaitTermination(10, TimeUnit.MINUTES);
+            double elapsed = (System.nanoTime() - opened) / 1e9;
+
+            System.out.println(String.format("%d customers, %d tickets, %s order: bought %d, sold out %d, expired %d in %.1f s",
+                    customers, totalTickets, ordering, bought.get(), soldOut.get(), expired.get(), elapsed));
+            System.out.println(String.format("Active buyers: peak %d (limit %d), peak concurrent purchase calls %d",
+                    waitingRoom.getPeakActiveBuyers(), maxActiveBuyers, peakInPool.get()));
+            System.out.println("Open to ticket:   " + buyerWait.summary());
+            System.out.println("Open to sold out: " + soldOutWait.summary());
+        } finally {
+            runController.stopAll();
+            actorExecutor.shutdownNow();
+        }
+    }
+}
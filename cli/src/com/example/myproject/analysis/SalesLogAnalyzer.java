@@ -0,0 +1,722 @@
+package com.example.myproject.analysis;
+
+import com.example.myproject.ledger.SalesLedger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Offline breakdown of <event>_ticketing.log files. Each file is memory-mapped in chunks that start on a
+// record boundary and the chunks are parsed in parallel on a fork/join pool, so the run is bound by how
+// fast the pages come off disk rather than by one parsing thread.
+//
+// A record is a header line "<date> <time> <am|pm> <class> <method>" followed by one "INFO: <message>"
+// line, as written by the formatter in TicketingSystem.setupLogger; the coloured console format of
+// TicketPool is accepted too. Releases come from addTicket records and sales from buyTicket records.
+// Customers logged as Priority-<n> are counted as VIPs.
+//
+// <event>_sales.ledger files written by SalesLedger are recognised by their header and analysed the same
+// way. Their records are binary, so chunk boundaries come from a quick pass that only reads each record's
+// field lengths; sales carry their own VIP flag and time, but releases and runs are not recorded in them.
+public class SalesLogAnalyzer {
+    private static final int CHUNK_BYTES = 64 * 1024 * 1024;
+    private static final int BOUNDARY_PROBE_BYTES = 64 * 1024;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final byte[] INFO = bytes("INFO: ");
+    private static final byte[] ADD_TICKET = bytes("addTicket");
+    private static final byte[] BUY_TICKET = bytes("buyTicket");
+    private static final byte[] VENDOR = bytes("Vendor ");
+    private static final byte[] CUSTOMER = bytes("Customer ");
+    private static final byte[] TICKET_ID = bytes(" Ticket ID: ");
+    private static final byte[] RUN_START = bytes("Starting ticketing system for event: ");
+    private static final byte[] PRIORITY = bytes("Priority");
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun",
+            "jul", "aug", "sep", "oct", "nov", "dec"};
+
+    private final ForkJoinPool pool;
+
+    public SalesLogAnalyzer(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public SalesReport analyze(List<Path> files) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+            chunks.addAll(isLedger(file) ? splitLedger(file) : split(file));
+        }
+        long started = System.nanoTime();
+        ChunkStats stats = chunks.isEmpty() ? new ChunkStats() : pool.invoke(new ParseTask(chunks, 0, chunks.size()));
+        return new SalesReport(stats, files.size(), chunks.size(), pool.getParallelism(), bytes,
+                System.nanoTime() - started);
+    }
+
+    // Nominal split points are moved forward to the next header line so no record straddles two chunks
+    private static List<Chunk> split(Path file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(size, start + CHUNK_BYTES);
+                if (end < size) {
+                    end = nextRecordStart(channel, end, size);
+                }
+                chunks.add(new Chunk(file, start, end, false));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    private static boolean isLedger(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SalesLedger.HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // A header split over several reads
+            }
+            if (header.hasRemaining() || header.getInt(0) != SalesLedger.MAGIC) {
+                return false;
+            }
+            if (header.getInt(4) != SalesLedger.VERSION) {
+                throw new IOException(file + " is a sales ledger of an unsupported version");
+            }
+            return true;
+        }
+    }
+
+    // Each chunk is a window of whole records; a record cut short at the end of the file is left out
+    private static List<Chunk> splitLedger(Path file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = SalesLedger.HEADER_BYTES;
+            while (start < size) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(CHUNK_BYTES, size - start));
+                int end = 0;
+                int next;
+                while ((next = ledgerRecordEnd(window, end, window.limit())) > 0) {
+                    end = next;
+                }
+                if (end == 0) {
+                    break;
+                }
+                chunks.add(new Chunk(file, start, start + end, true));
+                start += end;
+            }
+        }
+        return chunks;
+    }
+
+    // Offset just past the record starting at offset, or -1 if it does not end before limit
+    private static int ledgerRecordEnd(ByteBuffer buffer, int offset, int limit) {
+        // vip:u8 | soldMillis:int64 | ticketId:str16 | customer:str16
+        if (limit - offset < 11) {
+            return -1;
+        }
+        int customerAt = offset + 11 + (buffer.getShort(offset + 9) & 0xFFFF);
+        if (limit - customerAt < 2) {
+            return -1;
+        }
+        int end = customerAt + 2 + (buffer.getShort(customerAt) & 0xFFFF);
+        return end <= limit ? end : -1;
+    }
+
+    private static long nextRecordStart(FileChannel channel, long from, long size) throws IOException {
+        long position = from;
+        boolean lineStart = false;
+        while (position < size) {
+            int length = (int) Math.min(BOUNDARY_PROBE_BYTES, size - position);
+            MappedByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            // Skip the rest of the current line, then any message lines, to land on a header
+            int index = 0;
+            while (index < length) {
+                if (lineStart) {
+                    if (length - index < INFO.length && position + length < size) {
+                        // Too close to the end of the probe to classify; probe again from this line
+                        break;
+                    }
+                    if (!startsWith(probe, index, length, INFO)) {
+                        return position + index;
+                    }
+                    lineStart = false;
+                }
+                if (probe.get(index++) == '\n') {
+                    lineStart = true;
+                }
+            }
+            position += index;
+        }
+        return size;
+    }
+
+    private static class ParseTask extends RecursiveTask<ChunkStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Chunk> chunks;
+        private final int from;
+        private final int to;
+
+        ParseTask(List<Chunk> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ChunkStats compute() {
+            if (to - from == 1) {
+                try {
+                    Chunk chunk = chunks.get(from);
+                    return chunk.ledger ? parseLedger(chunk) : parse(chunk);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read " + chunks.get(from).file, e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            ParseTask left = new ParseTask(chunks, from, middle);
+            left.fork();
+            ChunkStats right = new ParseTask(chunks, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private static ChunkStats parse(Chunk chunk) throws IOException {
+        ChunkStats stats = new ChunkStats();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        }
+
+        int limit = buffer.limit();
+        int lineStart = 0;
+        long second = Long.MIN_VALUE;
+        int method = 0;
+        TimeParser timeParser = new TimeParser();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+            if (startsWith(buffer, lineStart, end, INFO)) {
+                if (second != Long.MIN_VALUE) {
+                    parseMessage(buffer, lineStart + INFO.length, end, method, second, stats);
+                }
+            } else {
+                second = timeParser.parse(buffer, lineStart, end);
+                method = methodOf(buffer, lineStart, end);
+                if (second != Long.MIN_VALUE) {
+                    stats.firstSecond = Math.min(stats.firstSecond, second);
+                    stats.lastSecond = Math.max(stats.lastSecond, second);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return stats;
+    }
+
+    private static ChunkStats parseLedger(Chunk chunk) throws IOException {
+        ChunkStats stats = new ChunkStats();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        }
+
+        // Sale times are converted to local wall-clock seconds to line up with the timestamps of the logs
+        ZoneRules zone = ZoneId.systemDefault().getRules();
+        long offsetValidUntil = Long.MIN_VALUE;
+        long offsetSeconds = 0;
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            boolean vip = buffer.get(position) != 0;
+            long soldMillis = buffer.getLong(position + 1);
+            int ticketLength = buffer.getShort(position + 9) & 0xFFFF;
+            int customerAt = position + 11 + ticketLength;
+            int customerLength = buffer.getShort(customerAt) & 0xFFFF;
+            String customer = text(buffer, customerAt + 2, customerAt + 2 + customerLength);
+            position = customerAt + 2 + customerLength;
+
+            long epochSecond = Math.floorDiv(soldMillis, 1000L);
+            if (epochSecond < offsetValidUntil - 3600 || epochSecond >= offsetValidUntil) {
+                // The offset only changes on a transition, so it is looked up again once an hour of sales
+                offsetSeconds = zone.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+                offsetValidUntil = epochSecond - Math.floorMod(epochSecond, 3600L) + 3600;
+            }
+            long second = epochSecond + offsetSeconds;
+
+            stats.sold++;
+            if (vip) {
+                stats.vipSold++;
+            }
+            stats.firstSecond = Math.min(stats.firstSecond, second);
+            stats.lastSecond = Math.max(stats.lastSecond, second);
+            stats.lastSaleSecond = Math.max(stats.lastSaleSecond, second);
+            stats.customerSales.computeIfAbsent(customer, c -> new long[1])[0]++;
+            stats.salesPerSecond.computeIfAbsent(second, s -> new long[1])[0]++;
+        }
+        return stats;
+    }
+
+    // 1 for addTicket, 2 for buyTicket, 0 for anything else
+    private static int methodOf(MappedByteBuffer buffer, int start, int end) {
+        int space = end - 1;
+        while (space >= start && buffer.get(space) != ' ') {
+            space--;
+        }
+        if (end - space - 1 == ADD_TICKET.length && startsWith(buffer, space + 1, end, ADD_TICKET)) {
+            return 1;
+        }
+        if (end - space - 1 == BUY_TICKET.length && startsWith(buffer, space + 1, end, BUY_TICKET)) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static void parseMessage(MappedByteBuffer buffer, int start, int end, int method, long second,
+                                     ChunkStats stats) {
+        if (method == 1 && startsWith(buffer, start, end, VENDOR)) {
+            int idEnd = indexOf(buffer, start + VENDOR.length, end, (byte) ' ');
+            int ticketAt = indexOf(buffer, idEnd, end, TICKET_ID);
+            if (idEnd < 0 || ticketAt < 0) {
+                return;
+            }
+            String vendor = text(buffer, start + VENDOR.length, idEnd);
+            int sequence = parseInt(buffer, ticketAt + TICKET_ID.length, end);
+            stats.released++;
+            stats.firstReleaseSecond = Math.min(stats.firstReleaseSecond, second);
+            stats.vendorReleases.computeIfAbsent(vendor, v -> new IntList()).add(sequence);
+        } else if (method == 2 && startsWith(buffer, start, end, CUSTOMER)) {
+            int ticketAt = indexOf(buffer, start + CUSTOMER.length, end, TICKET_ID);
+            if (ticketAt < 0) {
+                return;
+            }
+            // "<customer> bought"
+            int idEnd = ticketAt - " bought".length();
+            if (idEnd <= start + CUSTOMER.length) {
+                return;
+            }
+            String customer = text(buffer, start + CUSTOMER.length, idEnd);
+            stats.sold++;
+            if (startsWith(buffer, start + CUSTOMER.length, idEnd, PRIORITY)) {
+                stats.vipSold++;
+            }
+            stats.lastSaleSecond = Math.max(stats.lastSaleSecond, second);
+            stats.customerSales.computeIfAbsent(customer, c -> new long[1])[0]++;
+            stats.salesPerSecond.computeIfAbsent(second, s -> new long[1])[0]++;
+            stats.soldSequences.add(parseInt(buffer, ticketAt + TICKET_ID.length, end));
+        } else if (startsWith(buffer, start, end, RUN_START)) {
+            stats.runs++;
+        }
+    }
+
+    // Parses "[ESC[..m]Mon dd, yyyy h:mm:ss am|pm" at the start of a header line into epoch seconds of the
+    // local wall-clock time; returns Long.MIN_VALUE for lines that are not headers
+    private static class TimeParser {
+        private int cachedYear = -1;
+        private int cachedMonth = -1;
+        private int cachedDay = -1;
+        private long cachedDaySeconds;
+
+        long parse(MappedByteBuffer buffer, int start, int end) {
+            int i = start;
+            if (i < end && buffer.get(i) == 0x1B) {
+                while (i < end && buffer.get(i) != 'm') {
+                    i++;
+                }
+                i++;
+            }
+            if (end - i < 20) {
+                return Long.MIN_VALUE;
+            }
+            int month = monthOf(buffer, i);
+            if (month < 0 || buffer.get(i + 3) != ' ') {
+                return Long.MIN_VALUE;
+            }
+            i += 4;
+            int[] cursor = {i};
+            int day = digits(buffer, cursor, end);
+            if (day < 0 || !expect(buffer, cursor, end, ',') || !expect(buffer, cursor, end, ' ')) {
+                return Long.MIN_VALUE;
+            }
+            int year = digits(buffer, cursor, end);
+            if (year < 0 || !expect(buffer, cursor, end, ' ')) {
+                return Long.MIN_VALUE;
+            }
+            int hour = digits(buffer, cursor, end);
+            if (hour < 0 || !expect(buffer, cursor, end, ':')) {
+                return Long.MIN_VALUE;
+            }
+            int minute = digits(buffer, cursor, end);
+            if (minute < 0 || !expect(buffer, cursor, end, ':')) {
+                return Long.MIN_VALUE;
+            }
+            int secondOfMinute = digits(buffer, cursor, end);
+            if (secondOfMinute < 0 || !expect(buffer, cursor, end, ' ') || cursor[0] + 2 > end) {
+                return Long.MIN_VALUE;
+            }
+            boolean pm = (buffer.get(cursor[0]) | 0x20) == 'p';
+            hour = hour % 12 + (pm ? 12 : 0);
+
+            if (year != cachedYear || month != cachedMonth || day != cachedDay) {
+                cachedDaySeconds = LocalDate.of(year, month + 1, day).toEpochDay() * 86_400L;
+                cachedYear = year;
+                cachedMonth = month;
+                cachedDay = day;
+            }
+            return cachedDaySeconds + hour * 3600L + minute * 60L + secondOfMinute;
+        }
+
+        private static int monthOf(MappedByteBuffer buffer, int at) {
+            for (int month = 0; month < MONTHS.length; month++) {
+                String name = MONTHS[month];
+                if ((buffer.get(at) | 0x20) == name.charAt(0)
+                        && (buffer.get(at + 1) | 0x20) == name.charAt(1)
+                        && (buffer.get(at + 2) | 0x20) == name.charAt(2)) {
+                    return month;
+                }
+            }
+            return -1;
+        }
+
+        private static int digits(MappedByteBuffer buffer, int[] cursor, int end) {
+            int value = 0;
+            int start = cursor[0];
+            while (cursor[0] < end && buffer.get(cursor[0]) >= '0' && buffer.get(cursor[0]) <= '9') {
+                value = value * 10 + (buffer.get(cursor[0]++) - '0');
+            }
+            return cursor[0] > start ? value : -1;
+        }
+
+        private static boolean expect(MappedByteBuffer buffer, int[] cursor, int end, char expected) {
+            if (cursor[0] < end && buffer.get(cursor[0]) == expected) {
+                cursor[0]++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static boolean startsWith(MappedByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int start, int end, byte[] pattern) {
+        for (int i = start; i <= end - pattern.length; i++) {
+            if (startsWith(buffer, i, end, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseInt(MappedByteBuffer buffer, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static class Chunk {
+        private final Path file;
+        private final long start;
+        private final long end;
+        private final boolean ledger;
+
+        Chunk(Path file, long start, long end, boolean ledger) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.ledger = ledger;
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+
+    // Partial results of one chunk; merged pairwise as the fork/join tree unwinds
+    private static class ChunkStats {
+        private long released = 0;
+        private long sold = 0;
+        private long vipSold = 0;
+        private int runs = 0;
+        private long firstSecond = Long.MAX_VALUE;
+        private long lastSecond = Long.MIN_VALUE;
+        private long firstReleaseSecond = Long.MAX_VALUE;
+        private long lastSaleSecond = Long.MIN_VALUE;
+        private final Map<String, long[]> customerSales = new HashMap<>();
+        private final Map<String, IntList> vendorReleases = new HashMap<>();
+        private final Map<Long, long[]> salesPerSecond = new HashMap<>();
+        private final IntList soldSequences = new IntList();
+
+        ChunkStats merge(ChunkStats other) {
+            released += other.released;
+            sold += other.sold;
+            vipSold += other.vipSold;
+            runs += other.runs;
+            firstSecond = Math.min(firstSecond, other.firstSecond);
+            lastSecond = Math.max(lastSecond, other.lastSecond);
+            firstReleaseSecond = Math.min(firstReleaseSecond, other.firstReleaseSecond);
+            lastSaleSecond = Math.max(lastSaleSecond, other.lastSaleSecond);
+            other.customerSales.forEach((customer, count) ->
+                    customerSales.computeIfAbsent(customer, c -> new long[1])[0] += count[0]);
+            other.vendorReleases.forEach((vendor, sequences) ->
+                    vendorReleases.computeIfAbsent(vendor, v -> new IntList()).addAll(sequences));
+            other.salesPerSecond.forEach((second, count) ->
+                    salesPerSecond.computeIfAbsent(second, s -> new long[1])[0] += count[0]);
+            soldSequences.addAll(other.soldSequences);
+            return this;
+        }
+    }
+
+    public static class SalesReport {
+        private final ChunkStats stats;
+        private final int files;
+        private final int chunks;
+        private final int threads;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final Map<String, long[]> vendorSales = new TreeMap<>();
+
+        private SalesReport(ChunkStats stats, int files, int chunks, int threads, long bytes, long elapsedNanos) {
+            this.stats = stats;
+            this.files = files;
+            this.chunks = chunks;
+            this.threads = threads;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            attributeSalesToVendors();
+        }
+
+        // Ticket numbers are unique within a run, so each sale is matched to the vendor that released it
+        private void attributeSalesToVendors() {
+            int maxSequence = 0;
+            for (IntList sequences : stats.vendorReleases.values()) {
+                for (int i = 0; i < sequences.size; i++) {
+                    maxSequence = Math.max(maxSequence, sequences.values[i]);
+                }
+            }
+            List<String> vendors = new ArrayList<>(stats.vendorReleases.keySet());
+            int[] releasedBy = new int[maxSequence + 1];
+            for (int v = 0; v < vendors.size(); v++) {
+                IntList sequences = stats.vendorReleases.get(vendors.get(v));
+                for (int i = 0; i < sequences.size; i++) {
+                    releasedBy[sequences.values[i]] = v + 1;
+                }
+                vendorSales.put(vendors.get(v), new long[]{sequences.size, 0});
+            }
+            for (int i = 0; i < stats.soldSequences.size; i++) {
+                int sequence = stats.soldSequences.values[i];
+                if (sequence < releasedBy.length && releasedBy[sequence] > 0) {
+                    vendorSales.get(vendors.get(releasedBy[sequence] - 1))[1]++;
+                }
+            }
+        }
+
+        public long getTicketsSold() {
+            return stats.sold;
+        }
+
+        public long getVIPTicketsSold() {
+            return stats.vipSold;
+        }
+
+        public long getTicketsReleased() {
+            return stats.released;
+        }
+
+        // Seconds from the first release to the last sale, or -1 if the logs hold no sales
+        public long getSellingSeconds() {
+            return stats.lastSaleSecond == Long.MIN_VALUE || stats.firstReleaseSecond == Long.MAX_VALUE
+                    ? -1 : stats.lastSaleSecond - stats.firstReleaseSecond;
+        }
+
+        public String summary(int topCustomers) {
+            StringBuilder report = new StringBuilder();
+            double seconds = elapsedNanos / 1e9;
+            report.append(String.format("Parsed %d file(s), %.1f MB in %d chunks on %d threads: %.2f s (%.0f MB/s)%n",
+                    files, bytes / 1e6, chunks, threads, seconds, bytes / 1e6 / Math.max(seconds, 1e-9)));
+            if (stats.firstSecond == Long.MAX_VALUE) {
+                report.append("No log records found");
+                return report.toString();
+            }
+            // Ledgers do not record run starts
+            report.append(String.format("Records from %s to %s%s%n", format(stats.firstSecond),
+                    format(stats.lastSecond), stats.runs > 0 ? ", " + stats.runs + " run(s)" : ""));
+            if (stats.runs > 1) {
+                report.append("  Several runs share this log; vendor attribution assumes ticket numbers are not reused\n");
+            }
+            report.append(String.format("Tickets released %d, sold %d, VIP %d (%.1f%%)%n",
+                    stats.released, stats.sold, stats.vipSold, stats.sold == 0 ? 0.0 : 100.0 * stats.vipSold / stats.sold));
+            if (getSellingSeconds() >= 0) {
+                report.append(String.format("Time to sell out: %d s (first release %s, last sale %s)%n",
+                        getSellingSeconds(), format(stats.firstReleaseSecond), format(stats.lastSaleSecond)));
+            }
+
+            long peak = 0;
+            long peakSecond = 0;
+            for (Map.Entry<Long, long[]> entry : stats.salesPerSecond.entrySet()) {
+                if (entry.getValue()[0] > peak || (entry.getValue()[0] == peak && entry.getKey() < peakSecond)) {
+                    peak = entry.getValue()[0];
+                    peakSecond = entry.getKey();
+                }
+            }
+            if (peak > 0) {
+                report.append(String.format("Sales per second: peak %d at %s, mean %.1f over %d active seconds%n",
+                        peak, format(peakSecond), (double) stats.sold / stats.salesPerSecond.size(),
+                        stats.salesPerSecond.size()));
+            }
+
+            report.append("Vendors (released / sold):\n");
+            vendorSales.forEach((vendor, counts) ->
+                    report.append(String.format("  %-12s %8d / %d%n", vendor, counts[0], counts[1])));
+
+            List<Map.Entry<String, long[]>> customers = new ArrayList<>(stats.customerSales.entrySet());
+            customers.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                    ? Long.compare(b.getValue()[0], a.getValue()[0]) : a.getKey().compareTo(b.getKey()));
+            report.append(String.format("Customers: %d distinct, top %d:%n", customers.size(),
+                    Math.min(topCustomers, customers.size())));
+            for (int i = 0; i < Math.min(topCustomers, customers.size()); i++) {
+                report.append(String.format("  %-20s %d%n", customers.get(i).getKey(), customers.get(i).getValue()[0]));
+            }
+            return report.toString().trim();
+        }
+
+        // Writes per-second.csv, per-customer.csv and per-vendor.csv into the directory
+        public void writeCsv(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("per-second.csv")))) {
+                out.println("time,sales");
+                new TreeMap<>(stats.salesPerSecond).forEach((second, count) ->
+                        out.println(format(second) + "," + count[0]));
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("per-customer.csv")))) {
+                out.println("customer,tickets,vip");
+                new TreeMap<>(stats.customerSales).forEach((customer, count) ->
+                        out.println(customer + "," + count[0] + "," + customer.startsWith("Priority")));
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(directory.resolve("per-vendor.csv")))) {
+                out.println("vendor,released,sold");
+                vendorSales.forEach((vendor, counts) -> out.println(vendor + "," + counts[0] + "," + counts[1]));
+            }
+        }
+
+        private static String format(long epochSecond) {
+            return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(TIME_FORMAT);
+        }
+    }
+
+    // Usage: SalesLogAnalyzer [--threads n] [--top n] [--csv dir] <logOrLedgerFile> [<logOrLedgerFile> ...]
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int top = 10;
+        Path csvDirectory = null;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--top":
+                    top = Integer.parseInt(args[++i]);
+                    break;
+                case "--csv":
+                    csvDirectory = Paths.get(args[++i]);
+                    break;
+                default:
+                    files.add(Paths.get(args[i]));
+                    break;
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: SalesLogAnalyzer [--threads n] [--top n] [--csv dir] <logOrLedgerFile> [<logOrLedgerFile> ...]");
+            return;
+        }
+
+        SalesReport report = new SalesLogAnalyzer(threads).analyze(files);
+        System.out.println(report.summary(top));
+        if (csvDirectory != null) {
+            report.writeCsv(csvDirectory);
+            System.out.println("Breakdowns written to " + csvDirectory);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.myproject.cluster;
+
+import com.example.myproject.protocol.TicketProtocol;
+import com.example.myproject.protocol.TicketProtocolClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Runs a whole cluster on localhost: an in-process coordinator, worker JVMs started with the same classpath
+// and JVM options, and one buyer per worker. One worker is killed part way through to show that its lease
+// expires and the event still never oversells.
+public class ClusterDemo {
+    private static final Logger COORDINATOR_LOGGER = Logger.getLogger(InventoryCoordinator.class.getName());
+    private static final String EVENT_NAME = "ClusterDemo";
+
+    // Usage: ClusterDemo [workers] [totalTickets] [blockSize] [leaseTtlMillis]
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int totalTickets = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        long leaseTtlMillis = args.length > 3 ? Long.parseLong(args[3]) : 2000;
+        COORDINATOR_LOGGER.setLevel(Level.WARNING);
+
+        File logDirectory = Files.createTempDirectory("cluster-demo").toFile();
+        List<Process> processes = new ArrayList<>();
+        try (InventoryCoordinator coordinator = new InventoryCoordinator(
+                new InetSocketAddress("127.0.0.1", 0), totalTickets, leaseTtlMillis)) {
+            coordinator.start();
+            System.out.println(String.format("Coordinator on port %d, %d tickets, worker logs in %s",
+                    coordinator.getPort(), totalTickets, logDirectory));
+
+            List<Integer> ports = new ArrayList<>();
+            for (int i = 1; i <= workers; i++) {
+                Process process = launchWorker(coordinator.getPort(), "worker-" + i, blockSize, logDirectory);
+                processes.add(process);
+                ports.add(awaitPort(process));
+            }
+
+            Set<String> ticketIds = ConcurrentHashMap.newKeySet();
+            AtomicInteger sold = new AtomicInteger();
+            AtomicInteger duplicates = new AtomicInteger();
+            List<Thread> buyers = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int i = 0; i < workers; i++) {
+                InetSocketAddress address = new InetSocketAddress("127.0.0.1", ports.get(i));
+                String buyerId = "buyer-" + (i + 1);
+                Thread buyer = new Thread(() -> buy(address, buyerId, ticketIds, sold, duplicates), buyerId);
+                buyer.start();
+                buyers.add(buyer);
+            }
+
+            // Simulate a crash: no shutdown hook runs, so the worker's lease has to expire
+            while (sold.get() < totalTickets / 3 && buyers.stream().anyMatch(Thread::isAlive)) {
+                Thread.sleep(10);
+            }
+            processes.get(0).destroyForcibly();
+            System.out.println("Killed worker-1 after " + sold.get() + " sales");
+
+            for (Thread buyer : buyers) {
+                buyer.join();
+            }
+            double elapsed = (System.nanoTime() - started) / 1e9;
+
+            for (Process process : processes) {
+                process.destroy();
+                process.waitFor(5, TimeUnit.SECONDS);
+            }
+            System.out.println(String.format("Sold %d of %d tickets in %.1f s, %d unique, %d duplicates",
+                    sold.get(), totalTickets, elapsed, ticketIds.size(), duplicates.get()));
+            System.out.println(coordinator);
+            System.out.println(sold.get() <= totalTickets && duplicates.get() == 0
+                    ? "No oversell" : "OVERSOLD");
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static Process launchWorker(int coordinatorPort, String workerId, int blockSize, File logDirectory)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ClusterWorker.class.getName());
+        command.add("127.0.0.1");
+        command.add(String.valueOf(coordinatorPort));
+        command.add(EVENT_NAME);
+        command.add(workerId);
+        command.add("0");
+        command.add("4");
+        command.add(String.valueOf(blockSize));
+        return new ProcessBuilder(command)
+                .redirectError(new File(logDirectory, workerId + ".log"))
+                .start();
+    }
+
+    private static int awaitPort(Process process) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int index = line.indexOf("serving on port ");
+            if (index >= 0) {
+                return Integer.parseInt(line.substring(index + "serving on port ".length()).trim());
+            }
+        }
+        throw new IOException("Worker exited before it started serving");
+    }
+
+    // Keeps a few purchases in flight against one worker until it reports the event sold out or goes away
+    private static void buy(InetSocketAddress address, String buyerId, Set<String> ticketIds,
+                            AtomicInteger sold, AtomicInteger duplicates) {
+        int depth = 8;
+        Semaphore window = new Semaphore(depth);
+        AtomicInteger finished = new AtomicInteger();
+        try (TicketProtocolClient client = new TicketProtocolClient(address)) {
+            long requestNumber = 0;
+            while (finished.get() == 0) {
+                window.acquire();
+                CompletableFuture<TicketProtocol.Response> future =
+                        client.buy(EVENT_NAME, buyerId + "-" + (++requestNumber), false);
+                future.whenComplete((response, error) -> {
+                    if (error != null || response.getStatus() == TicketProtocol.SOLD_OUT) {
+                        finished.set(1);
+                    } else if (response.isOk()) {
+                        for (String ticketId : response.getTicketIds()) {
+                            sold.incrementAndGet();
+                            if (!ticketIds.add(ticketId)) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                    window.release();
+                });
+            }
+            window.acquire(depth);
+        } catch (Exception e) {
+            System.err.println(buyerId + " stopped: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.myproject.cluster;
+
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.config.Configuration;
+import com.example.myproject.core.RunController;
+import com.example.myproject.model.TicketPool;
+import com.example.myproject.protocol.TicketProtocolServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// One selling process: a TicketPool whose ticket numbers are leased from an InventoryCoordinator,
+// stocked by the usual producers and served over the binary protocol. Tickets it never sold go back to the
+// coordinator when it closes, and while nobody is buying from it.
+public class ClusterWorker implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ClusterWorker.class.getName());
+    // Held strongly so the levels set in main are not lost if the loggers are garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    private static final Logger PRODUCER_LOGGER = Logger.getLogger(TicketProducer.class.getName());
+    private static final int PRODUCER_LEASE_BLOCK = 16;
+    // No purchase attempt for this long and the worker stops producing and hands back its unsold tickets
+    private static final long IDLE_MILLIS = 2000;
+    private static final long IDLE_CHECK_MILLIS = 250;
+
+    private final CoordinatorClient coordinator;
+    private final TicketPool ticketPool;
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final RunController runController;
+    private final TicketProtocolServer protocolServer;
+    private final int producers;
+    private final ScheduledExecutorService idleCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worker-idle-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Confined to the idle check thread
+    private long lastPurchaseCalls = -1;
+    private long lastPurchaseAt;
+    private boolean idle = false;
+
+    public ClusterWorker(InetSocketAddress coordinatorAddress, String eventName, String workerId,
+                         InetSocketAddress serveAddress, int producers, int blockSize) throws IOException {
+        this.producers = producers;
+        this.coordinator = new CoordinatorClient(coordinatorAddress, workerId, blockSize);
+        this.coordinator.start();
+        int totalTickets = coordinator.getTotalTickets();
+        Configuration config = new Configuration(eventName, totalTickets, 2, 2, Math.min(totalTickets, 1000));
+        this.ticketPool = new TicketPool(eventName, config.getMaxTicketCapacity(), totalTickets, coordinator);
+        this.runController = new RunController(ticketPool, executorService, config);
+        this.runController.start();
+        this.runController.setLeaseBlockSize(PRODUCER_LEASE_BLOCK);
+        this.runController.setProducerCount(producers);
+        this.protocolServer = new TicketProtocolServer(serveAddress, 1, 0);
+        this.protocolServer.registerEvent(ticketPool);
+    }
+
+    public void start() {
+        protocolServer.start();
+        idleCheck.scheduleWithFixedDelay(this::checkIdle, IDLE_CHECK_MILLIS, IDLE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkIdle() {
+        long now = System.currentTimeMillis();
+        long purchaseCalls = ticketPool.getPurchaseCalls();
+        if (purchaseCalls != lastPurchaseCalls) {
+            lastPurchaseCalls = purchaseCalls;
+            lastPurchaseAt = now;
+            if (idle) {
+                idle = false;
+                coordinator.resume();
+                runController.setProducerCount(producers);
+                LOGGER.info("Buyers are back; producing again");
+            }
+            return;
+        }
+        if (now - lastPurchaseAt < IDLE_MILLIS || ticketPool.isRunComplete()) {
+            return;
+        }
+        if (!idle) {
+            idle = true;
+            runController.setProducerCount(0);
+            coordinator.suspend();
+        }
+        // Retired producers may release a last ticket or hand back their block after the first pass
+        int returned = ticketPool.returnUnsold();
+        if (returned > 0) {
+            LOGGER.info(String.format("No purchases for %d ms; returned %d unsold tickets", now - lastPurchaseAt, returned));
+        }
+    }
+
+    public int getPort() {
+        return protocolServer.getPort();
+    }
+
+    public TicketPool getTicketPool() {
+        return ticketPool;
+    }
+
+    // Producers hand their unused numbers back to the pool first, the pool passes everything unsold to the
+    // client, then the client returns the leases and restocks the rest
+    @Override
+    public void close() {
+        idleCheck.shutdownNow();
+        protocolServer.close();
+        runController.stopAll();
+        executorService.shutdownNow();
+        try {
+            idleCheck.awaitTermination(1, TimeUnit.SECONDS);
+            executorService.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ticketPool.returnUnsold();
+        coordinator.close();
+    }
+
+    // Usage: ClusterWorker <coordinatorHost> <coordinatorPort> <eventName> <workerId> <servePort> [producers] [blockSize]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: ClusterWorker <coordinatorHost> <coordinatorPort> <eventName> <workerId> <servePort> [producers] [blockSize]");
+            return;
+        }
+        POOL_LOGGER.setLevel(Level.WARNING);
+        PRODUCER_LOGGER.setLevel(Level.WARNING);
+
+        int producers = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+        int blockSize = args.length > 6 ? Integer.parseInt(args[6]) : 256;
+        ClusterWorker worker = new ClusterWorker(
+                new InetSocketAddress(args[0], Integer.parseInt(args[1])), args[2], args[3],
+                new InetSocketAddress(Integer.parseInt(args[4])), producers, blockSize);
+        Runtime.getRuntime().addShutdownHook(new Thread(worker::close));
+        worker.start();
+        System.out.println("Worker " + args[3] + " serving on port " + worker.getPort());
+    }
+}
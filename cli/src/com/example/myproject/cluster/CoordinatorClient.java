@@ -0,0 +1,480 @@
+package com.example.myproject.cluster;
+
+import com.example.myproject.model.InventorySource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static com.example.myproject.cluster.CoordinatorProtocol.*;
+
+// Worker side of the coordinator protocol. A background fetcher thread owns the connection: it leases
+// blocks, claims more of them ahead of demand, keeps its leases alive and hands back the used-up ones.
+// The local TicketPool only ever takes numbers the coordinator has already acknowledged, so issuing a
+// ticket never waits on the network; with none on hand acquire returns null and producers retry later.
+// Numbers the pool never sold go back through restock() and are sent once their leases are returned.
+public class CoordinatorClient implements InventorySource, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CoordinatorClient.class.getName());
+    // A round trip that takes longer than this drops the connection; the next one reconnects
+    private static final int IO_TIMEOUT_MILLIS = 2000;
+    private static final long RETRY_MILLIS = 50;
+    // The lease being sold from and one fetched ahead of it
+    private static final int MAX_LEASES = 2;
+
+    private final InetSocketAddress coordinator;
+    private final String workerId;
+    private final int blockSize;
+    // The fetcher claims or leases more once fewer acknowledged numbers than this are left on hand
+    private final int refillThreshold;
+    private final int totalTickets;
+    private final int lowInventoryThreshold;
+    private Thread fetcher;
+
+    // Guards the connection; held for one round trip at a time and never by a thread issuing tickets
+    private final Object ioLock = new Object();
+    private final byte[] requestBytes = new byte[MAX_FRAME_BYTES];
+    private Socket socket;
+    private DataInputStream input;
+    private DataOutputStream output;
+    private int nextRequestId = 0;
+
+    // Held leases, oldest first, guarded by this
+    private final Deque<Lease> leases = new ArrayDeque<>();
+    // Unsold ranges waiting to be restocked, guarded by this
+    private final Deque<int[]> restocks = new ArrayDeque<>();
+    private long ttlMillis = 0;
+    private long retryAt = 0;
+    private boolean coordinatorSoldOut = false;
+    private boolean closed = false;
+    // Hands every lease back and claims nothing new until resumed
+    private boolean suspended = false;
+
+    private volatile int unleased;
+
+    public CoordinatorClient(InetSocketAddress coordinator, String workerId, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Lease block size must be positive");
+        }
+        this.coordinator = coordinator;
+        this.workerId = workerId;
+        this.blockSize = blockSize;
+        this.refillThreshold = Math.max(1, blockSize / 4);
+        int[] status = readStatus();
+        this.totalTickets = status[0];
+        this.unleased = status[1];
+        this.lowInventoryThreshold = Math.max(4, totalTickets / 20);
+    }
+
+    public synchronized void start() {
+        if (fetcher != null || closed) {
+            return;
+        }
+        fetcher = new Thread(this::fetchLeases, workerId + "-lease-fetcher");
+        fetcher.setDaemon(true);
+        fetcher.start();
+    }
+
+    // Called under the pool lock, so it only hands out what is already acknowledged and never blocks
+    @Override
+    public synchronized int[] acquire(int requested) {
+        if (closed || suspended) {
+            return null;
+        }
+        int[] range = null;
+        for (Lease lease : leases) {
+            if (lease.next < lease.highWater) {
+                int size = Math.min(requested, lease.highWater - lease.next);
+                range = new int[]{lease.next, lease.next + size};
+                lease.next += size;
+                break;
+            }
+        }
+        if (acknowledged() < refillThreshold) {
+            notifyAll();
+        }
+        return range;
+    }
+
+    // Caller holds this
+    private int acknowledged() {
+        int acknowledged = 0;
+        for (Lease lease : leases) {
+            acknowledged += lease.highWater - lease.next;
+        }
+        return acknowledged;
+    }
+
+    @Override
+    public synchronized boolean isSoldOut() {
+        return coordinatorSoldOut && leases.isEmpty() && restocks.isEmpty();
+    }
+
+    @Override
+    public synchronized void restock(int from, int to) {
+        if (fetcher == null || !fetcher.isAlive()) {
+            // Nothing will send it, and the coordinator already counts the numbers as issued
+            LOGGER.warning(String.format("%s cannot restock [%d, %d): not connected", workerId, from, to));
+            return;
+        }
+        restocks.addLast(new int[]{from, to});
+        notifyAll();
+    }
+
+    // For a worker nobody is buying from: its unsold numbers are better off with the coordinator
+    public synchronized void suspend() {
+        suspended = true;
+        notifyAll();
+    }
+
+    public synchronized void resume() {
+        suspended = false;
+        notifyAll();
+    }
+
+    @Override
+    public boolean isInventoryLow() {
+        return unleased < lowInventoryThreshold;
+    }
+
+    public int getTotalTickets() {
+        return totalTickets;
+    }
+
+    // total, unleased, leases, claimed, issued, writtenOff
+    public int[] getStatus() throws IOException {
+        return readStatus();
+    }
+
+    private int[] readStatus() throws IOException {
+        ByteBuffer response = call(STATUS, null);
+        int[] status = new int[6];
+        for (int i = 0; i < status.length; i++) {
+            status[i] = response.getInt();
+        }
+        return status;
+    }
+
+    // Decides the next round trip under the monitor, makes it without the monitor, then applies the answer
+    private void fetchLeases() {
+        while (true) {
+            Lease lease = null;
+            byte opcode = 0;
+            int position = 0;
+            int claim = 0;
+            int[] range = null;
+            synchronized (this) {
+                if (closed) {
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                long wakeAt = now + 1000;
+                for (Lease held : leases) {
+                    if (held.next >= held.end || suspended) {
+                        // Every number of it is in the pool, or none will be: report them and hand the lease back
+                        lease = held;
+                        opcode = RETURN;
+                        break;
+                    }
+                    if (held.lost) {
+                        continue;
+                    }
+                    long renewAt = held.renewedAt + Math.max(1, ttlMillis / 3);
+                    if (renewAt <= now) {
+                        lease = held;
+                        opcode = RENEW;
+                        claim = held.highWater;
+                        break;
+                    }
+                    wakeAt = Math.min(wakeAt, renewAt);
+                }
+                // Only once no lease is held, so the coordinator has counted every restocked number as issued
+                if (opcode == 0 && leases.isEmpty() && !restocks.isEmpty()) {
+                    opcode = RESTOCK;
+                    range = restocks.peekFirst();
+                }
+                if (opcode == 0 && !suspended && acknowledged() < refillThreshold) {
+                    for (Lease held : leases) {
+                        if (!held.lost && held.highWater < held.end) {
+                            lease = held;
+                            opcode = RENEW;
+                            claim = Math.min(held.end, held.highWater + refillThreshold);
+                            break;
+                        }
+                    }
+                    // Near sell-out a second lease would only strand numbers other workers could sell
+                    if (opcode == 0 && leases.size() < MAX_LEASES && !coordinatorSoldOut
+                            && (acknowledged() == 0 || !isInventoryLow())) {
+                        if (retryAt <= now) {
+                            opcode = ACQUIRE;
+                        } else {
+                            wakeAt = Math.min(wakeAt, retryAt);
+                        }
+                    }
+                }
+                if (lease != null) {
+                    position = lease.next;
+                }
+                if (opcode == 0) {
+                    try {
+                        wait(Math.max(1, wakeAt - now));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    continue;
+                }
+            }
+
+            try {
+                switch (opcode) {
+                    case ACQUIRE:
+                        acquireLease();
+                        break;
+                    case RENEW:
+                        renew(lease, position, claim);
+                        break;
+                    case RESTOCK:
+                        restock(range);
+                        break;
+                    default:
+                        returnLease(lease, position);
+                        break;
+                }
+            } catch (IOException e) {
+                LOGGER.warning(workerId + " lost contact with the coordinator: " + e.getMessage());
+                synchronized (this) {
+                    retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                    try {
+                        wait(RETRY_MILLIS);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        returnLeases();
+        List<int[]> unsent;
+        synchronized (this) {
+            unsent = new ArrayList<>(restocks);
+        }
+        for (int[] range : unsent) {
+            try {
+                restock(range);
+            } catch (IOException e) {
+                LOGGER.warning(String.format("%s could not restock [%d, %d): %s", workerId, range[0], range[1], e.getMessage()));
+            }
+        }
+    }
+
+    private void acquireLease() throws IOException {
+        ByteBuffer response = call(ACQUIRE, request -> {
+            byte[] worker = workerId.getBytes(StandardCharsets.UTF_8);
+            request.put((byte) worker.length).put(worker).putInt(blockSize);
+        });
+        byte status = response.get();
+        response.get();
+        synchronized (this) {
+            if (status != OK) {
+                if (status == SOLD_OUT) {
+                    coordinatorSoldOut = true;
+                    LOGGER.info(workerId + ": coordinator reports the event sold out");
+                } else {
+                    retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                }
+                return;
+            }
+            Lease lease = new Lease(response.getLong(), response.getInt());
+            lease.end = response.getInt();
+            lease.highWater = response.getInt();
+            ttlMillis = response.getInt();
+            unleased = response.getInt();
+            lease.renewedAt = System.currentTimeMillis();
+            leases.addLast(lease);
+        }
+    }
+
+    // Numbers already acknowledged stay safe to sell even if the lease is lost, since the coordinator never
+    // reuses anything below the high-water mark; only the unclaimed rest of the block is forfeited
+    private void renew(Lease lease, int position, int claim) throws IOException {
+        ByteBuffer response = call(RENEW, request -> request.putLong(lease.id).putInt(position).putInt(claim));
+        byte status = response.get();
+        response.get();
+        synchronized (this) {
+            lease.renewedAt = System.currentTimeMillis();
+            if (status != OK) {
+                LOGGER.warning(String.format("%s lost lease %d (status %d) at ticket %d", workerId, lease.id, status, position));
+                lease.lost = true;
+                lease.end = lease.highWater;
+                return;
+            }
+            // A steal may have moved the end down, but never below the acknowledged high-water mark
+            lease.end = response.getInt();
+            lease.highWater = Math.max(lease.highWater, response.getInt());
+            ttlMillis = response.getInt();
+            unleased = response.getInt();
+        }
+    }
+
+    private void returnLease(Lease lease, int position) throws IOException {
+        if (!lease.lost) {
+            ByteBuffer response = call(RETURN, request -> request.putLong(lease.id).putInt(position));
+            if (response.get() == OK) {
+                response.get();
+                unleased = response.getInt();
+            }
+        }
+        synchronized (this) {
+            leases.remove(lease);
+        }
+    }
+
+    private void restock(int[] range) throws IOException {
+        ByteBuffer response = call(RESTOCK, request -> request.putInt(range[0]).putInt(range[1]));
+        byte status = response.get();
+        response.get();
+        synchronized (this) {
+            restocks.remove(range);
+            if (status != OK) {
+                LOGGER.warning(String.format("%s: coordinator refused to restock [%d, %d) (status %d)",
+                        workerId, range[0], range[1], status));
+                return;
+            }
+            unleased = response.getInt();
+            coordinatorSoldOut = false;
+        }
+    }
+
+    // Reports what was issued from each lease and hands the rest back
+    private void returnLeases() {
+        List<Lease> held;
+        synchronized (this) {
+            held = new ArrayList<>(leases);
+        }
+        for (Lease lease : held) {
+            try {
+                returnLease(lease, lease.next);
+            } catch (IOException e) {
+                LOGGER.warning(workerId + " could not return lease " + lease.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // One request in flight at a time, each bounded by the socket timeout
+    private ByteBuffer call(byte opcode, Consumer<ByteBuffer> fields) throws IOException {
+        synchronized (ioLock) {
+            try {
+                if (socket == null) {
+                    connect();
+                }
+                int requestId = ++nextRequestId;
+                ByteBuffer request = ByteBuffer.wrap(requestBytes);
+                request.putInt(0).putInt(requestId).put(opcode);
+                if (fields != null) {
+                    fields.accept(request);
+                }
+                request.putInt(0, request.position() - 4);
+                output.write(requestBytes, 0, request.position());
+                output.flush();
+
+                int length = input.readInt();
+                if (length < 6 || length > MAX_FRAME_BYTES - 4) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                byte[] responseBytes = new byte[length];
+                input.readFully(responseBytes);
+                ByteBuffer response = ByteBuffer.wrap(responseBytes);
+                if (response.getInt() != requestId) {
+                    throw new IOException("Response does not match request " + requestId);
+                }
+                if (opcode == STATUS) {
+                    // STATUS is always OK; skip the status and opcode bytes for the caller
+                    response.position(6);
+                }
+                return response;
+            } catch (IOException e) {
+                // A timed-out answer may still arrive, so the connection cannot be trusted any more
+                disconnect();
+                throw e;
+            }
+        }
+    }
+
+    // Caller holds ioLock
+    private void connect() throws IOException {
+        Socket connecting = new Socket();
+        try {
+            connecting.setTcpNoDelay(true);
+            connecting.setSoTimeout(IO_TIMEOUT_MILLIS);
+            connecting.connect(coordinator, IO_TIMEOUT_MILLIS);
+            input = new DataInputStream(new BufferedInputStream(connecting.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(connecting.getOutputStream()));
+            socket = connecting;
+        } catch (IOException e) {
+            connecting.close();
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        synchronized (ioLock) {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+                socket = null;
+            }
+        }
+    }
+
+    // The fetcher returns the held leases on its way out; a hung coordinator only delays this by the timeout
+    @Override
+    public void close() {
+        Thread running;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = fetcher;
+            notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join(3L * IO_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        disconnect();
+    }
+
+    private static class Lease {
+        private final long id;
+        // Next number not yet handed to the pool
+        private int next;
+        private int highWater;
+        private int end;
+        private long renewedAt;
+        // The coordinator no longer knows the lease; what was acknowledged may still be sold
+        private boolean lost = false;
+
+        Lease(long id, int start) {
+            this.id = id;
+            this.next = start;
+        }
+    }
+}
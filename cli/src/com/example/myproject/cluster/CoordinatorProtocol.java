@@ -0,0 +1,48 @@
+package com.example.myproject.cluster;
+
+// Wire format between InventoryCoordinator and CoordinatorClient, framed like TicketProtocol.
+// All integers are big-endian; ticket numbers are 1-based and ranges are [from, to).
+//
+//   frame    = int32 length (bytes that follow) | int32 requestId | payload
+//   request  = opcode:u8 | operation fields
+//     ACQUIRE   worker:str8 | blockSize:i32
+//     RENEW     leaseId:i64 | position:i32 | claim:i32
+//     RETURN    leaseId:i64 | position:i32
+//     RESTOCK   from:i32 | to:i32
+//     STATUS    -
+//   response = status:u8 | opcode:u8 | result fields when status is OK, else nothing
+//     ACQUIRE   leaseId:i64 | start:i32 | end:i32 | highWater:i32 | ttlMillis:i32 | unleased:i32
+//     RENEW     end:i32 | highWater:i32 | ttlMillis:i32 | unleased:i32
+//     RETURN    unleased:i32
+//     RESTOCK   unleased:i32
+//     STATUS    total, unleased, leases, claimed, issued, writtenOff : int32 each
+//
+// A lease owns [start, end) but its holder may only issue numbers below the high-water mark the
+// coordinator has acknowledged; position is the next number the holder has not issued. Numbers below
+// the high-water mark are never handed out again. Stealing moves end down, but never below the
+// high-water mark. A lease that is not renewed within its TTL expires: the coordinator takes back
+// [highWater, end) and writes off [position, highWater), so a crashed or partitioned worker can lose
+// tickets but never cause an oversell. RESTOCK is the one exception to never reusing a number: a worker
+// that stops selling hands back numbers it was issued but never sold, after returning the leases they
+// came from, and the coordinator counts them as unissued again.
+public final class CoordinatorProtocol {
+    public static final byte ACQUIRE = 1;
+    public static final byte RENEW = 2;
+    public static final byte RETURN = 3;
+    public static final byte STATUS = 4;
+    public static final byte RESTOCK = 5;
+
+    public static final byte OK = 0;
+    // Nothing free right now, but leases are still outstanding
+    public static final byte NONE_AVAILABLE = 1;
+    // Nothing free and no leases outstanding: every ticket has been issued or written off
+    public static final byte SOLD_OUT = 2;
+    // The lease has expired or was never granted
+    public static final byte EXPIRED = 3;
+    public static final byte BAD_REQUEST = 4;
+
+    public static final int MAX_FRAME_BYTES = 1024;
+
+    private CoordinatorProtocol() {
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.myproject.cluster;
+
+import com.example.myproject.server.Connection;
+import com.example.myproject.server.ConnectionHandler;
+import com.example.myproject.server.NioServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static com.example.myproject.cluster.CoordinatorProtocol.*;
+
+// Owns the ticket numbers of one event and leases them out in blocks to worker processes (see CoordinatorProtocol)
+public class InventoryCoordinator implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(InventoryCoordinator.class.getName());
+    // Below this many unleased tickets new blocks are kept short so the tail spreads across workers
+    private static final int LOW_INVENTORY_BLOCK = 4;
+
+    private final int totalTickets;
+    private final long leaseTtlMillis;
+    private final int lowInventoryThreshold;
+    private final Deque<int[]> freeRanges = new ArrayDeque<>();
+    private final Map<Long, Lease> leases = new HashMap<>();
+    private final NioServer server;
+    private final ScheduledExecutorService sweeper;
+    private long nextLeaseId = 1;
+    private int unleased;
+    private int issued = 0;
+    private int writtenOff = 0;
+
+    public InventoryCoordinator(InetSocketAddress address, int totalTickets, long leaseTtlMillis) throws IOException {
+        if (totalTickets <= 0) {
+            throw new IllegalArgumentException("Total tickets must be positive");
+        }
+        if (leaseTtlMillis <= 0) {
+            throw new IllegalArgumentException("Lease TTL must be positive");
+        }
+        this.totalTickets = totalTickets;
+        this.leaseTtlMillis = leaseTtlMillis;
+        this.lowInventoryThreshold = Math.max(LOW_INVENTORY_BLOCK, totalTickets / 20);
+        this.freeRanges.add(new int[]{1, totalTickets + 1});
+        this.unleased = totalTickets;
+        this.server = new NioServer("coordinator", address, 1, CoordinatorConnectionHandler::new);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coordinator-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        server.start();
+        long period = Math.max(10, leaseTtlMillis / 4);
+        sweeper.scheduleAtFixedRate(this::expireLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    private synchronized void acquire(ByteBuffer response, String workerId, int blockSize) {
+        if (blockSize <= 0) {
+            response.put(BAD_REQUEST).put(ACQUIRE);
+            return;
+        }
+        int[] range = freeRanges.isEmpty() ? steal(workerId) : takeFree(blockSize);
+        if (range == null) {
+            response.put(leases.isEmpty() ? SOLD_OUT : NONE_AVAILABLE).put(ACQUIRE);
+            return;
+        }
+
+        Lease lease = new Lease(nextLeaseId++, workerId, range[0], range[1]);
+        // The first quarter is claimed up front so the worker can start issuing without another round trip
+        lease.highWater = lease.start + Math.max(1, (lease.end - lease.start) / 4);
+        lease.expiresAt = System.currentTimeMillis() + leaseTtlMillis;
+        leases.put(lease.id, lease);
+        LOGGER.info(String.format("Leased [%d, %d) to %s as lease %d, unleased: %d",
+                lease.start, lease.end, workerId, lease.id, unleased));
+        response.put(OK).put(ACQUIRE).putLong(lease.id).putInt(lease.start).putInt(lease.end)
+                .putInt(lease.highWater).putInt((int) leaseTtlMillis).putInt(unleased);
+    }
+
+    private int[] takeFree(int blockSize) {
+        int[] free = freeRanges.poll();
+        int size = Math.min(blockSize, free[1] - free[0]);
+        if (unleased < lowInventoryThreshold) {
+            size = Math.min(size, LOW_INVENTORY_BLOCK);
+        }
+        if (free[0] + size < free[1]) {
+            freeRanges.addFirst(new int[]{free[0] + size, free[1]});
+        }
+        unleased -= size;
+        return new int[]{free[0], free[0] + size};
+    }
+
+    // Splits off the unclaimed upper half of the lease with the most unclaimed tickets. The victim
+    // learns its shorter end on its next renewal; it never issued past its high-water mark, so nothing
+    // in the stolen part can have been sold.
+    private int[] steal(String workerId) {
+        Lease victim = null;
+        for (Lease lease : leases.values()) {
+            if (victim == null || lease.end - lease.highWater > victim.end - victim.highWater) {
+                victim = lease;
+            }
+        }
+        if (victim == null || victim.end - victim.highWater < 2) {
+            return null;
+        }
+        int cut = victim.end - (victim.end - victim.highWater) / 2;
+        int[] stolen = {cut, victim.end};
+        LOGGER.info(String.format("%s stole [%d, %d) from lease %d held by %s",
+                workerId, cut, victim.end, victim.id, victim.workerId));
+        victim.end = cut;
+        return stolen;
+    }
+
+    private synchronized void renew(ByteBuffer response, long leaseId, int position, int claim) {
+        Lease lease = leases.get(leaseId);
+        if (lease == null) {
+            response.put(EXPIRED).put(RENEW);
+            return;
+        }
+        if (position < lease.position || position > lease.highWater) {
+            response.put(BAD_REQUEST).put(RENEW);
+            return;
+        }
+        issued += position - lease.position;
+        lease.position = position;
+        lease.highWater = Math.max(lease.highWater, Math.min(claim, lease.end));
+        lease.expiresAt = System.currentTimeMillis() + leaseTtlMillis;
+        response.put(OK).put(RENEW).putInt(lease.end).putInt(lease.highWater)
+                .putInt((int) leaseTtlMillis).putInt(unleased);
+    }
+
+    private synchronized void giveBack(ByteBuffer response, long leaseId, int position) {
+        Lease lease = leases.get(leaseId);
+        if (lease == null) {
+            response.put(EXPIRED).put(RETURN);
+            return;
+        }
+        if (position < lease.position || position > lease.highWater) {
+            response.put(BAD_REQUEST).put(RETURN);
+            return;
+        }
+        leases.remove(leaseId);
+        issued += position - lease.position;
+        free(position, lease.end);
+        LOGGER.info(String.format("%s returned lease %d, issued up to %d, unleased: %d",
+                lease.workerId, lease.id, position, unleased));
+        response.put(OK).put(RETURN).putInt(unleased);
+    }
+
+    // Numbers a worker was issued and never sold; they are trusted to be out of every lease by now
+    private synchronized void restock(ByteBuffer response, int from, int to) {
+        if (from < 1 || to > totalTickets + 1 || from >= to || to - from > issued) {
+            response.put(BAD_REQUEST).put(RESTOCK);
+            return;
+        }
+        issued -= to - from;
+        free(from, to);
+        LOGGER.info(String.format("Restocked [%d, %d), unleased: %d", from, to, unleased));
+        response.put(OK).put(RESTOCK).putInt(unleased);
+    }
+
+    // A holder that stopped renewing may have issued anything below its high-water mark, so only the
+    // part above it is reused; the claimed but unreported tickets are written off
+    private synchronized void expireLeases() {
+        long now = System.currentTimeMillis();
+        Iterator<Lease> iterator = leases.values().iterator();
+        while (iterator.hasNext()) {
+            Lease lease = iterator.next();
+            if (lease.expiresAt > now) {
+                continue;
+            }
+            iterator.remove();
+            writtenOff += lease.highWater - lease.position;
+            free(lease.highWater, lease.end);
+            LOGGER.warning(String.format("Lease %d held by %s expired: reclaimed [%d, %d), wrote off %d tickets",
+                    lease.id, lease.workerId, lease.highWater, lease.end, lease.highWater - lease.position));
+        }
+    }
+
+    private void free(int from, int to) {
+        if (from < to) {
+            freeRanges.addFirst(new int[]{from, to});
+            unleased += to - from;
+        }
+    }
+
+    private synchronized void status(ByteBuffer response) {
+        int claimed = 0;
+        for (Lease lease : leases.values()) {
+            claimed += lease.highWater - lease.position;
+        }
+        response.put(OK).put(STATUS).putInt(totalTickets).putInt(unleased).putInt(leases.size())
+                .putInt(claimed).putInt(issued).putInt(writtenOff);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Coordinator{total=%d, unleased=%d, leases=%d, issued=%d, writtenOff=%d}",
+                totalTickets, unleased, leases.size(), issued, writtenOff);
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        server.close();
+    }
+
+    private static class Lease {
+        private final long id;
+        private final String workerId;
+        private final int start;
+        private int end;
+        private int highWater;
+        private int position;
+        private long expiresAt;
+
+        Lease(long id, String workerId, int start, int end) {
+            this.id = id;
+            this.workerId = workerId;
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+    }
+
+    // Requests are tiny and the state is behind one monitor, so they are answered inline on the event loop
+    private class CoordinatorConnectionHandler implements ConnectionHandler {
+        @Override
+        public void onRead(Connection connection, ByteBuffer buffer) {
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt(buffer.position());
+                if (length < 5 || length > MAX_FRAME_BYTES) {
+                    connection.closeAfterWrites();
+                    return;
+                }
+                if (buffer.remaining() < 4 + length) {
+                    return;
+                }
+                int frameEnd = buffer.position() + 4 + length;
+                buffer.getInt();
+                int requestId = buffer.getInt();
+                byte opcode = buffer.get();
+                ByteBuffer response = ByteBuffer.allocate(64);
+                response.putInt(0).putInt(requestId);
+                try {
+                    switch (opcode) {
+                        case ACQUIRE: {
+                            byte[] worker = new byte[buffer.get() & 0xFF];
+                            buffer.get(worker);
+                            acquire(response, new String(worker, StandardCharsets.UTF_8), buffer.getInt());
+                            break;
+                        }
+                        case RENEW:
+                            renew(response, buffer.getLong(), buffer.getInt(), buffer.getInt());
+                            break;
+                        case RETURN:
+                            giveBack(response, buffer.getLong(), buffer.getInt());
+                            break;
+                        case RESTOCK:
+                            restock(response, buffer.getInt(), buffer.getInt());
+                            break;
+                        case STATUS:
+                            status(response);
+                            break;
+                        default:
+                            response.put(BAD_REQUEST).put(opcode);
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    response.position(8);
+                    response.put(BAD_REQUEST).put(opcode);
+                }
+                buffer.position(frameEnd);
+                response.putInt(0, response.position() - 4);
+                connection.send(response.flip());
+            }
+        }
+    }
+
+    // Usage: InventoryCoordinator <port> <totalTickets> [leaseTtlMillis]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: InventoryCoordinator <port> <totalTickets> [leaseTtlMillis]");
+            return;
+        }
+        long leaseTtlMillis = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+        InventoryCoordinator coordinator = new InventoryCoordinator(
+                new InetSocketAddress(Integer.parseInt(args[0])), Integer.parseInt(args[1]), leaseTtlMillis);
+        Runtime.getRuntime().addShutdownHook(new Thread(coordinator::close));
+        coordinator.start();
+        System.out.println("Coordinating " + args[1] + " tickets on port " + coordinator.getPort());
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.myproject.core;
+
+import com.example.myproject.model.TicketPool;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Resizes a run's producer and consumer pools while the sale is going. Every interval it compares pool
+// occupancy with a target fill and looks at what the actors ran into since the last look: producers timing
+// out on a full pool, consumers timing out or waiting on an empty one, and sales per second. One actor is
+// added or retired per decision, always within the configured bounds, and the interval after a change is
+// skipped so the next decision sees its effect. In the band around the target both sides are grown
+// together while that still raises throughput.
+public class ActorAutoscaler {
+    private static final Logger LOGGER = Logger.getLogger(ActorAutoscaler.class.getName());
+    // Occupancy within this distance of the target counts as on target
+    private static final double FILL_BAND = 0.2;
+    // Mean consumer wait that counts as starving when no consumer has timed out yet
+    private static final long STARVED_WAIT_MILLIS = 20;
+    // A probe that raises throughput by less than this is not repeated
+    private static final double PROBE_GAIN = 1.05;
+
+    private final RunController runController;
+    private final TicketPool ticketPool;
+    private final int minProducers;
+    private final int maxProducers;
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final double targetFill;
+    private final long intervalMillis;
+
+    private ScheduledFuture<?> task;
+    private boolean cooling;
+    private double throughputBeforeProbe = -1;
+    private int lastConsumed;
+    private long lastProducerTimeouts;
+    private long lastConsumerTimeouts;
+    private long lastConsumerCalls;
+    private long lastConsumerWaitNanos;
+    private long lastSampleNanos;
+
+    public ActorAutoscaler(RunController runController, int minProducers, int maxProducers,
+                           int minConsumers, int maxConsumers, double targetFill, long intervalMillis) {
+        if (minProducers < 0 || minConsumers < 0 || maxProducers < minProducers || maxConsumers < minConsumers
+                || maxProducers == 0 || maxConsumers == 0) {
+            throw new IllegalArgumentException("Actor bounds must satisfy 0 <= min <= max and max > 0");
+        }
+        if (targetFill <= 0 || targetFill >= 1) {
+            throw new IllegalArgumentException("Target fill must be between 0 and 1");
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Autoscaling interval must be positive");
+        }
+        this.runController = runController;
+        this.ticketPool = runController.getTicketPool();
+        this.minProducers = minProducers;
+        this.maxProducers = maxProducers;
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.targetFill = targetFill;
+        this.intervalMillis = intervalMillis;
+    }
+
+    // Brings the actor counts inside the bounds straight away, then keeps adjusting until stopped or the run ends
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if (task != null) {
+            return;
+        }
+        int producers = runController.getActiveProducerCount();
+        int consumers = runController.getActiveConsumerCount();
+        if (producers < minProducers || producers > maxProducers) {
+            runController.setProducerCount(Math.max(minProducers, Math.min(maxProducers, producers)));
+        }
+        if (consumers < minConsumers || consumers > maxConsumers) {
+            runController.setConsumerCount(Math.max(minConsumers, Math.min(maxConsumers, consumers)));
+        }
+        resetWindow();
+        LOGGER.info(String.format("Autoscaling %s: producers %d-%d, consumers %d-%d, target fill %.0f%%, every %d ms",
+                ticketPool.getEventName(), minProducers, maxProducers, minConsumers, maxConsumers,
+                targetFill * 100, intervalMillis));
+        task = scheduler.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        ticketPool.getCompletion().thenRun(this::stop);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+            LOGGER.info("Autoscaling stopped for " + ticketPool.getEventName());
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return task != null;
+    }
+
+    private void resetWindow() {
+        lastConsumed = ticketPool.getTicketsConsumed();
+        lastProducerTimeouts = ticketPool.getProducerTimeouts();
+        lastConsumerTimeouts = ticketPool.getConsumerTimeouts();
+        lastConsumerCalls = ticketPool.getConsumerCalls();
+        lastConsumerWaitNanos = ticketPool.getConsumerWaitNanos();
+        lastSampleNanos = System.nanoTime();
+    }
+
+    private synchronized void tick() {
+        try {
+            if (task == null || ticketPool.isRunComplete()) {
+                return;
+            }
+            decide();
+        } catch (RuntimeException e) {
+            // A failed decision must not cancel the schedule
+            LOGGER.log(Level.WARNING, "Autoscaling decision failed", e);
+        }
+    }
+
+    private void decide() {
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        double throughput = (ticketPool.getTicketsConsumed() - lastConsumed) / seconds;
+        long producerTimeouts = ticketPool.getProducerTimeouts() - lastProducerTimeouts;
+        long consumerTimeouts = ticketPool.getConsumerTimeouts() - lastConsumerTimeouts;
+        long consumerCalls = ticketPool.getConsumerCalls() - lastConsumerCalls;
+        long consumerWaitMillis = consumerCalls == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMillis((ticketPool.getConsumerWaitNanos() - lastConsumerWaitNanos) / consumerCalls);
+        double fill = (double) (ticketPool.getAvailableTickets() + ticketPool.getTicketsHeld()) / ticketPool.getMaxCapacity();
+        resetWindow();
+        if (cooling) {
+            cooling = false;
+            return;
+        }
+
+        int producers = runController.getActiveProducerCount();
+        int consumers = runController.getActiveConsumerCount();
+        // Producers that have issued every ticket exit on their own, so only the consumer side is left to tune
+        boolean supplyFinished = ticketPool.isAllTicketsProduced();
+        String metrics = String.format("fill %.0f%% (target %.0f%%), %.1f sales/s, producer timeouts %d, "
+                        + "consumer timeouts %d, mean consumer wait %d ms",
+                fill * 100, targetFill * 100, throughput, producerTimeouts, consumerTimeouts, consumerWaitMillis);
+
+        boolean backingUp = fill >= targetFill + FILL_BAND || producerTimeouts > 0;
+        boolean starving = fill <= targetFill - FILL_BAND
+                && (consumerTimeouts > 0 || consumerWaitMillis >= STARVED_WAIT_MILLIS);
+        if (backingUp) {
+            throughputBeforeProbe = -1;
+            if (consumers < maxConsumers) {
+                apply("added a consumer, pool is backing up", metrics, runController::addConsumer);
+            } else if (producers > minProducers && !supplyFinished) {
+                apply("retired a producer, pool is backing up and consumers are at their limit", metrics,
+                        runController::retireProducer);
+            } else {
+                LOGGER.fine("Autoscaler at its bounds with the pool backing up: " + metrics);
+            }
+        } else if (starving && !supplyFinished) {
+            throughputBeforeProbe = -1;
+            if (producers < maxProducers) {
+                apply("added a producer, consumers are starving", metrics, runController::addProducer);
+            } else if (consumers > minConsumers) {
+                apply("retired a consumer, consumers are starving and producers are at their limit", metrics,
+                        runController::retireConsumer);
+            } else {
+                LOGGER.fine("Autoscaler at its bounds with consumers starving: " + metrics);
+            }
+        } else if (Math.abs(fill - targetFill) < FILL_BAND && !supplyFinished
+                && producers < maxProducers && consumers < maxConsumers
+                && (throughputBeforeProbe < 0 || throughput >= throughputBeforeProbe * PROBE_GAIN)) {
+            // On target: grow both sides together for as long as each step still pays off
+            throughputBeforeProbe = throughput;
+            apply("added a producer and a consumer to probe for more throughput", metrics, () -> {
+                runController.addProducer();
+                runController.addConsumer();
+            });
+        } else {
+            LOGGER.fine("Autoscaler holding: " + metrics);
+        }
+    }
+
+    private void apply(String decision, String metrics, Runnable change) {
+        change.run();
+        cooling = true;
+        LOGGER.info(String.format("Autoscaler %s (%s) -> %d producers, %d consumers", decision, metrics,
+                runController.getActiveProducerCount(), runController.getActiveConsumerCount()));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Autoscaler{running=%b, producers=%d-%d, consumers=%d-%d, targetFill=%.2f}",
+                task != null, minProducers, maxProducers, minConsumers, maxConsumers, targetFill);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.myproject.core;
+
+import com.example.myproject.actor.TicketConsumer;
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.config.Configuration;
+import com.example.myproject.model.TicketPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+// Owns the actors of a running sale so rates, pool capacity and actor counts can be changed mid-run.
+// Actors are stopped by interrupting their tasks, so a sleeping or waiting actor exits at once; every
+// actor is stopped as soon as the pool signals the end of the run.
+public class RunController {
+    private static final Logger LOGGER = Logger.getLogger(RunController.class.getName());
+
+    private final TicketPool ticketPool;
+    private final ExecutorService executorService;
+    private final Configuration config;
+
+    // Every actor started during the run, kept for the final statistics
+    private final List<TicketProducer> producers = new ArrayList<>();
+    private final List<TicketConsumer> consumers = new ArrayList<>();
+
+    // Actors that are still running, newest last so they are retired first
+    private final Deque<TicketProducer> activeProducers = new ArrayDeque<>();
+    private final Deque<TicketConsumer> activeConsumers = new ArrayDeque<>();
+    private final Map<Runnable, Future<?>> actorTasks = new HashMap<>();
+
+    private int releaseRate;
+    private int retrievalRate;
+    private int leaseBlockSize = 0;
+    private int nextProducerNumber = 1;
+    private int nextConsumerNumber = 1;
+    private int nextVipNumber = 1;
+    private boolean started = false;
+
+    public RunController(TicketPool ticketPool, ExecutorService executorService, Configuration config) {
+        this.ticketPool = ticketPool;
+        this.executorService = executorService;
+        this.config = config;
+        this.releaseRate = config.getTicketReleaseRate();
+        this.retrievalRate = config.getCustomerRetrievalRate();
+    }
+
+    // Must be called before actors are added so they are all stopped when the pool signals the end of the run
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        ticketPool.getCompletion().thenAccept(outcome -> stopAll());
+    }
+
+    public synchronized void start(List<TicketProducer> initialProducers, List<TicketConsumer> initialConsumers) {
+        start();
+        for (TicketProducer producer : initialProducers) {
+            launchProducer(producer);
+        }
+        for (TicketConsumer consumer : initialConsumers) {
+            launchConsumer(consumer);
+        }
+        nextProducerNumber = initialProducers.size() + 1;
+        nextConsumerNumber = initialConsumers.size() + 1;
+        nextVipNumber = (int) initialConsumers.stream().filter(TicketConsumer::isPriority).count() + 1;
+    }
+
+    public synchronized void setReleaseRate(int newReleaseRate) {
+        if (newReleaseRate <= 0) {
+            throw new IllegalArgumentException("Ticket release rate must be positive");
+        }
+        for (TicketProducer producer : activeProducers) {
+            producer.setReleaseRate(newReleaseRate);
+        }
+        LOGGER.info(String.format("Ticket release rate changed from %d to %d ms", releaseRate, newReleaseRate));
+        releaseRate = newReleaseRate;
+    }
+
+    public synchronized void setRetrievalRate(int newRetrievalRate) {
+        if (newRetrievalRate <= 0) {
+            throw new IllegalArgumentException("Customer retrieval rate must be positive");
+        }
+        for (TicketConsumer consumer : activeConsumers) {
+            consumer.setRetrievalRate(newRetrievalRate);
+        }
+        LOGGER.info(String.format("Customer retrieval rate changed from %d to %d ms", retrievalRate, newRetrievalRate));
+        retrievalRate = newRetrievalRate;
+    }
+
+    // Applies to producers added from now on; 0 goes back to numbering every ticket from the shared counter
+    public synchronized void setLeaseBlockSize(int newLeaseBlockSize) {
+        if (newLeaseBlockSize < 0) {
+            throw new IllegalArgumentException("Lease block size cannot be negative");
+        }
+        LOGGER.info(String.format("Producer lease block size changed from %d to %d", leaseBlockSize, newLeaseBlockSize));
+        leaseBlockSize = newLeaseBlockSize;
+    }
+
+    public void setMaxCapacity(int newCapacity) {
+        ticketPool.setMaxCapacity(newCapacity);
+    }
+
+    public synchronized void setProducerCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Producer count cannot be negative");
+        }
+        while (activeProducers.size() < count) {
+            addProducer();
+        }
+        while (activeProducers.size() > count) {
+            retireProducer();
+        }
+    }
+
+    public synchronized void setConsumerCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Consumer count cannot be negative");
+        }
+        while (activeConsumers.size() < count) {
+            addConsumer();
+        }
+        while (activeConsumers.size() > count) {
+            retireConsumer();
+        }
+    }
+
+    public synchronized TicketProducer addProducer() {
+        TicketProducer producer = new TicketProducer("Producer-" + nextProducerNumber++, ticketPool, releaseRate,
+                leaseBlockSize);
+        launchProducer(producer);
+        LOGGER.info("Added " + producer.getProducerId() + ", active producers: " + activeProducers.size());
+        return producer;
+    }
+
+    // Keeps roughly a quarter of the active consumers as VIPs, matching the initial mix
+    public synchronized TicketConsumer addConsumer() {
+        long activeVips = activeConsumers.stream().filter(TicketConsumer::isPriority).count();
+        TicketConsumer consumer;
+        if (activeVips < (activeConsumers.size() + 1) / 4) {
+            consumer = new TicketConsumer.VIPTicketConsumer("Priority-Consumer-" + nextVipNumber++,
+                    ticketPool, retrievalRate, config.getTotalTickets() / 8);
+        } else {
+            consumer = new TicketConsumer("Consumer-" + nextConsumerNumber++, ticketPool, retrievalRate, false);
+        }
+        launchConsumer(consumer);
+        LOGGER.info("Added " + consumer.getConsumerId() + ", active consumers: " + activeConsumers.size());
+        return consumer;
+    }
+
+    public synchronized boolean retireProducer() {
+        TicketProducer producer = activeProducers.pollLast();
+        if (producer == null) {
+            return false;
+        }
+        stopActor(producer);
+        LOGGER.info("Retired " + producer.getProducerId() + ", active producers: " + activeProducers.size());
+        return true;
+    }
+
+    public synchronized boolean retireConsumer() {
+        TicketConsumer consumer = activeConsumers.pollLast();
+        if (consumer == null) {
+            return false;
+        }
+        stopActor(consumer);
+        LOGGER.info("Retired " + consumer.getConsumerId() + ", active consumers: " + activeConsumers.size());
+        return true;
+    }
+
+    public synchronized void stopAll() {
+        for (TicketProducer producer : producers) {
+            stopActor(producer);
+        }
+        for (TicketConsumer consumer : consumers) {
+            stopActor(consumer);
+        }
+        activeProducers.clear();
+        activeConsumers.clear();
+    }
+
+    // Ends the run early; the pool's completion signal then stops every actor
+    public void cancel() {
+        ticketPool.cancel();
+    }
+
+    private void stopActor(Runnable actor) {
+        if (actor instanceof TicketProducer) {
+            ((TicketProducer) actor).stop();
+        } else {
+            ((TicketConsumer) actor).stop();
+        }
+        Future<?> task = actorTasks.remove(actor);
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+
+    private void launchProducer(TicketProducer producer) {
+        producers.add(producer);
+        activeProducers.addLast(producer);
+        launch(producer);
+    }
+
+    private void launchConsumer(TicketConsumer consumer) {
+        consumers.add(consumer);
+        activeConsumers.addLast(consumer);
+        launch(consumer);
+    }
+
+    // An actor that dies on an unexpected exception fails the run instead of leaving it to stall
+    private void launch(Runnable actor) {
+        actorTasks.put(actor, executorService.submit(() -> {
+            try {
+                actor.run();
+            } catch (RuntimeException e) {
+                LOGGER.severe("Actor failed: " + e.getMessage());
+                ticketPool.fail(e);
+                throw e;
+            }
+        }));
+    }
+
+    public TicketPool getTicketPool() {
+        return ticketPool;
+    }
+
+    public synchronized List<TicketProducer> getProducers() {
+        return new ArrayList<>(producers);
+    }
+
+    public synchronized List<TicketConsumer> getConsumers() {
+        return new ArrayList<>(consumers);
+    }
+
+    public synchronized int getActiveProducerCount() {
+        return activeProducers.size();
+    }
+
+    public synchronized int getActiveConsumerCount() {
+        return activeConsumers.size();
+    }
+
+    public synchronized int getReleaseRate() {
+        return releaseRate;
+    }
+
+    public synchronized int getLeaseBlockSize() {
+        return leaseBlockSize;
+    }
+
+    public synchronized int getRetrievalRate() {
+        return retrievalRate;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Run{producers=%d, consumers=%d, releaseRate=%d, retrievalRate=%d, capacity=%d, available=%d}",
+                activeProducers.size(), activeConsumers.size(), releaseRate, retrievalRate,
+                ticketPool.getMaxCapacity(), ticketPool.getAvailableTickets());
+    }
+}
@@ -2,11 +2,15 @@ package com.example.myproject.core;
 
 import com.example.myproject.actor.TicketProducer;
 import com.example.myproject.actor.TicketConsumer;
+import com.example.myproject.model.AvailabilitySnapshot;
 import com.example.myproject.model.TicketPool;
 import com.example.myproject.config.Configuration;
+import com.example.myproject.ledger.SalesLedger;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.logging.*;
 import java.util.Scanner;
@@ -18,12 +22,24 @@ import java.util.Date;
 
 public class TicketingSystem {
     private static final Logger LOGGER = Logger.getLogger(TicketingSystem.class.getName());
+    // TicketPool logs to its own console handler only, so the event log file is attached to it directly
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
     private static ExecutorService executorService;
     private static ScheduledExecutorService monitorService;
     private static final String CONFIG_FILE = "last_config.properties";
     private static String eventName;
     private static final Random random = new Random();
     private static FileHandler currentFileHandler;
+    private static ActorAutoscaler autoscaler;
+    private static SalesLedger salesLedger;
+    private static final String LEDGER_SUFFIX = "_sales.ledger";
+    // Default autoscaling bounds; the initial random counts always fall inside them
+    private static final int MIN_PRODUCERS = 1;
+    private static final int MAX_PRODUCERS = 10;
+    private static final int MIN_CONSUMERS = 2;
+    private static final int MAX_CONSUMERS = 20;
+    private static final double TARGET_FILL = 0.5;
+    private static final long AUTOSCALE_INTERVAL_MILLIS = 1000;
 
     static {
         setupInitialLogger();
@@ -31,7 +47,8 @@ public class TicketingSystem {
 
     // Initialize executor services
     private static void initializeExecutors() {
-        executorService = new ThreadPoolExecutor(20, 50, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        // Every actor holds a thread for the whole run, so actors added mid-run must never queue behind others
+        executorService = new ThreadPoolExecutor(20, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
         monitorService = Executors.newSingleThreadScheduledExecutor();
     }
 
@@ -88,6 +105,7 @@ public class TicketingSystem {
             String logFileName = eventName + "_ticketing.log";
 
             if (currentFileHandler != null) {
+                POOL_LOGGER.removeHandler(currentFileHandler);
                 currentFileHandler.close();
             }
 
@@ -122,6 +140,7 @@ public class TicketingSystem {
 
             currentFileHandler.setFormatter(detailedFormatter);
             rootLogger.addHandler(currentFileHandler);
+            POOL_LOGGER.addHandler(currentFileHandler);
 
             // Set root logger to INFO level to capture all relevant messages
             rootLogger.setLevel(Level.INFO);
@@ -225,6 +244,7 @@ public class TicketingSystem {
     private static void resetLogConfiguration() {
         try {
             if (currentFileHandler != null) {
+                POOL_LOGGER.removeHandler(currentFileHandler);
                 currentFileHandler.close();
             }
 
@@ -255,6 +275,16 @@ public class TicketingSystem {
                 }
             }
 
+            // Clear all sales ledgers
+            File[] ledgerFiles = new File(".").listFiles((_, name) -> name.endsWith(LEDGER_SUFFIX));
+            if (ledgerFiles != null) {
+                for (File ledgerFile : ledgerFiles) {
+                    if (ledgerFile.delete()) {
+                        System.out.println("Deleted sales ledger: " + ledgerFile.getName());
+                    }
+                }
+            }
+
             // Clear all JSON configuration files
             File[] jsonFiles = new File(".").listFiles((_, name) ->
                     name.endsWith(".json") && !name.equals("last_config.properties"));
@@ -337,45 +367,147 @@ public class TicketingSystem {
         LOGGER.info("Starting ticket pool monitoring");
         return monitorService.scheduleAtFixedRate(() -> {
             try {
+                AvailabilitySnapshot snapshot = ticketPool.getAvailability();
                 LOGGER.info(String.format("Pool Status - Available: %d, Produced: %d, Consumed: %d",
-                        ticketPool.getAvailableTickets(),
+                        snapshot.getAvailable(),
                         ticketPool.getTicketsProduced(),
-                        ticketPool.getTicketsConsumed()));
+                        snapshot.getSold()));
             } catch (Exception e) {
                 LOGGER.severe("Error in monitoring task: " + e.getMessage());
             }
         }, 0, 5, TimeUnit.SECONDS);
     }
 
-    private static void startActors(List<TicketProducer> producers, List<TicketConsumer> consumers) {
-        for (TicketProducer producer : producers) {
-            executorService.submit(producer);
-        }
-        for (TicketConsumer consumer : consumers) {
-            executorService.submit(consumer);
-        }
-    }
-
-    private static void waitForCompletion(TicketPool ticketPool, ScheduledFuture<?> monitorTask) {
+    // Returns as soon as the pool signals the end of the run; the timeout only paces console polling
+    private static TicketPool.RunOutcome waitForCompletion(TicketPool ticketPool, RunController runController,
+                                                          Scanner scanner) {
+        CompletableFuture<TicketPool.RunOutcome> completion = ticketPool.getCompletion();
         try {
-            while (!ticketPool.isAllTicketsConsumed()) {
-                Thread.sleep(1000);
+            while (true) {
+                handleLiveCommands(runController, scanner);
+                try {
+                    return completion.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Still selling
+                }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             LOGGER.warning("System interrupted while waiting for completion");
+            ticketPool.cancel();
+        } catch (ExecutionException e) {
+            LOGGER.warning("Run completion failed: " + e.getMessage());
+        } catch (IOException e) {
+            LOGGER.warning("Live commands unavailable: " + e.getMessage());
+            return completion.join();
         }
+        return ticketPool.getCompletion().getNow(TicketPool.RunOutcome.CANCELLED);
     }
 
-    private static void cleanup(List<TicketProducer> producers, List<TicketConsumer> consumers,
-                                ScheduledFuture<?> monitorTask) {
-        // Stop all producers and consumers
-        for (TicketProducer producer : producers) {
-            producer.stop();
+    // Applies any commands typed while the sale is running, without blocking on the console
+    private static void handleLiveCommands(RunController runController, Scanner scanner) throws IOException {
+        if (scanner == null) {
+            return;
         }
-        for (TicketConsumer consumer : consumers) {
-            consumer.stop();
+        while (System.in.available() > 0 && scanner.hasNextLine()) {
+            // Only the command word is case-insensitive; ticket and customer IDs are matched exactly
+            String[] parts = scanner.nextLine().trim().split("\\s+");
+            try {
+                switch (parts[0].toLowerCase()) {
+                    case "release":
+                        runController.setReleaseRate(Integer.parseInt(parts[1]));
+                        break;
+                    case "retrieval":
+                        runController.setRetrievalRate(Integer.parseInt(parts[1]));
+                        break;
+                    case "capacity":
+                        runController.setMaxCapacity(Integer.parseInt(parts[1]));
+                        break;
+                    case "lease":
+                        runController.setLeaseBlockSize(Integer.parseInt(parts[1]));
+                        break;
+                    case "producers":
+                        // Setting an actor count by hand turns autoscaling off so the two do not fight over it
+                        stopAutoscaling();
+                        runController.setProducerCount(Integer.parseInt(parts[1]));
+                        break;
+                    case "consumers":
+                        stopAutoscaling();
+                        runController.setConsumerCount(Integer.parseInt(parts[1]));
+                        break;
+                    case "autoscale":
+                        handleAutoscaleCommand(runController, parts);
+                        break;
+                    case "ticket":
+                        System.out.println(salesLedger == null ? "No sales ledger is open"
+                                : Objects.toString(salesLedger.findTicket(parts[1]), "No sale recorded for " + parts[1]));
+                        continue;
+                    case "customer":
+                        if (salesLedger == null) {
+                            System.out.println("No sales ledger is open");
+                        } else {
+                            List<SalesLedger.Sale> sales = salesLedger.findPurchases(parts[1]);
+                            sales.forEach(System.out::println);
+                            System.out.println(sales.size() + " ticket(s) bought by " + parts[1]);
+                        }
+                        continue;
+                    case "cancel":
+                        runController.cancel();
+                        break;
+                    case "status":
+                        break;
+                    default:
+                        printLiveCommands();
+                        continue;
+                }
+                System.out.println(runController);
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                System.out.println("Error: Please enter a valid number.");
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void printLiveCommands() {
+        System.out.println("Live commands: release <ms> | retrieval <ms> | capacity <n> | lease <n> | producers <n> | consumers <n> | "
+                + "autoscale on|off|<minProducers> <maxProducers> <minConsumers> <maxConsumers> | ticket <ticketId> | "
+                + "customer <customerId> | cancel | status");
+    }
+
+    private static void handleAutoscaleCommand(RunController runController, String[] parts) {
+        if (parts[1].equalsIgnoreCase("off")) {
+            stopAutoscaling();
+        } else if (parts[1].equalsIgnoreCase("on")) {
+            startAutoscaling(runController, MIN_PRODUCERS, MAX_PRODUCERS, MIN_CONSUMERS, MAX_CONSUMERS);
+        } else {
+            startAutoscaling(runController, Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
         }
+        System.out.println(autoscaler);
+    }
+
+    private static void startAutoscaling(RunController runController, int minProducers, int maxProducers,
+                                         int minConsumers, int maxConsumers) {
+        ActorAutoscaler replacement = new ActorAutoscaler(runController, minProducers, maxProducers,
+                minConsumers, maxConsumers, TARGET_FILL, AUTOSCALE_INTERVAL_MILLIS);
+        stopAutoscaling();
+        autoscaler = replacement;
+        autoscaler.start(monitorService);
+    }
+
+    private static void stopAutoscaling() {
+        if (autoscaler != null) {
+            autoscaler.stop();
+        }
+    }
+
+    private static void cleanup(RunController runController, ScheduledFuture<?> monitorTask) {
+        stopAutoscaling();
+        autoscaler = null;
+
+        // Stop all producers and consumers, including any added while the sale was running
+        runController.stopAll();
 
         // Cancel the monitoring task
         if (monitorTask != null) {
@@ -384,6 +516,30 @@ public class TicketingSystem {
 
         // Shutdown executor services
         shutdownExecutors();
+
+        // Closed after the actors have stopped so the last sales are written before the file is
+        closeSalesLedger();
+    }
+
+    private static void openSalesLedger(TicketPool ticketPool) {
+        try {
+            salesLedger = SalesLedger.open(Path.of(eventName + LEDGER_SUFFIX));
+            ticketPool.setSaleListener(salesLedger);
+        } catch (IOException e) {
+            LOGGER.warning("Sales ledger unavailable, sales will only be logged: " + e.getMessage());
+        }
+    }
+
+    private static void closeSalesLedger() {
+        if (salesLedger == null) {
+            return;
+        }
+        try {
+            salesLedger.close();
+        } catch (IOException e) {
+            LOGGER.severe("Error closing sales ledger: " + e.getMessage());
+        }
+        salesLedger = null;
     }
 
     private static void shutdownExecutors() {
@@ -413,6 +569,10 @@ public class TicketingSystem {
     }
 
     public static void startSystem(Configuration config) {
+        startSystem(config, null);
+    }
+
+    public static void startSystem(Configuration config, Scanner scanner) {
         LOGGER.info("Starting ticketing system for event: " + config.getEventName());
 
         // Initialize new executor services for each start
@@ -420,6 +580,7 @@ public class TicketingSystem {
         LOGGER.info("Executor services initialized");
 
         TicketPool ticketPool = new TicketPool(eventName, config.getMaxTicketCapacity(), config.getTotalTickets());
+        openSalesLedger(ticketPool);
         LOGGER.info("Ticket pool created with capacity: " + config.getMaxTicketCapacity());
 
         // Initialize producers and consumers
@@ -429,23 +590,32 @@ public class TicketingSystem {
 
         // Start monitoring
         ScheduledFuture<?> monitorTask = startMonitoring(ticketPool);
+        RunController runController = new RunController(ticketPool, executorService, config);
 
         try {
             // Start producers and consumers
-            startActors(producers, consumers);
+            runController.start(producers, consumers);
             LOGGER.info("Started all producers and consumers");
+            startAutoscaling(runController, MIN_PRODUCERS, MAX_PRODUCERS, MIN_CONSUMERS, MAX_CONSUMERS);
+            if (scanner != null) {
+                printLiveCommands();
+            }
 
             // Wait for completion
-            waitForCompletion(ticketPool, monitorTask);
+            TicketPool.RunOutcome outcome = waitForCompletion(ticketPool, runController, scanner);
+            LOGGER.info("Run completed: " + outcome);
 
             // Print final statistics
-            printFinalStatistics(ticketPool, producers, consumers);
+            printFinalStatistics(ticketPool, runController.getProducers(), runController.getConsumers());
         } catch (Exception e) {
             LOGGER.severe("Error during system execution: " + e.getMessage());
+            ticketPool.fail(e);
         } finally {
             // Cleanup
-            cleanup(producers, consumers, monitorTask);
-            LOGGER.info("System cleanup completed");
+            long cleanupStarted = System.nanoTime();
+            cleanup(runController, monitorTask);
+            LOGGER.info(String.format("System cleanup completed in %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cleanupStarted)));
         }
     }
 
@@ -536,7 +706,7 @@ public class TicketingSystem {
                     System.out.println("Type 'start' to begin or 'back' to return to menu:");
                     String input = scanner.nextLine().trim().toLowerCase();
                     if (input.equals("start")) {
-                        startSystem(config);
+                        startSystem(config, scanner);
 
                         String nextAction = scanner.nextLine().trim().toLowerCase();
                         if (nextAction.equals("stop")) {
@@ -0,0 +1,412 @@
+package com.example.myproject.ledger;
+
+import com.example.myproject.model.SaleListener;
+import com.example.myproject.model.Ticket;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Persistent record of sold tickets with two indexes: ticket ID to sale, and customer (in sorted order, for
+// range scans) to their sales in the order they were made. The pool only queues each sale; a writer thread appends queued sales to the ledger file
+// in batches, forces the batch to disk and then indexes it, so a sale shows up in lookups within one flush
+// interval and never before it is durable. Opening an existing ledger replays it into the indexes; a
+// record cut short by a crash is dropped and the file truncated back to the last complete one.
+//
+// File: magic:int32 | version:int32 | records, each vip:u8 | soldMillis:int64 | ticketId:str16 | customer:str16
+// Ticket IDs repeat across runs of the same event: a customer keeps every sale from every run, while a
+// ticket lookup finds the latest sale of that ID.
+public class SalesLedger implements SaleListener, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SalesLedger.class.getName());
+    public static final int MAGIC = 0x544C4447; // "TLDG"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+    // Larger than the biggest possible record, so every record fits in one chunk
+    private static final int REPLAY_CHUNK_BYTES = 1024 * 1024;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Wake the writer early once this many sales are waiting
+    private static final int EARLY_FLUSH_SALES = 4096;
+
+    public static class Sale {
+        private final String ticketId;
+        private final String customerId;
+        private final boolean vip;
+        private final long soldMillis;
+
+        Sale(String ticketId, String customerId, boolean vip, long soldMillis) {
+            this.ticketId = ticketId;
+            this.customerId = customerId;
+            this.vip = vip;
+            this.soldMillis = soldMillis;
+        }
+
+        public String getTicketId() {
+            return ticketId;
+        }
+
+        public String getCustomerId() {
+            return customerId;
+        }
+
+        public boolean isVip() {
+            return vip;
+        }
+
+        public long getSoldMillis() {
+            return soldMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Sale{ticket='%s', customer='%s', vip=%b, soldAt=%tF %<tT}", ticketId, customerId, vip, soldMillis);
+        }
+    }
+
+    // One customer's sales; only the writer adds or removes, readers take a copy
+    private static class CustomerSales {
+        private final List<Sale> sales = new ArrayList<>(4);
+
+        synchronized void add(Sale sale) {
+            sales.add(sale);
+        }
+
+        synchronized void copyTo(List<Sale> target) {
+            target.addAll(sales);
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ConcurrentLinkedQueue<Sale> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Map<String, Sale> byTicket;
+    private final ConcurrentSkipListMap<String, CustomerSales> byCustomer = new ConcurrentSkipListMap<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(256 * 1024);
+    private final Thread writer;
+    private volatile boolean closed;
+    // End of the last complete record; guarded by this, like the batch a failed flush left for the next one
+    private long writePosition;
+    private final List<Sale> unwritten = new ArrayList<>();
+    private volatile int saleCount;
+    private long recordsWritten;
+    private long batchesWritten;
+    private final long replayedRecords;
+    private final long replayMillis;
+
+    private SalesLedger(Path path, FileChannel channel, long replayedRecords, long replayMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.replayedRecords = replayedRecords;
+        this.replayMillis = replayMillis;
+        this.byTicket = new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE / 2, replayedRecords * 4 / 3 + 1024));
+        this.writer = new Thread(this::writeLoop, "sales-ledger");
+        this.writer.setDaemon(true);
+    }
+
+    // Opens or creates the ledger at path, replaying any sales already in it
+    public static SalesLedger open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long started = System.nanoTime();
+            List<Sale> replayed = new ArrayList<>();
+            long end = replay(path, channel, replayed);
+            SalesLedger ledger = new SalesLedger(path, channel, replayed.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            ledger.index(replayed);
+            ledger.writePosition = end;
+            ledger.writer.start();
+            LOGGER.info(String.format("Sales ledger %s opened with %d sales in %d ms",
+                    path, ledger.replayedRecords, ledger.replayMillis));
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Returns the offset just past the last complete record, writing a header first if the file is new
+    private static long replay(Path path, FileChannel channel, List<Sale> sales) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+            return HEADER_BYTES;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException(path + " is not a sales ledger");
+        }
+        // Read in chunks rather than mapping the file so it can be truncated afterwards on every platform
+        ByteBuffer chunk = ByteBuffer.allocate(REPLAY_CHUNK_BYTES);
+        byte[] scratch = new byte[256];
+        long complete = HEADER_BYTES;
+        long readPosition = HEADER_BYTES;
+        while (readPosition < size) {
+            int read = channel.read(chunk, readPosition);
+            if (read < 0) {
+                break;
+            }
+            readPosition += read;
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                int recordStart = chunk.position();
+                try {
+                    boolean vip = chunk.get() != 0;
+                    long soldMillis = chunk.getLong();
+                    String ticketId = readString(chunk, scratch);
+                    String customerId = readString(chunk, scratch);
+                    sales.add(new Sale(ticketId, customerId, vip, soldMillis));
+                    complete += chunk.position() - recordStart;
+                } catch (BufferUnderflowException e) {
+                    // The record continues in the next chunk
+                    chunk.position(recordStart);
+                    break;
+                }
+            }
+            chunk.compact();
+        }
+        if (complete < size) {
+            LOGGER.warning(String.format("Sales ledger %s ends in a partial record; truncating %d bytes",
+                    path, size - complete));
+            channel.truncate(complete);
+        }
+        return complete;
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Called by the pool on the selling thread: one allocation and one lock-free enqueue
+    @Override
+    public void onSale(String customerId, Ticket ticket, boolean vip) {
+        if (closed) {
+            LOGGER.warning("Sale of " + ticket.getTicketId() + " arrived after the ledger was closed");
+            return;
+        }
+        pending.offer(new Sale(ticket.getTicketId(), customerId, vip, System.currentTimeMillis()));
+        if (pendingCount.incrementAndGet() == EARLY_FLUSH_SALES) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+            try {
+                flush();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Could not write to sales ledger " + path, e);
+            }
+        }
+    }
+
+    // Writes, forces and indexes every sale queued before the call. If the write fails the file is cut back
+    // to the last complete record and the batch is kept, ahead of newer sales, for the next flush.
+    public synchronized void flush() throws IOException {
+        if (unwritten.isEmpty() && pending.isEmpty()) {
+            return;
+        }
+        List<Sale> batch = new ArrayList<>(unwritten);
+        unwritten.clear();
+        int taken = batch.size();
+        Sale sale;
+        while ((sale = pending.poll()) != null) {
+            batch.add(sale);
+        }
+        List<Sale> written = new ArrayList<>(batch.size());
+        // Too long to record; dropped for good, unlike the rest of a batch whose flush fails
+        List<Sale> skipped = new ArrayList<>();
+        long position = writePosition;
+        try {
+            for (Sale queued : batch) {
+                byte[] ticketId = queued.ticketId.getBytes(StandardCharsets.UTF_8);
+                byte[] customerId = queued.customerId.getBytes(StandardCharsets.UTF_8);
+                if (ticketId.length > MAX_FIELD_BYTES || customerId.length > MAX_FIELD_BYTES) {
+                    LOGGER.warning("Ticket or customer ID too long for the sales ledger: " + queued);
+                    skipped.add(queued);
+                    continue;
+                }
+                if (writeBuffer.remaining() < 13 + ticketId.length + customerId.length) {
+                    position = drainWriteBuffer(position);
+                }
+                writeBuffer.put((byte) (queued.vip ? 1 : 0)).putLong(queued.soldMillis)
+                        .putShort((short) ticketId.length).put(ticketId)
+                        .putShort((short) customerId.length).put(customerId);
+                written.add(queued);
+            }
+            position = drainWriteBuffer(position);
+            channel.force(false);
+        } catch (IOException e) {
+            writeBuffer.clear();
+            // The whole batch waits for the retry, including sales the loop never reached; only the dropped
+            // ones stop pending
+            for (Sale queued : batch) {
+                if (!skipped.contains(queued)) {
+                    unwritten.add(queued);
+                }
+            }
+            pendingCount.addAndGet(-skipped.size());
+            try {
+                channel.truncate(writePosition);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        writePosition = position;
+        pendingCount.addAndGet(-batch.size());
+        index(written);
+        recordsWritten += written.size();
+        batchesWritten++;
+        if (taken > 0) {
+            LOGGER.info(String.format("Sales ledger %s recovered: wrote %d sales kept from a failed flush", path, taken));
+        }
+    }
+
+    // Returns the position after the written bytes
+    private long drainWriteBuffer(long position) throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            position += channel.write(writeBuffer, position);
+        }
+        writeBuffer.clear();
+        return position;
+    }
+
+    // Only ever called by one thread at a time: open() before the writer starts, then flush()
+    private void index(List<Sale> sales) {
+        for (Sale sale : sales) {
+            byTicket.put(sale.ticketId, sale);
+            byCustomer.computeIfAbsent(sale.customerId, customer -> new CustomerSales()).add(sale);
+        }
+        saleCount += sales.size();
+    }
+
+    // The latest sale of the ID when it was sold in more than one run
+    public Sale findTicket(String ticketId) {
+        return byTicket.get(ticketId);
+    }
+
+    public List<Sale> findPurchases(String customerId) {
+        List<Sale> sales = new ArrayList<>();
+        CustomerSales customer = byCustomer.get(customerId);
+        if (customer != null) {
+            customer.copyTo(sales);
+        }
+        return sales;
+    }
+
+    // Sales of every customer from fromCustomer (inclusive) to toCustomer (exclusive), in customer order;
+    // stops after the customer that takes the result past limit
+    public List<Sale> scanCustomers(String fromCustomer, String toCustomer, int limit) {
+        List<Sale> sales = new ArrayList<>();
+        for (CustomerSales customer : byCustomer.subMap(fromCustomer, toCustomer).values()) {
+            if (sales.size() >= limit) {
+                break;
+            }
+            customer.copyTo(sales);
+        }
+        return sales;
+    }
+
+    public int getSaleCount() {
+        return saleCount;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+        LOGGER.info(String.format("Sales ledger %s closed: %d sales indexed, %d written this run in %d batches",
+                path, saleCount, recordsWritten, batchesWritten));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SalesLedger{path=%s, sales=%d, pending=%d, replayed=%d in %d ms}",
+                path, saleCount, pendingCount.get(), replayedRecords, replayMillis);
+    }
+
+    // Usage: SalesLedger <ledgerFile> [ticket <ticketId> | customer <customerId> | range <from> <to> [limit]]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: SalesLedger <ledgerFile> [ticket <ticketId> | customer <customerId> | range <from> <to> [limit]]");
+            return;
+        }
+        try (SalesLedger ledger = open(Path.of(args[0]))) {
+            System.out.println(ledger);
+            if (args.length < 3) {
+                return;
+            }
+            long started = System.nanoTime();
+            List<Sale> found = new ArrayList<>();
+            switch (args[1]) {
+                case "ticket":
+                    Sale sale = ledger.findTicket(args[2]);
+                    if (sale != null) {
+                        found.add(sale);
+                    }
+                    break;
+                case "customer":
+                    found = ledger.findPurchases(args[2]);
+                    break;
+                case "range":
+                    found = ledger.scanCustomers(args[2], args.length > 3 ? args[3] : args[2] + '\uFFFF',
+                            args.length > 4 ? Integer.parseInt(args[4]) : 100);
+                    break;
+                default:
+                    System.out.println("Unknown query: " + args[1]);
+                    return;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+            found.forEach(System.out::println);
+            System.out.println(found.size() + " sale(s) in " + micros + " us");
+        }
+    }
+}
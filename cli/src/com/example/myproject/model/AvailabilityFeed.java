@@ -0,0 +1,233 @@
+package com.example.myproject.model;
+
+import com.example.myproject.actor.TicketProducer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Publishes a pool's availability as immutable snapshots through one volatile reference. A shared timer
+// samples the pool's counters at most once per interval, so readers cost one volatile load and never
+// touch poolLock or the ticket store, however often they poll. Subscribers get changes coalesced: a
+// slow listener skips the snapshots it missed and is handed only the latest. The pool starts its feed on
+// first use, and the timer holds the feed weakly, so a pool that is dropped before its run ends is not pinned.
+public class AvailabilityFeed {
+    private static final Logger LOGGER = Logger.getLogger(AvailabilityFeed.class.getName());
+    // Held strongly so the level set in main is not lost if the logger is garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+    private static final ScheduledExecutorService PUBLISHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "availability-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A listener and the latest snapshot it has not seen yet; at most one delivery is queued at a time
+    public static class Subscription implements AutoCloseable {
+        private final AvailabilityFeed feed;
+        private final Consumer<AvailabilitySnapshot> listener;
+        private final Executor executor;
+        private final AtomicReference<AvailabilitySnapshot> pending = new AtomicReference<>();
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscription(AvailabilityFeed feed, Consumer<AvailabilitySnapshot> listener, Executor executor) {
+            this.feed = feed;
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void offer(AvailabilitySnapshot snapshot) {
+            pending.set(snapshot);
+            if (queued.compareAndSet(false, true)) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            queued.set(false);
+            AvailabilitySnapshot snapshot = pending.getAndSet(null);
+            if (snapshot == null || closed) {
+                return;
+            }
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Availability listener failed", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            feed.subscriptions.remove(this);
+        }
+    }
+
+    // The timer's task; it cancels itself once the feed has been garbage collected
+    private static class Publisher implements Runnable {
+        private final WeakReference<AvailabilityFeed> feed;
+        private volatile ScheduledFuture<?> future;
+
+        Publisher(AvailabilityFeed feed) {
+            this.feed = new WeakReference<>(feed);
+        }
+
+        @Override
+        public void run() {
+            AvailabilityFeed target = feed.get();
+            if (target != null) {
+                target.publish();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private final TicketPool ticketPool;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> publishing;
+    private volatile AvailabilitySnapshot current;
+
+    private AvailabilityFeed(TicketPool ticketPool) {
+        this.ticketPool = ticketPool;
+        this.current = sample(0);
+    }
+
+    static AvailabilityFeed start(TicketPool ticketPool, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Publish interval must be positive");
+        }
+        AvailabilityFeed feed = new AvailabilityFeed(ticketPool);
+        Publisher publisher = new Publisher(feed);
+        synchronized (feed) {
+            feed.publishing = PUBLISHER.scheduleAtFixedRate(publisher, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            publisher.future = feed.publishing;
+        }
+        return feed;
+    }
+
+    public AvailabilitySnapshot current() {
+        return current;
+    }
+
+    // The listener gets the current snapshot straight away, then every change after it
+    public Subscription subscribe(Consumer<AvailabilitySnapshot> listener) {
+        return subscribe(listener, ForkJoinPool.commonPool());
+    }
+
+    public Subscription subscribe(Consumer<AvailabilitySnapshot> listener, Executor executor) {
+        Subscription subscription = new Subscription(this, listener, executor);
+        subscriptions.add(subscription);
+        subscription.offer(current);
+        return subscription;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private AvailabilitySnapshot sample(long version) {
+        return new AvailabilitySnapshot(ticketPool.getEventName(), version, System.currentTimeMillis(),
+                ticketPool.getTotalTickets(), ticketPool.getAvailableTickets(), ticketPool.getTicketsHeld(),
+                ticketPool.getTicketsConsumed(),
+                Math.max(0, ticketPool.getMaxVIPTickets() - ticketPool.getVIPTicketsConsumed()),
+                ticketPool.isAllTicketsConsumed());
+    }
+
+    // Only the timer and the run's completion publish, so this lock is never on a sale's path
+    private synchronized void publish() {
+        try {
+            AvailabilitySnapshot previous = current;
+            AvailabilitySnapshot sampled = sample(previous.getVersion() + 1);
+            if (sampled.sameCounts(previous)) {
+                return;
+            }
+            current = sampled;
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(sampled);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not publish availability for " + ticketPool.getEventName(), e);
+        }
+    }
+
+    // Publishes the final counts at once and stops sampling; called when the pool's run completes
+    void finish() {
+        close();
+        publish();
+    }
+
+    // Stops sampling; the last snapshot stays readable and subscribers hear nothing more
+    public synchronized void close() {
+        publishing.cancel(false);
+    }
+
+    // Usage: AvailabilityFeed [totalTickets] [readers] [subscribers]
+    // Sells a stocked pool three times: with no readers, with readers polling the live count, and with
+    // readers polling the snapshot while subscribers listen for changes.
+    public static void main(String[] args) throws InterruptedException {
+        int totalTickets = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int subscribers = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        POOL_LOGGER.setLevel(Level.WARNING);
+
+        System.out.println(String.format("%d tickets, %d readers, %d subscribers", totalTickets, readers, subscribers));
+        for (String mode : new String[]{"none", "live", "snapshot"}) {
+            TicketPool ticketPool = new TicketPool("AvailabilityFeed", totalTickets, totalTickets);
+            TicketProducer stocker = new TicketProducer("Producer-1", ticketPool, 1);
+            while (ticketPool.produceTicket(stocker)) {
+                // Fill the pool up front so only sales and reads are measured
+            }
+            LongAdder reads = new LongAdder();
+            LongAdder deliveries = new LongAdder();
+            List<Thread> readerThreads = new ArrayList<>();
+            for (int i = 0; !mode.equals("none") && i < readers; i++) {
+                Thread reader = new Thread(() -> {
+                    long sink = 0;
+                    while (!ticketPool.isRunComplete()) {
+                        sink += mode.equals("live") ? ticketPool.getAvailableTickets() : ticketPool.getAvailability().getAvailable();
+                        reads.increment();
+                    }
+                    if (sink == 42) {
+                        System.out.print("");
+                    }
+                });
+                reader.setDaemon(true);
+                readerThreads.add(reader);
+            }
+            List<Subscription> listening = new ArrayList<>();
+            if (mode.equals("snapshot")) {
+                for (int i = 0; i < subscribers; i++) {
+                    listening.add(ticketPool.getAvailabilityFeed().subscribe(snapshot -> deliveries.increment()));
+                }
+            }
+            readerThreads.forEach(Thread::start);
+            long start = System.nanoTime();
+            while (ticketPool.purchaseTicket("Customer", false) != null) {
+                // Sell the pool as fast as one thread can
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            for (Thread reader : readerThreads) {
+                reader.join();
+            }
+            listening.forEach(Subscription::close);
+            System.out.println(String.format("%-9s %,12.0f sales/s %,14d reads  %,8d deliveries  final %s",
+                    mode, ticketPool.getTicketsConsumed() / elapsed, reads.sum(), deliveries.sum(),
+                    ticketPool.getAvailability()));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.myproject.model;
+
+// Immutable view of a pool's availability at one moment. Published by AvailabilityFeed; versions
+// increase by one with every snapshot that differs from the one before it.
+public final class AvailabilitySnapshot {
+    private final String eventName;
+    private final long version;
+    private final long publishedMillis;
+    private final int totalTickets;
+    private final int available;
+    private final int held;
+    private final int sold;
+    private final int vipRemaining;
+    private final boolean soldOut;
+
+    AvailabilitySnapshot(String eventName, long version, long publishedMillis, int totalTickets, int available,
+                         int held, int sold, int vipRemaining, boolean soldOut) {
+        this.eventName = eventName;
+        this.version = version;
+        this.publishedMillis = publishedMillis;
+        this.totalTickets = totalTickets;
+        this.available = available;
+        this.held = held;
+        this.sold = sold;
+        this.vipRemaining = vipRemaining;
+        this.soldOut = soldOut;
+    }
+
+    // True if the counts are the same; version and publish time are ignored
+    boolean sameCounts(AvailabilitySnapshot other) {
+        return available == other.available && held == other.held && sold == other.sold
+                && vipRemaining == other.vipRemaining && soldOut == other.soldOut;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getPublishedMillis() {
+        return publishedMillis;
+    }
+
+    public int getTotalTickets() {
+        return totalTickets;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getHeld() {
+        return held;
+    }
+
+    public int getSold() {
+        return sold;
+    }
+
+    public int getVIPRemaining() {
+        return vipRemaining;
+    }
+
+    public boolean isSoldOut() {
+        return soldOut;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AvailabilitySnapshot{event='%s', version=%d, available=%d, held=%d, sold=%d/%d, vipRemaining=%d, soldOut=%b}",
+                eventName, version, available, held, sold, totalTickets, vipRemaining, soldOut);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.myproject.model;
+
+// Where a TicketPool gets its ticket numbers when it does not own the whole event,
+// e.g. a worker process leasing blocks from an inventory coordinator
+public interface InventorySource {
+    // [from, to) of ticket numbers this pool may issue, or null if none can be handed out right now
+    int[] acquire(int requested);
+
+    // True once no further numbers will ever be handed out
+    boolean isSoldOut();
+
+    // True when the remaining inventory is small enough that blocks should be kept short
+    boolean isInventoryLow();
+
+    // Takes back [from, to), acquired earlier and never sold, so it can be handed out again.
+    // Called with the pool's lock held, so it must not block.
+    void restock(int from, int to);
+}
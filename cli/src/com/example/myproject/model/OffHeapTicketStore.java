@@ -0,0 +1,415 @@
+package com.example.myproject.model;
+
+import com.example.myproject.actor.TicketProducer;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Ticket state kept off the Java heap, for events with tens of millions of tickets. Every ticket number has
+// one int word in a MemorySegment, holding its state and the index of the producer that released it, and
+// released tickets wait in an off-heap ring of ticket numbers. A Ticket object only exists from take() until
+// the sale, so heap use does not grow with the size of the event.
+//
+// A file-backed table survives a restart. States are written straight to the mapped file, and the ring is
+// rebuilt from them on open. Tickets that were held when the process stopped are released again, because
+// their holds did not survive.
+public class OffHeapTicketStore implements TicketStore, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(OffHeapTicketStore.class.getName());
+
+    public static final int UNISSUED = 0;
+    public static final int AVAILABLE = 1;
+    public static final int HELD = 2;
+    public static final int SOLD = 3;
+    public static final int VIP_SOLD = 4;
+    private static final String[] STATE_NAMES = {"unissued", "available", "held", "sold", "VIP-sold"};
+    private static final int STATE_BITS = 3;
+    private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+
+    // Header: magic | version | totalTickets | issuerCount | names, then one state word per ticket.
+    // Names are a u16 length and UTF-8 bytes each, the event name first and then the issuers in index order.
+    private static final int MAGIC = 0x544B5453;
+    private static final int VERSION = 1;
+    private static final long HEADER_BYTES = 64 * 1024;
+    private static final long ISSUER_COUNT_OFFSET = 12;
+    private static final long NAMES_OFFSET = 16;
+
+    private static final VarHandle STATE = ValueLayout.JAVA_INT.varHandle();
+
+    private final Arena arena;
+    private final MemorySegment table;
+    private final MemorySegment ring;
+    private final String eventName;
+    private final String ticketIdPrefix;
+    private final int totalTickets;
+    private final boolean fileBacked;
+    private final boolean recovered;
+    private final Map<String, Integer> issuerIndexes = new HashMap<>();
+    private final List<String> issuers = new ArrayList<>();
+    private long namesEnd = NAMES_OFFSET;
+
+    // Ring positions only move under the pool lock; count is also read without it
+    private int head = 0;
+    private int tail = 0;
+    private volatile int count = 0;
+
+    private int recoveredSold = 0;
+    private int recoveredVIPSold = 0;
+    private List<int[]> unissuedRanges = Collections.emptyList();
+
+    private OffHeapTicketStore(Arena arena, MemorySegment table, String eventName, int totalTickets,
+                               boolean fileBacked, boolean existing) {
+        this.arena = arena;
+        this.table = table;
+        this.ring = arena.allocate(4L * totalTickets, 4);
+        this.eventName = eventName;
+        this.ticketIdPrefix = TicketPool.ticketIdPrefix(eventName);
+        this.totalTickets = totalTickets;
+        this.fileBacked = fileBacked;
+        this.recovered = existing;
+        if (existing) {
+            readHeader();
+            recover();
+        } else {
+            table.set(ValueLayout.JAVA_INT, 0, MAGIC);
+            table.set(ValueLayout.JAVA_INT, 4, VERSION);
+            table.set(ValueLayout.JAVA_INT, 8, totalTickets);
+            table.set(ValueLayout.JAVA_INT, ISSUER_COUNT_OFFSET, 0);
+            writeName(eventName);
+        }
+    }
+
+    // Table in memory only, gone when the store is closed
+    public static OffHeapTicketStore allocate(String eventName, int totalTickets) {
+        validate(eventName, totalTickets);
+        Arena arena = Arena.ofShared();
+        return new OffHeapTicketStore(arena, arena.allocate(tableBytes(totalTickets), 8),
+                eventName, totalTickets, false, false);
+    }
+
+    // Table mapped from a file; an existing file for the same event is recovered instead of overwritten
+    public static OffHeapTicketStore open(Path file, String eventName, int totalTickets) throws IOException {
+        validate(eventName, totalTickets);
+        boolean existing = Files.exists(file) && Files.size(file) > 0;
+        if (existing && Files.size(file) != tableBytes(totalTickets)) {
+            throw new IllegalArgumentException(String.format("%s is %d bytes, expected %d for %d tickets",
+                    file, Files.size(file), tableBytes(totalTickets), totalTickets));
+        }
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MemorySegment table = channel.map(FileChannel.MapMode.READ_WRITE, 0, tableBytes(totalTickets), arena);
+            return new OffHeapTicketStore(arena, table, eventName, totalTickets, true, existing);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private static void validate(String eventName, int totalTickets) {
+        if (eventName == null || eventName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Event name cannot be null or empty");
+        }
+        if (totalTickets <= 0) {
+            throw new IllegalArgumentException("Total tickets must be positive");
+        }
+    }
+
+    private static long tableBytes(int totalTickets) {
+        return HEADER_BYTES + 4L * totalTickets;
+    }
+
+    @Override
+    public void add(String issuerId, int sequence) {
+        transition(sequence, 1 << UNISSUED, AVAILABLE, issuerIndex(issuerId));
+        ring.setAtIndex(ValueLayout.JAVA_INT, tail, sequence);
+        tail = tail + 1 == totalTickets ? 0 : tail + 1;
+        count = count + 1;
+    }
+
+    @Override
+    public Ticket take() {
+        if (count == 0) {
+            return null;
+        }
+        int sequence = ring.getAtIndex(ValueLayout.JAVA_INT, head);
+        head = head + 1 == totalTickets ? 0 : head + 1;
+        count = count - 1;
+        int word = (int) STATE.getVolatile(table, offsetOf(sequence));
+        return new Ticket(ticketIdPrefix + issuers.get(word >>> STATE_BITS) + "-" + sequence, eventName);
+    }
+
+    @Override
+    public void returnFirst(Ticket ticket) {
+        int sequence = sequenceOf(ticket);
+        transition(sequence, 1 << HELD, AVAILABLE, -1);
+        head = head == 0 ? totalTickets - 1 : head - 1;
+        ring.setAtIndex(ValueLayout.JAVA_INT, head, sequence);
+        count = count + 1;
+    }
+
+    @Override
+    public void held(Ticket ticket) {
+        transition(sequenceOf(ticket), 1 << AVAILABLE, HELD, -1);
+    }
+
+    // Leased sales arrive here without ever having been released, so their issuer is recorded now
+    @Override
+    public void sold(Ticket ticket, boolean vip) {
+        int sequence = sequenceOf(ticket);
+        int issuer = -1;
+        if (stateOf(sequence) == UNISSUED) {
+            String ticketId = ticket.getTicketId();
+            issuer = issuerIndex(ticketId.substring(ticketIdPrefix.length(), ticketId.lastIndexOf('-')));
+        }
+        transition(sequence, (1 << UNISSUED) | (1 << AVAILABLE) | (1 << HELD), vip ? VIP_SOLD : SOLD, issuer);
+    }
+
+    // Moves a ticket to newState if it is in one of the allowed states; a negative issuer keeps the current one
+    private void transition(int sequence, int allowedStates, int newState, int issuer) {
+        long offset = offsetOf(sequence);
+        while (true) {
+            int word = (int) STATE.getVolatile(table, offset);
+            int state = word & STATE_MASK;
+            if ((allowedStates & (1 << state)) == 0) {
+                throw new TicketPool.TicketException(String.format("Ticket %d of %s is %s and cannot become %s",
+                        sequence, eventName, STATE_NAMES[state], STATE_NAMES[newState]));
+            }
+            int next = (issuer >= 0 ? issuer << STATE_BITS : word & ~STATE_MASK) | newState;
+            if (STATE.compareAndSet(table, offset, word, next)) {
+                return;
+            }
+        }
+    }
+
+    public int stateOf(int sequence) {
+        return (int) STATE.getVolatile(table, offsetOf(sequence)) & STATE_MASK;
+    }
+
+    private long offsetOf(int sequence) {
+        if (sequence < 1 || sequence > totalTickets) {
+            throw new IllegalArgumentException(String.format("Ticket number %d is outside 1..%d", sequence, totalTickets));
+        }
+        return HEADER_BYTES + 4L * (sequence - 1);
+    }
+
+    private static int sequenceOf(Ticket ticket) {
+        String ticketId = ticket.getTicketId();
+        return Integer.parseInt(ticketId.substring(ticketId.lastIndexOf('-') + 1));
+    }
+
+    // Issuers are few (one per producer or lease holder), so their names live in the header once
+    private synchronized int issuerIndex(String issuerId) {
+        Integer index = issuerIndexes.get(issuerId);
+        if (index != null) {
+            return index;
+        }
+        writeName(issuerId);
+        index = issuers.size();
+        issuers.add(issuerId);
+        issuerIndexes.put(issuerId, index);
+        // The count is written last so a crash part way through never exposes a half-written name
+        table.set(ValueLayout.JAVA_INT, ISSUER_COUNT_OFFSET, issuers.size());
+        return index;
+    }
+
+    private void writeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (namesEnd + 2 + bytes.length > HEADER_BYTES || bytes.length > 0xFFFF) {
+            throw new TicketPool.TicketException("No room left in the ticket table header for issuer " + name);
+        }
+        table.set(ValueLayout.JAVA_SHORT_UNALIGNED, namesEnd, (short) bytes.length);
+        MemorySegment.copy(MemorySegment.ofArray(bytes), 0, table, namesEnd + 2, bytes.length);
+        namesEnd += 2 + bytes.length;
+    }
+
+    private String readName() {
+        int length = Short.toUnsignedInt(table.get(ValueLayout.JAVA_SHORT_UNALIGNED, namesEnd));
+        byte[] bytes = table.asSlice(namesEnd + 2, length).toArray(ValueLayout.JAVA_BYTE);
+        namesEnd += 2 + length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readHeader() {
+        if (table.get(ValueLayout.JAVA_INT, 0) != MAGIC || table.get(ValueLayout.JAVA_INT, 4) != VERSION) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " ticket table");
+        }
+        int tableTickets = table.get(ValueLayout.JAVA_INT, 8);
+        if (tableTickets != totalTickets) {
+            throw new IllegalArgumentException(String.format("Ticket table holds %d tickets, expected %d",
+                    tableTickets, totalTickets));
+        }
+        String tableEvent = readName();
+        if (!tableEvent.equals(eventName)) {
+            throw new IllegalArgumentException("Ticket table belongs to event " + tableEvent);
+        }
+        int issuerCount = table.get(ValueLayout.JAVA_INT, ISSUER_COUNT_OFFSET);
+        for (int i = 0; i < issuerCount; i++) {
+            String issuer = readName();
+            issuerIndexes.put(issuer, i);
+            issuers.add(issuer);
+        }
+    }
+
+    // Rebuilds the ring from the table in ticket order and collects the numbers never issued
+    private void recover() {
+        List<int[]> ranges = new ArrayList<>();
+        int rangeStart = -1;
+        int available = 0;
+        int held = 0;
+        for (int sequence = 1; sequence <= totalTickets; sequence++) {
+            long offset = offsetOf(sequence);
+            int word = table.get(ValueLayout.JAVA_INT, offset);
+            int state = word & STATE_MASK;
+            if (state == UNISSUED) {
+                if (rangeStart < 0) {
+                    rangeStart = sequence;
+                }
+                continue;
+            }
+            if (rangeStart >= 0) {
+                ranges.add(new int[]{rangeStart, sequence});
+                rangeStart = -1;
+            }
+            if (state == HELD) {
+                table.set(ValueLayout.JAVA_INT, offset, (word & ~STATE_MASK) | AVAILABLE);
+                held++;
+                state = AVAILABLE;
+            }
+            if (state == AVAILABLE) {
+                ring.setAtIndex(ValueLayout.JAVA_INT, tail++, sequence);
+                available++;
+            } else {
+                recoveredSold++;
+                if (state == VIP_SOLD) {
+                    recoveredVIPSold++;
+                }
+            }
+        }
+        if (rangeStart >= 0) {
+            ranges.add(new int[]{rangeStart, totalTickets + 1});
+        }
+        if (tail == totalTickets) {
+            tail = 0;
+        }
+        count = available;
+        unissuedRanges = ranges;
+        LOGGER.info(String.format("Recovered ticket table for %s: %d available (%d were held), %d sold, %d VIP",
+                eventName, available, held, recoveredSold, recoveredVIPSold));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    @Override
+    public List<int[]> getUnissuedRanges() {
+        return unissuedRanges;
+    }
+
+    @Override
+    public int getSoldCount() {
+        return recoveredSold;
+    }
+
+    @Override
+    public int getVIPSoldCount() {
+        return recoveredVIPSold;
+    }
+
+    public int getTotalTickets() {
+        return totalTickets;
+    }
+
+    public long getOffHeapBytes() {
+        return table.byteSize() + ring.byteSize();
+    }
+
+    // Flushes a file-backed table and releases the memory; the pool must not be used afterwards
+    @Override
+    public void close() {
+        if (fileBacked) {
+            table.force();
+        }
+        arena.close();
+    }
+
+    // Usage: OffHeapTicketStore <totalTickets> [tableFile | --queue]
+    // Releases every ticket into one pool and sells them all, reporting heap use with the pool full
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: OffHeapTicketStore <totalTickets> [tableFile | --queue]");
+            return;
+        }
+        Logger poolLogger = Logger.getLogger(TicketPool.class.getName());
+        poolLogger.setLevel(Level.WARNING);
+        int totalTickets = Integer.parseInt(args[0]);
+        String eventName = "OffHeapBenchmark";
+        boolean queue = args.length > 1 && args[1].equals("--queue");
+
+        OffHeapTicketStore offHeap = null;
+        TicketStore store;
+        if (queue) {
+            store = new QueueTicketStore(eventName);
+        } else {
+            offHeap = args.length > 1 ? open(Paths.get(args[1]), eventName, totalTickets)
+                    : allocate(eventName, totalTickets);
+            store = offHeap;
+        }
+        long heapBefore = usedHeap();
+        TicketPool ticketPool = new TicketPool(eventName, totalTickets, totalTickets, null, store);
+        TicketProducer producer = new TicketProducer("Producer-1", ticketPool, 2);
+
+        long started = System.nanoTime();
+        int released = 0;
+        while (ticketPool.produceTicket(producer)) {
+            released++;
+        }
+        double releaseSeconds = (System.nanoTime() - started) / 1e9;
+        long heapFull = usedHeap();
+
+        started = System.nanoTime();
+        int sold = 0;
+        while (ticketPool.purchaseTicket("Customer-" + (sold % 1000), false) != null) {
+            sold++;
+        }
+        double sellSeconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.println(String.format("%s store: released %d in %.2f s, sold %d in %.2f s%s",
+                queue ? "Queue" : "Off-heap", released, releaseSeconds, sold, sellSeconds,
+                offHeap != null && offHeap.isRecovered() ? " (recovered " + offHeap.getSoldCount() + " sold)" : ""));
+        System.out.println(String.format("Heap growth with the pool full: %.1f MB%s",
+                (heapFull - heapBefore) / 1e6,
+                offHeap != null ? String.format(", off-heap table: %.1f MB", offHeap.getOffHeapBytes() / 1e6) : ""));
+        if (offHeap != null) {
+            offHeap.close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
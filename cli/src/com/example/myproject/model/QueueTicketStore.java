@@ -0,0 +1,49 @@
+package com.example.myproject.model;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+// Default store: one Ticket object per released ticket in a deque; sold and held tickets are not tracked
+public class QueueTicketStore implements TicketStore {
+    private final String eventName;
+    private final String ticketIdPrefix;
+    private final BlockingDeque<Ticket> ticketQueue = new LinkedBlockingDeque<>();
+
+    public QueueTicketStore(String eventName) {
+        this.eventName = eventName;
+        this.ticketIdPrefix = TicketPool.ticketIdPrefix(eventName);
+    }
+
+    @Override
+    public void add(String issuerId, int sequence) {
+        ticketQueue.offer(new Ticket(ticketIdPrefix + issuerId + "-" + sequence, eventName));
+    }
+
+    @Override
+    public Ticket take() {
+        return ticketQueue.poll();
+    }
+
+    @Override
+    public void returnFirst(Ticket ticket) {
+        ticketQueue.offerFirst(ticket);
+    }
+
+    @Override
+    public void held(Ticket ticket) {
+    }
+
+    @Override
+    public void sold(Ticket ticket, boolean vip) {
+    }
+
+    @Override
+    public int size() {
+        return ticketQueue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ticketQueue.isEmpty();
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.myproject.model;
+
+// Told about every sale, on the selling thread and usually under the pool's lock, so it must only hand the sale off
+public interface SaleListener {
+    void onSale(String customerId, Ticket ticket, boolean vip);
+}
@@ -0,0 +1,516 @@
+package com.example.myproject.model;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// One event's inventory in a memory-mapped file that several processes on the same host sell from at once,
+// with no coordinator process. Every ticket number has one int word in the file holding its state and the
+// slot of the process that claimed it. A process claims numbers for its pool by compare-and-set on those
+// words, and a sale only counts once its word moves from claimed-by-this-process to sold, so no ticket can
+// be sold twice. Each pool is given the store as both its ticket store and its inventory source.
+//
+// A process registers in one of the file's process slots when it opens the table. If it dies, whatever it
+// claimed and did not sell is released by the next process that finds its slot dead, either when opening
+// the table or when it runs out of numbers to claim. A clean close releases the same way.
+public class SharedTicketStore implements TicketStore, InventorySource, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SharedTicketStore.class.getName());
+    // Held strongly so the level set in main is not lost if the logger is garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+
+    public static final int UNCLAIMED = 0;
+    public static final int CLAIMED = 1;
+    public static final int SOLD = 2;
+    public static final int VIP_SOLD = 3;
+    private static final String[] STATE_NAMES = {"unclaimed", "claimed", "sold", "VIP-sold"};
+    private static final int STATE_BITS = 2;
+    private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+
+    // Header: magic | version | totalTickets | processSlots | scanFrom | reclaimEpoch | sold | vipSold |
+    // reclaimed | event name (u16 length and UTF-8 bytes), then the process slots, then one word per ticket.
+    // Every number below scanFrom is claimed or sold; reclaimEpoch counts releases of a dead process's claims.
+    // vipSold counts VIP tickets sold or held anywhere: pools reserve against it before taking a VIP ticket, so
+    // the event-wide VIP cap holds however many processes sell.
+    private static final int MAGIC = 0x544B5348;
+    private static final int VERSION = 1;
+    private static final long SCAN_FROM_OFFSET = 16;
+    private static final long EPOCH_OFFSET = 20;
+    private static final long SOLD_OFFSET = 24;
+    private static final long VIP_SOLD_OFFSET = 28;
+    private static final long RECLAIMED_OFFSET = 32;
+    private static final long NAME_OFFSET = 40;
+    private static final int MAX_NAME_BYTES = 960;
+    // Slot: owner pid (0 when free, minus the reaper's pid while a dead owner's claims are released) | start millis
+    public static final int MAX_PROCESSES = 64;
+    private static final long SLOTS_OFFSET = 1024;
+    private static final long SLOT_BYTES = 16;
+    private static final long HEADER_BYTES = 4096;
+    // Once a claim finds nothing, dead processes are looked for at most this often
+    private static final long REAP_INTERVAL_MILLIS = 100;
+
+    private static final VarHandle INT = ValueLayout.JAVA_INT.varHandle();
+    private static final VarHandle LONG = ValueLayout.JAVA_LONG.varHandle();
+
+    private final Arena arena;
+    private final MemorySegment table;
+    private final String eventName;
+    private final String ticketIdPrefix;
+    private final int totalTickets;
+    private final int lowInventoryThreshold;
+    private final long pid;
+    private final int slot;
+    private final int claimedWord;
+    private final AtomicInteger localSold = new AtomicInteger(0);
+    private volatile long lastReapMillis = 0;
+    private volatile boolean closed = false;
+
+    // Released tickets of this process only; every call is made under the pool lock except size()
+    private final Deque<Ticket> released = new ArrayDeque<>();
+    private volatile int count = 0;
+
+    private SharedTicketStore(Arena arena, MemorySegment table, String eventName, int totalTickets, boolean created) {
+        this.arena = arena;
+        this.table = table;
+        this.eventName = eventName;
+        this.ticketIdPrefix = TicketPool.ticketIdPrefix(eventName);
+        this.totalTickets = totalTickets;
+        this.lowInventoryThreshold = Math.max(TicketRangeLease.LOW_INVENTORY_BLOCK, totalTickets / 20);
+        this.pid = ProcessHandle.current().pid();
+        if (created) {
+            writeHeader();
+        } else {
+            readHeader();
+            reapDeadPeers();
+        }
+        this.slot = register();
+        this.claimedWord = (slot + 1) << STATE_BITS | CLAIMED;
+    }
+
+    // Maps the table, creating it if the file is new; the file lock only serialises opening
+    public static SharedTicketStore open(Path file, String eventName, int totalTickets) throws IOException {
+        if (eventName == null || eventName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Event name cannot be null or empty");
+        }
+        if (totalTickets <= 0) {
+            throw new IllegalArgumentException("Total tickets must be positive");
+        }
+        long tableBytes = HEADER_BYTES + 4L * totalTickets;
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                long size = channel.size();
+                if (size != 0 && size != tableBytes) {
+                    throw new IllegalArgumentException(String.format("%s is %d bytes, expected %d for %d tickets",
+                            file, size, tableBytes, totalTickets));
+                }
+                MemorySegment table = channel.map(FileChannel.MapMode.READ_WRITE, 0, tableBytes, arena);
+                return new SharedTicketStore(arena, table, eventName, totalTickets, size == 0);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() {
+        byte[] name = eventName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Event name is longer than " + MAX_NAME_BYTES + " bytes");
+        }
+        table.set(ValueLayout.JAVA_INT, 4, VERSION);
+        table.set(ValueLayout.JAVA_INT, 8, totalTickets);
+        table.set(ValueLayout.JAVA_INT, 12, MAX_PROCESSES);
+        table.set(ValueLayout.JAVA_INT, SCAN_FROM_OFFSET, 1);
+        table.set(ValueLayout.JAVA_SHORT_UNALIGNED, NAME_OFFSET, (short) name.length);
+        MemorySegment.copy(MemorySegment.ofArray(name), 0, table, NAME_OFFSET + 2, name.length);
+        // The magic goes in last so a process that died part way through leaves a table nobody accepts
+        INT.setVolatile(table, 0L, MAGIC);
+    }
+
+    private void readHeader() {
+        if ((int) INT.getVolatile(table, 0L) != MAGIC || table.get(ValueLayout.JAVA_INT, 4) != VERSION) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " shared ticket table");
+        }
+        int tableTickets = table.get(ValueLayout.JAVA_INT, 8);
+        if (tableTickets != totalTickets) {
+            throw new IllegalArgumentException(String.format("Shared ticket table holds %d tickets, expected %d",
+                    tableTickets, totalTickets));
+        }
+        int length = Short.toUnsignedInt(table.get(ValueLayout.JAVA_SHORT_UNALIGNED, NAME_OFFSET));
+        String tableEvent = new String(table.asSlice(NAME_OFFSET + 2, length).toArray(ValueLayout.JAVA_BYTE),
+                StandardCharsets.UTF_8);
+        if (!tableEvent.equals(eventName)) {
+            throw new IllegalArgumentException("Shared ticket table belongs to event " + tableEvent);
+        }
+    }
+
+    private int register() {
+        long startMillis = startMillisOf(ProcessHandle.current());
+        for (int i = 0; i < MAX_PROCESSES; i++) {
+            long offset = slotOffset(i);
+            if (LONG.compareAndSet(table, offset, 0L, pid)) {
+                LONG.setVolatile(table, offset + 8, startMillis);
+                LOGGER.info(String.format("Process %d joined shared ticket table for %s in slot %d", pid, eventName, i));
+                return i;
+            }
+        }
+        throw new TicketPool.TicketException(String.format("All %d process slots of the shared ticket table for %s are in use",
+                MAX_PROCESSES, eventName));
+    }
+
+    // Releases the claims of every process that has died, including reapers that died part way through;
+    // returns the number of tickets made claimable again
+    public int reapDeadPeers() {
+        lastReapMillis = System.currentTimeMillis();
+        int reclaimed = 0;
+        for (int i = 0; i < MAX_PROCESSES; i++) {
+            long offset = slotOffset(i);
+            long owner = (long) LONG.getVolatile(table, offset);
+            if (owner == 0 || owner == pid || owner == -pid) {
+                continue;
+            }
+            boolean dead = owner > 0 ? !isAlive(owner, (long) LONG.getVolatile(table, offset + 8)) : !isAlive(-owner, 0);
+            if (!dead || !LONG.compareAndSet(table, offset, owner, -pid)) {
+                continue;
+            }
+            int released = release(i);
+            reclaimed += released;
+            LOGGER.warning(String.format("Process %d in slot %d of %s is gone; released %d of its claimed tickets",
+                    Math.abs(owner), i, eventName, released));
+            freeSlot(i);
+        }
+        return reclaimed;
+    }
+
+    private static boolean isAlive(long pid, long startMillis) {
+        Optional<ProcessHandle> process = ProcessHandle.of(pid);
+        if (process.isEmpty() || !process.get().isAlive()) {
+            return false;
+        }
+        // A recycled pid belongs to a process that started at a different time
+        return startMillis == 0 || startMillisOf(process.get()) == startMillis;
+    }
+
+    private static long startMillisOf(ProcessHandle process) {
+        return process.info().startInstant().map(instant -> instant.toEpochMilli()).orElse(0L);
+    }
+
+    // Claimed words of the slot go back to unclaimed; sold words keep the slot as a record of who sold them
+    private int release(int releasedSlot) {
+        int owned = (releasedSlot + 1) << STATE_BITS | CLAIMED;
+        int released = 0;
+        int lowest = 0;
+        for (int sequence = 1; sequence <= totalTickets; sequence++) {
+            long offset = offsetOf(sequence);
+            if (table.get(ValueLayout.JAVA_INT, offset) == owned && INT.compareAndSet(table, offset, owned, UNCLAIMED)) {
+                released++;
+                if (lowest == 0) {
+                    lowest = sequence;
+                }
+            }
+        }
+        if (released > 0) {
+            // Claimers compare the epoch to notice that numbers below their scan position came free
+            INT.getAndAdd(table, EPOCH_OFFSET, 1);
+            lowerScanFrom(lowest);
+            INT.getAndAdd(table, RECLAIMED_OFFSET, released);
+        }
+        return released;
+    }
+
+    private void freeSlot(int freed) {
+        long offset = slotOffset(freed);
+        LONG.setVolatile(table, offset + 8, 0L);
+        LONG.setVolatile(table, offset, 0L);
+    }
+
+    // Claims up to requested consecutive unclaimed numbers, lowest first; null once every number is claimed or sold
+    @Override
+    public int[] acquire(int requested) {
+        if (closed) {
+            return null;
+        }
+        while (true) {
+            int epoch = (int) INT.getVolatile(table, EPOCH_OFFSET);
+            int from = (int) INT.getVolatile(table, SCAN_FROM_OFFSET);
+            int sequence = from;
+            while (sequence <= totalTickets && stateOf(sequence) != UNCLAIMED) {
+                sequence++;
+            }
+            if (sequence > totalTickets) {
+                advanceScanFrom(from, sequence, epoch);
+                // Numbers stranded by a dead process are the only ones left to find
+                if (System.currentTimeMillis() - lastReapMillis >= REAP_INTERVAL_MILLIS && reapDeadPeers() > 0) {
+                    continue;
+                }
+                return null;
+            }
+            int start = sequence;
+            while (sequence <= totalTickets && sequence - start < requested
+                    && INT.compareAndSet(table, offsetOf(sequence), UNCLAIMED, claimedWord)) {
+                sequence++;
+            }
+            if (sequence > start) {
+                advanceScanFrom(from, sequence, epoch);
+                return new int[]{start, sequence};
+            }
+            // Another process claimed the number first
+        }
+    }
+
+    private void advanceScanFrom(int from, int to, int epoch) {
+        if (INT.compareAndSet(table, SCAN_FROM_OFFSET, from, to) && (int) INT.getVolatile(table, EPOCH_OFFSET) != epoch) {
+            // A dead process's claims were released during the scan, possibly below to; scan them again
+            lowerScanFrom(from);
+        }
+    }
+
+    private void lowerScanFrom(int sequence) {
+        while (true) {
+            int current = (int) INT.getVolatile(table, SCAN_FROM_OFFSET);
+            if (current <= sequence || INT.compareAndSet(table, SCAN_FROM_OFFSET, current, sequence)) {
+                return;
+            }
+        }
+    }
+
+    // Unsold claims handed back while this process stays attached, e.g. by an idle pool
+    @Override
+    public void restock(int from, int to) {
+        int released = 0;
+        for (int sequence = from; sequence < to; sequence++) {
+            if (INT.compareAndSet(table, offsetOf(sequence), claimedWord, UNCLAIMED)) {
+                released++;
+            }
+        }
+        if (released > 0) {
+            INT.getAndAdd(table, EPOCH_OFFSET, 1);
+            lowerScanFrom(from);
+        }
+    }
+
+    @Override
+    public boolean isSoldOut() {
+        return (int) INT.getVolatile(table, SCAN_FROM_OFFSET) > totalTickets;
+    }
+
+    @Override
+    public boolean isInventoryLow() {
+        return totalTickets - (int) INT.getVolatile(table, SCAN_FROM_OFFSET) + 1 < lowInventoryThreshold;
+    }
+
+    // Numbers handed out by acquire() are already claimed, so releasing one into this pool is local
+    @Override
+    public void add(String issuerId, int sequence) {
+        released.offer(new Ticket(ticketIdPrefix + issuerId + "-" + sequence, eventName));
+        count = count + 1;
+    }
+
+    @Override
+    public Ticket take() {
+        Ticket ticket = released.poll();
+        if (ticket != null) {
+            count = count - 1;
+        }
+        return ticket;
+    }
+
+    @Override
+    public void returnFirst(Ticket ticket) {
+        released.offerFirst(ticket);
+        count = count + 1;
+    }
+
+    // A hold stays claimed by this process; if the process dies the held tickets are released with its other claims
+    @Override
+    public void held(Ticket ticket) {
+    }
+
+    @Override
+    public void sold(Ticket ticket, boolean vip) {
+        String ticketId = ticket.getTicketId();
+        int sequence = Integer.parseInt(ticketId.substring(ticketId.lastIndexOf('-') + 1));
+        int soldWord = claimedWord & ~STATE_MASK | (vip ? VIP_SOLD : SOLD);
+        if (!INT.compareAndSet(table, offsetOf(sequence), claimedWord, soldWord)) {
+            // Only happens if this process was taken for dead and its claims released
+            int state = stateOf(sequence);
+            throw new TicketPool.TicketException(String.format("Ticket %d of %s is %s and no longer claimed by process %d",
+                    sequence, eventName, STATE_NAMES[state], pid));
+        }
+        INT.getAndAdd(table, SOLD_OFFSET, 1);
+        localSold.incrementAndGet();
+    }
+
+    @Override
+    public boolean reserveVIP(int count, int maxVIPTickets) {
+        while (true) {
+            int reserved = (int) INT.getVolatile(table, VIP_SOLD_OFFSET);
+            if (reserved + count > maxVIPTickets) {
+                return false;
+            }
+            if (INT.compareAndSet(table, VIP_SOLD_OFFSET, reserved, reserved + count)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void cancelVIP(int count) {
+        INT.getAndAdd(table, VIP_SOLD_OFFSET, -count);
+    }
+
+    public int stateOf(int sequence) {
+        return (int) INT.getVolatile(table, offsetOf(sequence)) & STATE_MASK;
+    }
+
+    private long offsetOf(int sequence) {
+        if (sequence < 1 || sequence > totalTickets) {
+            throw new IllegalArgumentException(String.format("Ticket number %d is outside 1..%d", sequence, totalTickets));
+        }
+        return HEADER_BYTES + 4L * (sequence - 1);
+    }
+
+    private static long slotOffset(int index) {
+        return SLOTS_OFFSET + SLOT_BYTES * index;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public int getTotalTickets() {
+        return totalTickets;
+    }
+
+    // Sales made by this process
+    public int getLocalSoldCount() {
+        return localSold.get();
+    }
+
+    // Event-wide counters, shared by every process selling from the table
+    public int getEventSoldCount() {
+        return (int) INT.getVolatile(table, SOLD_OFFSET);
+    }
+
+    // VIP tickets sold or held by any process
+    public int getEventVIPSoldCount() {
+        return (int) INT.getVolatile(table, VIP_SOLD_OFFSET);
+    }
+
+    public int getReclaimedCount() {
+        return (int) INT.getVolatile(table, RECLAIMED_OFFSET);
+    }
+
+    public int getProcessCount() {
+        int processes = 0;
+        for (int i = 0; i < MAX_PROCESSES; i++) {
+            if ((long) LONG.getVolatile(table, slotOffset(i)) > 0) {
+                processes++;
+            }
+        }
+        return processes;
+    }
+
+    // Tickets in each state, read word by word while other processes may still be selling
+    public int[] countStates() {
+        int[] counts = new int[STATE_NAMES.length];
+        for (int sequence = 1; sequence <= totalTickets; sequence++) {
+            counts[table.get(ValueLayout.JAVA_INT, offsetOf(sequence)) & STATE_MASK]++;
+        }
+        return counts;
+    }
+
+    // Gives back everything this process claimed and did not sell, then leaves its slot; the pool must be idle
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        int returned = release(slot);
+        freeSlot(slot);
+        table.force();
+        arena.close();
+        LOGGER.info(String.format("Process %d left shared ticket table for %s: sold %d, returned %d unsold claims",
+                pid, eventName, localSold.get(), returned));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SharedTicketStore{event='%s', slot=%d, total=%d, eventSold=%d, localSold=%d, processes=%d, reclaimed=%d}",
+                eventName, slot, totalTickets, getEventSoldCount(), localSold.get(), getProcessCount(), getReclaimedCount());
+    }
+
+    // Usage: SharedTicketStore <tableFile> <eventName> <totalTickets> [sellers] [haltAfterSales]
+    //        SharedTicketStore <tableFile> <eventName> <totalTickets> status
+    // Start several at once on the same file to sell one event from several processes. haltAfterSales stops
+    // the JVM without any cleanup once one seller has made that many sales, leaving claims behind for the others to recover.
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.out.println("Usage: SharedTicketStore <tableFile> <eventName> <totalTickets> [sellers] [haltAfterSales] | status");
+            return;
+        }
+        POOL_LOGGER.setLevel(Level.WARNING);
+        int totalTickets = Integer.parseInt(args[2]);
+        SharedTicketStore store = open(Paths.get(args[0]), args[1], totalTickets);
+        if (args.length > 3 && args[3].equals("status")) {
+            int[] states = store.countStates();
+            System.out.println(String.format("%s: %d unclaimed, %d claimed, %d sold, %d VIP-sold of %d; "
+                            + "sold counter %d, %d reclaimed from dead processes, %d other processes attached",
+                    args[1], states[UNCLAIMED], states[CLAIMED], states[SOLD], states[VIP_SOLD], totalTickets,
+                    store.getEventSoldCount(), store.getReclaimedCount(), store.getProcessCount() - 1));
+            store.close();
+            return;
+        }
+        int sellers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long haltAfter = args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE;
+
+        TicketPool ticketPool = new TicketPool(args[1], totalTickets, totalTickets, store, store);
+        Thread[] threads = new Thread[sellers];
+        long started = System.nanoTime();
+        for (int i = 0; i < sellers; i++) {
+            String sellerId = "Seller-" + store.pid + "-" + i;
+            threads[i] = new Thread(() -> {
+                try (TicketRangeLease lease = ticketPool.openLease(sellerId, 64)) {
+                    int sales = 0;
+                    while (lease.sell(sellerId + "-Customer-" + (sales % 1000), false) != null) {
+                        if (++sales >= haltAfter) {
+                            // Simulated crash: no lease close, no store close, claims left in the table
+                            Runtime.getRuntime().halt(1);
+                        }
+                    }
+                }
+            }, sellerId);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        int sold = store.getLocalSoldCount();
+        System.out.println(String.format("Process %d sold %d tickets in %.2f s (%.0f sales/s, %d sellers); "
+                        + "event sold %d of %d, %d reclaimed from dead processes",
+                store.pid, sold, elapsed, sold / elapsed, sellers,
+                store.getEventSoldCount(), totalTickets, store.getReclaimedCount()));
+        store.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.myproject.model;
+
+// One sellable ticket; equal tickets have the same ID and event
+public class Ticket {
+    private final String ticketId;
+    private final String eventName;
+
+    public Ticket(String ticketId, String eventName) {
+        if (ticketId == null || ticketId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Ticket ID cannot be null or empty");
+        }
+        if (eventName == null || eventName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Event name cannot be null or empty");
+        }
+        this.ticketId = ticketId;
+        this.eventName = eventName;
+    }
+
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Ticket{id='%s', event='%s'}", ticketId, eventName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Ticket ticket = (Ticket) o;
+        return ticketId.equals(ticket.ticketId) && eventName.equals(ticket.eventName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = ticketId.hashCode();
+        result = 31 * result + eventName.hashCode();
+        return result;
+    }
+}
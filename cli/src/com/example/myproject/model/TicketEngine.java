@@ -0,0 +1,52 @@
+package com.example.myproject.model;
+
+import com.example.myproject.actor.TicketConsumer;
+import com.example.myproject.actor.TicketProducer;
+
+// The part of a ticket pool that producers, consumers and simple front-ends rely on: releasing tickets,
+// selling them (blocking, VIP, non-blocking and from leased blocks) and the counters a run is judged by.
+// TicketPool is the reference implementation; stress.EngineStressHarness holds any engine to the same invariants.
+public interface TicketEngine {
+    // Releases one ticket, waiting for room; false once every ticket has been released or the run is over
+    boolean produceTicket(TicketProducer producer);
+
+    // Sells one ticket to the consumer, waiting for one to be released; false once the run is over
+    boolean consumeTicket(TicketConsumer consumer);
+
+    // As consumeTicket, but false straight away if the VIP cap has been reached
+    boolean consumeVIPTicket(TicketConsumer consumer);
+
+    // Sells one ticket if one is available right now, otherwise returns null without waiting
+    Ticket purchaseTicket(String customerId, boolean vip);
+
+    // Called for every sale, whichever of the calls above made it
+    void setSaleListener(SaleListener listener);
+
+    // A block of ticket numbers for one thread to release or sell from without contending on the engine
+    TicketLease openLease(String holderId, int blockSize);
+
+    // Stops the run early; blocked producers and consumers return false straight away
+    boolean cancel();
+
+    boolean isRunComplete();
+
+    boolean isAllTicketsProduced();
+
+    boolean isAllTicketsConsumed();
+
+    String getEventName();
+
+    int getTotalTickets();
+
+    int getMaxCapacity();
+
+    int getMaxVIPTickets();
+
+    int getTicketsProduced();
+
+    int getTicketsConsumed();
+
+    int getVIPTicketsConsumed();
+
+    int getAvailableTickets();
+}
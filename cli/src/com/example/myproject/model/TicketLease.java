@@ -0,0 +1,22 @@
+package com.example.myproject.model;
+
+// A block of ticket numbers an engine hands to one thread, which releases or sells from it without touching
+// the engine's shared state. Not thread-safe: each thread opens its own lease and closes it when done.
+public interface TicketLease extends AutoCloseable {
+    // Next ticket number, refilling the block as needed; -1 once every ticket is issued
+    int nextSequence();
+
+    // Sells one ticket straight from the block; null once the event is sold out or the VIP cap is reached
+    Ticket sell(String customerId, boolean vip);
+
+    // Numbers left in the current block
+    int getRemaining();
+
+    int getTicketsIssued();
+
+    String getHolderId();
+
+    // Settles the block's sales and gives its unused numbers back
+    @Override
+    void close();
+}
@@ -3,16 +3,33 @@ package com.example.myproject.model;
 import com.example.myproject.actor.TicketConsumer;
 import com.example.myproject.actor.TicketProducer;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.*;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.Condition;
 
-public class TicketPool {
+public class TicketPool implements TicketEngine {
+    // Holds older than this go back to the pool, so a client that vanishes between hold and confirm cannot
+    // pin inventory and keep the run from selling out
+    public static final long DEFAULT_HOLD_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final long MAX_HOLD_SWEEP_MILLIS = 1000;
+    private static final ScheduledExecutorService HOLD_SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hold-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // Nested Ticket Exception class
     public static class TicketException extends RuntimeException {
         public TicketException(String message) {
@@ -28,65 +45,93 @@ public class TicketPool {
         }
     }
 
-    // Nested Ticket class
-    public static class Ticket {
-        private final String ticketId;
-        private final String eventName;
-
-        public Ticket(String ticketId, String eventName) {
-            if (ticketId == null || ticketId.trim().isEmpty()) {
-                throw new IllegalArgumentException("Ticket ID cannot be null or empty");
-            }
-            if (eventName == null || eventName.trim().isEmpty()) {
-                throw new IllegalArgumentException("Event name cannot be null or empty");
-            }
-            this.ticketId = ticketId;
-            this.eventName = eventName;
+    // Tickets set aside for one customer until the hold is confirmed or released
+    public static class TicketHold {
+        private final long holdId;
+        private final String customerId;
+        private final boolean vip;
+        private final List<Ticket> tickets;
+        private final long createdNanos = System.nanoTime();
+
+        public TicketHold(long holdId, String customerId, boolean vip, List<Ticket> tickets) {
+            this.holdId = holdId;
+            this.customerId = customerId;
+            this.vip = vip;
+            this.tickets = Collections.unmodifiableList(tickets);
         }
 
-        public String getTicketId() {
-            return ticketId;
+        public long getHoldId() {
+            return holdId;
         }
 
-        public String getEventName() {
-            return eventName;
+        public String getCustomerId() {
+            return customerId;
         }
 
-        @Override
-        public String toString() {
-            return String.format("Ticket{id='%s', event='%s'}", ticketId, eventName);
+        public boolean isVip() {
+            return vip;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Ticket ticket = (Ticket) o;
-            return ticketId.equals(ticket.ticketId) && eventName.equals(ticket.eventName);
+        public List<Ticket> getTickets() {
+            return tickets;
         }
 
         @Override
-        public int hashCode() {
-            int result = ticketId.hashCode();
-            result = 31 * result + eventName.hashCode();
-            return result;
+        public String toString() {
+            return String.format("TicketHold{id=%d, customer='%s', tickets=%d}", holdId, customerId, tickets.size());
         }
     }
 
+    // How a run ended; the pool completes its run exactly once
+    public enum RunOutcome {
+        SOLD_OUT,
+        CANCELLED,
+        FAILED
+    }
+
     // Existing TicketPool code remains the same
     private static final Logger LOGGER = Logger.getLogger(TicketPool.class.getName());
     private final String eventName;
-    private final int maxCapacity;
+    private volatile int maxCapacity;
     private final int totalTickets;
     private final int maxVIPTickets;
-    private final BlockingQueue<Ticket> ticketQueue;
+    private final TicketStore ticketStore;
     private final AtomicInteger ticketsProduced = new AtomicInteger(0);
+    private final AtomicInteger nextSequence = new AtomicInteger(0);
+    private final Queue<int[]> returnedRanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger returnedTickets = new AtomicInteger(0);
+    // Sequence numbers sitting unissued in open leases; lessees report what they issued once per block
+    private final AtomicInteger ticketsLeased = new AtomicInteger(0);
+    private final int lowInventoryThreshold;
+    private final String ticketIdPrefix;
+    private final InventorySource inventorySource;
     private final AtomicInteger ticketsConsumed = new AtomicInteger(0);
     private final AtomicInteger vipTicketsConsumed = new AtomicInteger(0);
+    private final AtomicInteger ticketsHeld = new AtomicInteger(0);
+    private final AtomicInteger vipTicketsHeld = new AtomicInteger(0);
+    // VIP tickets sold, held or about to be sold; every VIP sale, queued or leased, reserves here first
+    private final AtomicInteger vipTicketsReserved = new AtomicInteger(0);
+    private final AtomicLong nextHoldId = new AtomicLong(0);
+    // Pressure counters for anything sizing the actor pools; only ever increase
+    private final AtomicLong producerTimeouts = new AtomicLong(0);
+    private final AtomicLong consumerTimeouts = new AtomicLong(0);
+    private final AtomicLong consumerCalls = new AtomicLong(0);
+    private final AtomicLong consumerWaitNanos = new AtomicLong(0);
+    // Non-blocking purchases and holds, whether or not they found tickets
+    private final AtomicLong purchaseCalls = new AtomicLong(0);
+    private final Map<Long, TicketHold> holds = new HashMap<>();
+    private volatile long holdTimeoutMillis = DEFAULT_HOLD_TIMEOUT_MILLIS;
+    // Runs only while holds exist; guarded by poolLock
+    private ScheduledFuture<?> holdSweep;
     private final PriorityBlockingQueue<TicketConsumer> consumerQueue;
     private final ReentrantLock poolLock = new ReentrantLock();
     private final Condition notFull = poolLock.newCondition();
     private final Condition notEmpty = poolLock.newCondition();
+    private final CompletableFuture<RunOutcome> completion = new CompletableFuture<>();
+    private volatile Throwable failureCause;
+    private final Object feedLock = new Object();
+    private volatile AvailabilityFeed availabilityFeed;
+    private volatile SaleListener saleListener;
 
     static {
         setupLogger();
@@ -94,11 +139,7 @@ public class TicketPool {
 
     private static void setupLogger() {
         try {
-            Logger rootLogger = Logger.getLogger("");
-            for (Handler handler : rootLogger.getHandlers()) {
-                rootLogger.removeHandler(handler);
-            }
-
+            // Root handlers are left alone: the application's event log file is set up before the pool loads
             Formatter customFormatter = new Formatter() {
                 SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy h:mm:ss a");
 
@@ -123,13 +164,47 @@ public class TicketPool {
     }
 
     public TicketPool(String eventName, int maxCapacity, int totalTickets) {
+        this(eventName, maxCapacity, totalTickets, null);
+    }
+
+    // With an inventory source the pool issues only the numbers it hands out, so several pools can share
+    // one event; totalTickets is still the event-wide total and sets the VIP cap
+    public TicketPool(String eventName, int maxCapacity, int totalTickets, InventorySource inventorySource) {
+        this(eventName, maxCapacity, totalTickets, inventorySource, null);
+    }
+
+    // A null store keeps released tickets in an on-heap queue. A recovered store carries on from the run
+    // that wrote it: its sold tickets stay sold and only the numbers it never saw are issued again.
+    public TicketPool(String eventName, int maxCapacity, int totalTickets, InventorySource inventorySource,
+                      TicketStore ticketStore) {
         validateParameters(maxCapacity, totalTickets);
         this.eventName = eventName;
         this.maxCapacity = maxCapacity;
         this.totalTickets = totalTickets;
         this.maxVIPTickets = totalTickets / 4;
-        this.ticketQueue = new ArrayBlockingQueue<>(maxCapacity);
+        this.lowInventoryThreshold = Math.max(TicketRangeLease.LOW_INVENTORY_BLOCK, totalTickets / 20);
+        this.ticketIdPrefix = ticketIdPrefix(eventName);
+        this.inventorySource = inventorySource;
+        // Capacity is enforced under poolLock so it can be resized while a sale is running
+        this.ticketStore = ticketStore != null ? ticketStore : new QueueTicketStore(eventName);
         this.consumerQueue = new PriorityBlockingQueue<>(11, createConsumerComparator());
+        if (this.ticketStore.isRecovered()) {
+            if (inventorySource != null) {
+                throw new IllegalArgumentException("A recovered ticket store cannot be used with an inventory source");
+            }
+            nextSequence.set(totalTickets);
+            for (int[] range : this.ticketStore.getUnissuedRanges()) {
+                returnRange(range[0], range[1]);
+            }
+            ticketsConsumed.set(this.ticketStore.getSoldCount());
+            vipTicketsConsumed.set(this.ticketStore.getVIPSoldCount());
+            vipTicketsReserved.set(this.ticketStore.getVIPSoldCount());
+            ticketsProduced.set(this.ticketStore.getSoldCount() + this.ticketStore.size());
+        }
+    }
+
+    static String ticketIdPrefix(String eventName) {
+        return eventName.replaceAll("\\s+", "") + "-";
     }
 
     private Comparator<TicketConsumer> createConsumerComparator() {
@@ -137,133 +212,732 @@ public class TicketPool {
                 .thenComparing(TicketConsumer::getConsumerId);
     }
 
+    @Override
     public boolean produceTicket(TicketProducer producer) {
         poolLock.lock();
         try {
-            if (isAllTicketsProduced()) {
+            if (isAllTicketsProduced() || completion.isDone()) {
                 return false;
             }
 
-            while (ticketQueue.size() >= maxCapacity) {
+            // Held tickets still occupy pool space so releasing a hold can never overfill the pool
+            while (ticketStore.size() + ticketsHeld.get() >= maxCapacity) {
                 if (!notFull.await(100, TimeUnit.MILLISECONDS)) {
+                    producerTimeouts.incrementAndGet();
                     throw new TicketException("Timeout waiting for space in ticket pool");
                 }
+                // Other producers may have used up the remaining tickets while the lock was released
+                if (isAllTicketsProduced() || completion.isDone()) {
+                    return false;
+                }
             }
 
-            Ticket ticket = createTicket(producer);
-            if (ticketQueue.offer(ticket)) {
-                ticketsProduced.incrementAndGet();
+            // Leasing producers number tickets from their own block instead of the shared sequence
+            TicketLease lease = producer.getLease();
+            int sequence = lease != null ? lease.nextSequence() : claimSequence();
+            if (sequence < 0) {
+                return false;
+            }
+            ticketStore.add(producer.getProducerId(), sequence);
+            ticketsProduced.incrementAndGet();
+            if (LOGGER.isLoggable(Level.INFO)) {
                 LOGGER.logp(Level.INFO, "TicketPool", "addTicket",
                         String.format("Vendor %s added Ticket ID: %d pool size: %d",
                                 producer.getProducerId().replace("Producer-", ""),
-                                ticketsProduced.get(),
-                                ticketQueue.size()));
-                notEmpty.signalAll();
-                return true;
+                                sequence,
+                                ticketStore.size()));
             }
-            return false;
+            notEmpty.signalAll();
+            return true;
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new TicketException("Producer interrupted while waiting", e);
         } finally {
-            poolLock.unlock();
+            unlockAndCheckSoldOut();
         }
     }
 
+    @Override
     public boolean consumeTicket(TicketConsumer consumer) {
+        return consumeTicket(consumer, false);
+    }
+
+    // The wait releases poolLock, so a VIP sale checks the VIP cap again every time it wakes
+    private boolean consumeTicket(TicketConsumer consumer, boolean vipSale) {
         poolLock.lock();
+        long waitStarted = 0;
         try {
             if (!consumerQueue.contains(consumer)) {
                 consumerQueue.offer(consumer);
             }
+            consumerCalls.incrementAndGet();
 
-            while (ticketQueue.isEmpty() || consumerQueue.peek() != consumer) {
-                if (isAllTicketsConsumed()) {
-                    consumerQueue.remove(consumer);
+            while (ticketStore.isEmpty() || consumerQueue.peek() != consumer) {
+                if (isAllTicketsConsumed() || completion.isDone() || (vipSale && isVIPCapReached())) {
+                    leaveConsumerQueue(consumer);
                     return false;
                 }
+                if (waitStarted == 0) {
+                    waitStarted = System.nanoTime();
+                }
                 if (!notEmpty.await(100, TimeUnit.MILLISECONDS)) {
+                    consumerTimeouts.incrementAndGet();
+                    // A consumer that gives up must not stay at the head of the queue and block the rest
+                    leaveConsumerQueue(consumer);
                     throw new TicketException("Timeout waiting for tickets");
                 }
             }
+            if (vipSale && !reserveVIP(1)) {
+                leaveConsumerQueue(consumer);
+                return false;
+            }
 
-            Ticket ticket = ticketQueue.poll();
+            Ticket ticket = ticketStore.take();
             if (ticket != null) {
                 consumerQueue.poll();
+                sellReserved(ticket, vipSale);
                 ticketsConsumed.incrementAndGet();
-                LOGGER.logp(Level.INFO, "TicketPool", "buyTicket",
-                        String.format("Customer %s bought Ticket ID: %d pool size: %d",
-                                consumer.getConsumerId().replace("Consumer-", ""),
-                                Integer.parseInt(ticket.getTicketId().substring(ticket.getTicketId().lastIndexOf('-') + 1)),
-                                ticketQueue.size()));
+                if (vipSale) {
+                    vipTicketsConsumed.incrementAndGet();
+                }
+                notifySale(consumer.getConsumerId(), ticket, vipSale);
+                if (LOGGER.isLoggable(Level.INFO)) {
+                    LOGGER.logp(Level.INFO, "TicketPool", "buyTicket",
+                            String.format("Customer %s bought Ticket ID: %d pool size: %d",
+                                    consumer.getConsumerId().replace("Consumer-", ""),
+                                    Integer.parseInt(ticket.getTicketId().substring(ticket.getTicketId().lastIndexOf('-') + 1)),
+                                    ticketStore.size()));
+                }
                 notFull.signalAll();
                 return true;
             }
 
+            if (vipSale) {
+                cancelVIP(1);
+            }
             consumerQueue.remove(consumer);
             return false;
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            leaveConsumerQueue(consumer);
             throw new TicketException("Consumer interrupted while waiting", e);
+        } finally {
+            if (waitStarted != 0) {
+                consumerWaitNanos.addAndGet(System.nanoTime() - waitStarted);
+            }
+            unlockAndCheckSoldOut();
+        }
+    }
+
+    // Non-blocking purchase for front-ends that serve many customers from a few threads and cannot park on notEmpty
+    @Override
+    public Ticket purchaseTicket(String customerId, boolean vip) {
+        List<Ticket> tickets = purchaseTickets(customerId, 1, vip);
+        return tickets.isEmpty() ? null : tickets.get(0);
+    }
+
+    // All-or-nothing purchase of several tickets; returns an empty list if they are not all available right now
+    public List<Ticket> purchaseTickets(String customerId, int count, boolean vip) {
+        purchaseCalls.incrementAndGet();
+        poolLock.lock();
+        try {
+            List<Ticket> tickets = takeTickets(count, vip);
+            recordSales(customerId, tickets, vip);
+            if (!tickets.isEmpty()) {
+                notFull.signalAll();
+            }
+            return tickets;
+        } finally {
+            unlockAndCheckSoldOut();
+        }
+    }
+
+    // Takes tickets out of circulation for a customer without selling them; null if not all are available
+    public TicketHold holdTickets(String customerId, int count, boolean vip) {
+        purchaseCalls.incrementAndGet();
+        poolLock.lock();
+        try {
+            List<Ticket> tickets = takeTickets(count, vip);
+            if (tickets.isEmpty()) {
+                return null;
+            }
+            for (Ticket ticket : tickets) {
+                ticketStore.held(ticket);
+            }
+            TicketHold hold = new TicketHold(nextHoldId.incrementAndGet(), customerId, vip, tickets);
+            holds.put(hold.getHoldId(), hold);
+            if (holdSweep == null) {
+                long interval = Math.max(10, Math.min(MAX_HOLD_SWEEP_MILLIS, holdTimeoutMillis / 4));
+                holdSweep = HOLD_SWEEPER.scheduleWithFixedDelay(this::expireHolds, interval, interval, TimeUnit.MILLISECONDS);
+            }
+            ticketsHeld.addAndGet(tickets.size());
+            if (vip) {
+                vipTicketsHeld.addAndGet(tickets.size());
+            }
+            return hold;
         } finally {
             poolLock.unlock();
         }
     }
 
+    // Sells every ticket in the hold; returns null if the hold is unknown or already settled
+    public TicketHold confirmHold(long holdId) {
+        poolLock.lock();
+        try {
+            TicketHold hold = removeHold(holdId);
+            if (hold == null) {
+                return null;
+            }
+            recordSales(hold.getCustomerId(), hold.getTickets(), hold.isVip());
+            notFull.signalAll();
+            return hold;
+        } finally {
+            unlockAndCheckSoldOut();
+        }
+    }
+
+    // Puts held tickets back at the front of the pool so they are the next ones sold
+    public TicketHold releaseHold(long holdId) {
+        poolLock.lock();
+        try {
+            TicketHold hold = removeHold(holdId);
+            if (hold == null) {
+                return null;
+            }
+            List<Ticket> tickets = hold.getTickets();
+            for (int i = tickets.size() - 1; i >= 0; i--) {
+                ticketStore.returnFirst(tickets.get(i));
+            }
+            if (hold.isVip()) {
+                cancelVIP(tickets.size());
+            }
+            notEmpty.signalAll();
+            return hold;
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    // Releases every hold older than the hold timeout; the sweep stops once no holds are left
+    private void expireHolds() {
+        List<Long> expired = new ArrayList<>();
+        poolLock.lock();
+        try {
+            long now = System.nanoTime();
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(holdTimeoutMillis);
+            for (TicketHold hold : holds.values()) {
+                if (now - hold.createdNanos > timeoutNanos) {
+                    expired.add(hold.getHoldId());
+                }
+            }
+            for (long holdId : expired) {
+                releaseHold(holdId);
+            }
+            if (holds.isEmpty() && holdSweep != null) {
+                holdSweep.cancel(false);
+                holdSweep = null;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not expire holds for " + eventName, e);
+        } finally {
+            poolLock.unlock();
+        }
+        if (!expired.isEmpty()) {
+            LOGGER.warning(String.format("Released %d holds on %s not settled within %d ms",
+                    expired.size(), eventName, holdTimeoutMillis));
+        }
+    }
+
+    public long getHoldTimeoutMillis() {
+        return holdTimeoutMillis;
+    }
+
+    // Applies to existing holds too, from the next sweep on
+    public void setHoldTimeout(long holdTimeoutMillis) {
+        if (holdTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Hold timeout must be positive");
+        }
+        this.holdTimeoutMillis = holdTimeoutMillis;
+    }
+
+    private TicketHold removeHold(long holdId) {
+        TicketHold hold = holds.remove(holdId);
+        if (hold != null) {
+            ticketsHeld.addAndGet(-hold.getTickets().size());
+            if (hold.isVip()) {
+                vipTicketsHeld.addAndGet(-hold.getTickets().size());
+            }
+        }
+        return hold;
+    }
+
+    // Caller holds poolLock
+    private List<Ticket> takeTickets(int count, boolean vip) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Ticket count must be positive");
+        }
+        if (ticketStore.size() < count) {
+            return Collections.emptyList();
+        }
+        if (vip && isVIPCapReached()) {
+            return Collections.emptyList();
+        }
+        // Regular customers still give way to a VIP consumer that is waiting for the next ticket
+        TicketConsumer waiting = consumerQueue.peek();
+        if (!vip && waiting != null && waiting.isPriority()) {
+            return Collections.emptyList();
+        }
+        // Last, so a reservation is only made once the tickets are certain to be taken
+        if (vip && !reserveVIP(count)) {
+            return Collections.emptyList();
+        }
+
+        List<Ticket> tickets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tickets.add(ticketStore.take());
+        }
+        return tickets;
+    }
+
+    // Caller holds poolLock; VIP tickets were reserved when they were taken
+    private void recordSales(String customerId, List<Ticket> tickets, boolean vip) {
+        for (int i = 0; i < tickets.size(); i++) {
+            try {
+                recordSale(customerId, tickets.get(i), vip);
+            } catch (RuntimeException e) {
+                if (vip && i + 1 < tickets.size()) {
+                    cancelVIP(tickets.size() - i - 1);
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Sells a ticket whose VIP reservation, if any, is given back should the store refuse the sale
+    private void sellReserved(Ticket ticket, boolean vip) {
+        try {
+            ticketStore.sold(ticket, vip);
+        } catch (RuntimeException e) {
+            if (vip) {
+                cancelVIP(1);
+            }
+            throw e;
+        }
+    }
+
+    // Caller holds poolLock
+    private void recordSale(String customerId, Ticket ticket, boolean vip) {
+        sellReserved(ticket, vip);
+        ticketsConsumed.incrementAndGet();
+        if (vip) {
+            vipTicketsConsumed.incrementAndGet();
+        }
+        notifySale(customerId, ticket, vip);
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.logp(Level.INFO, "TicketPool", "buyTicket",
+                    String.format("Customer %s bought Ticket ID: %d pool size: %d",
+                            customerId,
+                            Integer.parseInt(ticket.getTicketId().substring(ticket.getTicketId().lastIndexOf('-') + 1)),
+                            ticketStore.size()));
+        }
+    }
+
+    @Override
     public boolean consumeVIPTicket(TicketConsumer consumer) {
+        return consumeTicket(consumer, true);
+    }
+
+    // Caller holds poolLock
+    private boolean isVIPCapReached() {
+        return vipTicketsReserved.get() >= maxVIPTickets;
+    }
+
+    // Caller holds poolLock; whoever is next in line may now be the head of the queue
+    private void leaveConsumerQueue(TicketConsumer consumer) {
+        if (consumerQueue.remove(consumer)) {
+            notEmpty.signalAll();
+        }
+    }
+
+    private void notifySale(String customerId, Ticket ticket, boolean vip) {
+        SaleListener listener = saleListener;
+        if (listener != null) {
+            listener.onSale(customerId, ticket, vip);
+        }
+    }
+
+    // Replaces any earlier listener; sales made before this call are not replayed to it
+    @Override
+    public void setSaleListener(SaleListener listener) {
+        this.saleListener = listener;
+    }
+
+    // Completion callbacks run on the thread that made the last sale, but never while it holds poolLock
+    private void unlockAndCheckSoldOut() {
+        poolLock.unlock();
+        if (!poolLock.isHeldByCurrentThread() && !completion.isDone() && isAllTicketsConsumed()) {
+            completeRun(RunOutcome.SOLD_OUT);
+        }
+    }
+
+    // Stops the run early; blocked producers and consumers return false straight away
+    @Override
+    public boolean cancel() {
+        return completeRun(RunOutcome.CANCELLED);
+    }
+
+    public boolean fail(Throwable cause) {
+        failureCause = cause;
+        return completeRun(RunOutcome.FAILED);
+    }
+
+    private boolean completeRun(RunOutcome outcome) {
+        if (!completion.complete(outcome)) {
+            return false;
+        }
+        LOGGER.logp(Level.INFO, "TicketPool", "completeRun",
+                String.format("Run for %s finished: %s, sold %d of %d tickets",
+                        eventName, outcome, ticketsConsumed.get(), totalTickets));
+        // Wake every waiter so it sees the run is over instead of waiting out its timeout
         poolLock.lock();
         try {
-            if (vipTicketsConsumed.get() >= maxVIPTickets) {
-                return false;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            poolLock.unlock();
+        }
+        return true;
+    }
+
+    // Completes once with the outcome of the run; the returned copy cannot complete the pool's own signal
+    public CompletableFuture<RunOutcome> getCompletion() {
+        return completion.copy();
+    }
+
+    @Override
+    public boolean isRunComplete() {
+        return completion.isDone();
+    }
+
+    public Throwable getFailureCause() {
+        return failureCause;
+    }
+
+    private Ticket createTicket(String issuerId, int sequence) {
+        return new Ticket(ticketIdPrefix + issuerId + "-" + sequence, eventName);
+    }
+
+    @Override
+    public TicketRangeLease openLease(String holderId, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Lease block size must be positive");
+        }
+        return new TicketRangeLease(this, holderId, blockSize);
+    }
+
+    // Hands out [from, to) of never-issued sequence numbers, reusing ranges other lessees gave back first.
+    // Returns null once the whole budget of totalTickets has been issued or is leased out.
+    int[] leaseRange(int requested) {
+        while (true) {
+            int[] returned = returnedRanges.poll();
+            if (returned != null) {
+                int size = returned[1] - returned[0];
+                if (size > requested) {
+                    returnedRanges.offer(new int[]{returned[0] + requested, returned[1]});
+                    returned[1] = returned[0] + requested;
+                    size = requested;
+                }
+                returnedTickets.addAndGet(-size);
+                return returned;
             }
+            if (inventorySource != null) {
+                return inventorySource.acquire(requested);
+            }
+
+            int issued = nextSequence.get();
+            int remaining = totalTickets - issued;
+            if (remaining <= 0) {
+                // A lessee may be handing a range back at this moment
+                if (returnedTickets.get() <= 0) {
+                    return null;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            int size = Math.min(requested, remaining);
+            if (isInventoryLow()) {
+                size = Math.min(size, TicketRangeLease.LOW_INVENTORY_BLOCK);
+            }
+            if (nextSequence.compareAndSet(issued, issued + size)) {
+                return new int[]{issued + 1, issued + size + 1};
+            }
+        }
+    }
+
+    // leaseRange() for a TicketRangeLease: the block counts as unproduced until issued or returned
+    int[] leaseBlock(int requested) {
+        int[] range = leaseRange(requested);
+        if (range != null) {
+            ticketsLeased.addAndGet(range[1] - range[0]);
+        }
+        return range;
+    }
+
+    void leasedNumbersIssued(int count) {
+        ticketsLeased.addAndGet(-count);
+    }
 
-            boolean consumed = consumeTicket(consumer);
-            if (consumed) {
-                vipTicketsConsumed.incrementAndGet();
+    void returnBlock(int from, int to) {
+        if (from < to) {
+            returnRange(from, to);
+            ticketsLeased.addAndGet(from - to);
+        }
+    }
+
+    final void returnRange(int from, int to) {
+        if (from < to) {
+            returnedRanges.offer(new int[]{from, to});
+            returnedTickets.addAndGet(to - from);
+        }
+    }
+
+    private int claimSequence() {
+        int[] range = leaseRange(1);
+        return range == null ? -1 : range[0];
+    }
+
+    // Gives the released tickets nobody bought and the ranges lessees handed back to the inventory source, so
+    // other processes can sell them once this one stops selling or sits idle; returns how many went back.
+    // Held tickets stay until confirmed or released, and producers still running may release more later.
+    public int returnUnsold() {
+        if (inventorySource == null) {
+            return 0;
+        }
+        poolLock.lock();
+        try {
+            List<Integer> sequences = new ArrayList<>();
+            for (Ticket ticket = ticketStore.take(); ticket != null; ticket = ticketStore.take()) {
+                String ticketId = ticket.getTicketId();
+                sequences.add(Integer.parseInt(ticketId.substring(ticketId.lastIndexOf('-') + 1)));
             }
-            return consumed;
+            ticketsProduced.addAndGet(-sequences.size());
+            int returned = sequences.size();
+            // Sent in runs of consecutive numbers; producers lease blocks, so most of the store coalesces
+            Collections.sort(sequences);
+            int i = 0;
+            while (i < sequences.size()) {
+                int from = sequences.get(i);
+                int to = from + 1;
+                while (++i < sequences.size() && sequences.get(i) == to) {
+                    to++;
+                }
+                inventorySource.restock(from, to);
+            }
+            for (int[] range = returnedRanges.poll(); range != null; range = returnedRanges.poll()) {
+                returnedTickets.addAndGet(range[0] - range[1]);
+                inventorySource.restock(range[0], range[1]);
+                returned += range[1] - range[0];
+            }
+            if (returned > 0) {
+                notFull.signalAll();
+                LOGGER.info(String.format("Returned %d unsold tickets of %s to the inventory source", returned, eventName));
+            }
+            return returned;
         } finally {
             poolLock.unlock();
         }
     }
 
-    private Ticket createTicket(TicketProducer producer) {
-        String ticketId = String.format("%s-%s-%d", eventName.replaceAll("\\s+", ""),
-                producer.getProducerId(),
-                ticketsProduced.get() + 1);
-        return new Ticket(ticketId, eventName);
+    // Fewer unleased tickets than this and lessees hand back all but a small tail of their blocks
+    boolean isInventoryLow() {
+        if (inventorySource != null) {
+            return inventorySource.isInventoryLow();
+        }
+        return totalTickets - nextSequence.get() + returnedTickets.get() < lowInventoryThreshold;
+    }
+
+    // Ticket sold straight from a lease: no queue, no poolLock; counters are settled per block
+    Ticket issueLeasedTicket(String holderId, int sequence, String customerId, boolean vip) {
+        Ticket ticket = createTicket(holderId, sequence);
+        ticketStore.sold(ticket, vip);
+        notifySale(customerId, ticket, vip);
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.logp(Level.INFO, "TicketPool", "buyTicket",
+                    String.format("Customer %s bought Ticket ID: %d pool size: %d",
+                            customerId, sequence, ticketStore.size()));
+        }
+        return ticket;
+    }
+
+    void settleLeasedSales(int sold) {
+        ticketsProduced.addAndGet(sold);
+        ticketsConsumed.addAndGet(sold);
+        if (!completion.isDone() && isAllTicketsConsumed()) {
+            completeRun(RunOutcome.SOLD_OUT);
+        }
+    }
+
+    // The one way to claim VIP allocation, with or without poolLock: the compare-and-set keeps leased and
+    // queued sales from both passing the cap check, then the store reserves against any event-wide cap
+    private boolean reserveVIP(int count) {
+        while (true) {
+            int reserved = vipTicketsReserved.get();
+            if (reserved + count > maxVIPTickets) {
+                return false;
+            }
+            if (vipTicketsReserved.compareAndSet(reserved, reserved + count)) {
+                break;
+            }
+        }
+        if (ticketStore.reserveVIP(count, maxVIPTickets)) {
+            return true;
+        }
+        vipTicketsReserved.addAndGet(-count);
+        return false;
+    }
+
+    // Gives back reservations whose tickets were not sold
+    private void cancelVIP(int count) {
+        vipTicketsReserved.addAndGet(-count);
+        ticketStore.cancelVIP(count);
     }
 
+    // VIP sales from a lease still count against the shared VIP cap
+    boolean reserveVIPSale() {
+        if (!reserveVIP(1)) {
+            return false;
+        }
+        vipTicketsConsumed.incrementAndGet();
+        return true;
+    }
+
+    // Undoes reserveVIPSale() for a sale that found no ticket
+    void cancelVIPSale() {
+        vipTicketsConsumed.decrementAndGet();
+        cancelVIP(1);
+    }
+
+    @Override
     public boolean isAllTicketsProduced() {
+        if (inventorySource != null) {
+            // The source is drained once every number is claimed, including those still unsold in leases
+            return inventorySource.isSoldOut() && returnedTickets.get() == 0 && ticketsLeased.get() == 0;
+        }
         return ticketsProduced.get() >= totalTickets;
     }
 
+    @Override
     public boolean isAllTicketsConsumed() {
-        return isAllTicketsProduced() && ticketQueue.isEmpty();
+        return isAllTicketsProduced() && ticketStore.isEmpty() && ticketsHeld.get() == 0;
     }
 
+    // Live count; may contend with sales on the ticket store. Pollers should read getAvailability() instead.
+    @Override
     public int getAvailableTickets() {
-        return ticketQueue.size();
+        return ticketStore.size();
+    }
+
+    // Latest published snapshot, at most AvailabilityFeed.DEFAULT_INTERVAL_MILLIS old while the run is going
+    public AvailabilitySnapshot getAvailability() {
+        return getAvailabilityFeed().current();
     }
 
+    // Started on first use so pools nobody reads do not keep a timer running
+    public AvailabilityFeed getAvailabilityFeed() {
+        AvailabilityFeed feed = availabilityFeed;
+        if (feed != null) {
+            return feed;
+        }
+        synchronized (feedLock) {
+            if (availabilityFeed == null) {
+                AvailabilityFeed started = AvailabilityFeed.start(this, AvailabilityFeed.DEFAULT_INTERVAL_MILLIS);
+                availabilityFeed = started;
+                completion.whenComplete((outcome, error) -> started.finish());
+            }
+            return availabilityFeed;
+        }
+    }
+
+    @Override
+    public String getEventName() {
+        return eventName;
+    }
+
+    @Override
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    // Tickets already in the pool are kept when shrinking; producers wait until it drains below the new limit
+    public void setMaxCapacity(int newCapacity) {
+        validateParameters(newCapacity, totalTickets);
+        poolLock.lock();
+        try {
+            int oldCapacity = maxCapacity;
+            maxCapacity = newCapacity;
+            notFull.signalAll();
+            LOGGER.logp(Level.INFO, "TicketPool", "setMaxCapacity",
+                    String.format("Pool capacity changed from %d to %d, pool size: %d",
+                            oldCapacity, newCapacity, ticketStore.size()));
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    @Override
     public int getTotalTickets() {
         return totalTickets;
     }
 
+    @Override
     public int getTicketsProduced() {
         return ticketsProduced.get();
     }
 
+    @Override
     public int getTicketsConsumed() {
         return ticketsConsumed.get();
     }
 
+    @Override
     public int getVIPTicketsConsumed() {
         return vipTicketsConsumed.get();
     }
 
+    public int getTicketsHeld() {
+        return ticketsHeld.get();
+    }
+
+    @Override
+    public int getMaxVIPTickets() {
+        return maxVIPTickets;
+    }
+
+    // Producer waits for pool space that ended in a timeout
+    public long getProducerTimeouts() {
+        return producerTimeouts.get();
+    }
+
+    // Consumer waits for a ticket that ended in a timeout
+    public long getConsumerTimeouts() {
+        return consumerTimeouts.get();
+    }
+
+    public long getConsumerCalls() {
+        return consumerCalls.get();
+    }
+
+    public long getPurchaseCalls() {
+        return purchaseCalls.get();
+    }
+
+    // Total time consumers spent parked on an empty pool or behind higher-priority consumers
+    public long getConsumerWaitNanos() {
+        return consumerWaitNanos.get();
+    }
+
     private void validateParameters(int maxCapacity, int totalTickets) {
         if (maxCapacity <= 0 || totalTickets <= 0) {
             throw new IllegalArgumentException("Maximum capacity and total tickets must be positive");
@@ -0,0 +1,120 @@
+package com.example.myproject.model;
+
+// A block of ticket sequence numbers owned by one thread, so issuing a number is a plain increment
+// instead of a contended update on the pool. Not thread-safe: each thread opens its own lease.
+public class TicketRangeLease implements TicketLease {
+    // Block size once the pool is nearly sold out, so the last tickets are not stranded in idle leases
+    public static final int LOW_INVENTORY_BLOCK = 4;
+
+    private final TicketPool ticketPool;
+    private final String holderId;
+    private final int blockSize;
+    private int next;
+    private int end;
+    private int unsettledSales = 0;
+    private int ticketsIssued = 0;
+    // Issued since the pool last heard, so it pays one atomic update per block rather than per ticket
+    private int unreportedIssues = 0;
+    private boolean closed = false;
+
+    TicketRangeLease(TicketPool ticketPool, String holderId, int blockSize) {
+        this.ticketPool = ticketPool;
+        this.holderId = holderId;
+        this.blockSize = blockSize;
+    }
+
+    // Next sequence number from the block, refilling from the pool as needed; -1 once every ticket is issued
+    @Override
+    public int nextSequence() {
+        if (closed) {
+            throw new IllegalStateException("Lease " + holderId + " is closed");
+        }
+        if (next < end && ticketPool.isInventoryLow() && end - next > LOW_INVENTORY_BLOCK) {
+            // Hand the tail back so other threads can still reach the last tickets
+            ticketPool.returnBlock(next + LOW_INVENTORY_BLOCK, end);
+            end = next + LOW_INVENTORY_BLOCK;
+        }
+        if (next >= end) {
+            settle();
+            int[] range = ticketPool.leaseBlock(blockSize);
+            if (range == null) {
+                return -1;
+            }
+            next = range[0];
+            end = range[1];
+        }
+        ticketsIssued++;
+        unreportedIssues++;
+        int sequence = next++;
+        if (next == end) {
+            ticketPool.leasedNumbersIssued(unreportedIssues);
+            unreportedIssues = 0;
+        }
+        return sequence;
+    }
+
+    // Sells one ticket straight from the block, bypassing the pool queue; null once the event is sold out
+    // or a VIP sale would exceed the VIP cap. Pool counters catch up each time the block is refilled.
+    @Override
+    public Ticket sell(String customerId, boolean vip) {
+        if (vip && !ticketPool.reserveVIPSale()) {
+            return null;
+        }
+        int sequence = nextSequence();
+        if (sequence < 0) {
+            if (vip) {
+                ticketPool.cancelVIPSale();
+            }
+            return null;
+        }
+        Ticket ticket;
+        try {
+            ticket = ticketPool.issueLeasedTicket(holderId, sequence, customerId, vip);
+        } catch (RuntimeException e) {
+            if (vip) {
+                ticketPool.cancelVIPSale();
+            }
+            throw e;
+        }
+        unsettledSales++;
+        return ticket;
+    }
+
+    @Override
+    public int getRemaining() {
+        return end - next;
+    }
+
+    @Override
+    public int getTicketsIssued() {
+        return ticketsIssued;
+    }
+
+    @Override
+    public String getHolderId() {
+        return holderId;
+    }
+
+    private void settle() {
+        if (unsettledSales > 0) {
+            ticketPool.settleLeasedSales(unsettledSales);
+            unsettledSales = 0;
+        }
+    }
+
+    // Settles outstanding sales and returns the unused part of the block to the pool
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        settle();
+        if (unreportedIssues > 0) {
+            ticketPool.leasedNumbersIssued(unreportedIssues);
+            unreportedIssues = 0;
+        }
+        ticketPool.returnBlock(next, end);
+        next = end;
+    }
+}
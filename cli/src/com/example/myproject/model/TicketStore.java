@@ -0,0 +1,57 @@
+package com.example.myproject.model;
+
+import java.util.Collections;
+import java.util.List;
+
+// Where a TicketPool keeps released tickets until they are sold, and how it tracks each ticket's state.
+// Every call is made under the pool's lock except sold() for tickets sold straight from a lease, and size().
+public interface TicketStore {
+    // A producer released ticket number sequence; it is taken after every ticket released before it
+    void add(String issuerId, int sequence);
+
+    // Next ticket in release order, or null if the store is empty
+    Ticket take();
+
+    // A released hold goes back to the front so its tickets are the next ones taken
+    void returnFirst(Ticket ticket);
+
+    void held(Ticket ticket);
+
+    // Also called for leased sales, which never pass through add() and take()
+    void sold(Ticket ticket, boolean vip);
+
+    // Reserves count VIP tickets against a cap shared with pools in other processes, before they are taken;
+    // false if the event's VIP allocation is used up. A store used by one pool leaves the cap to the pool.
+    default boolean reserveVIP(int count, int maxVIPTickets) {
+        return true;
+    }
+
+    // Gives back VIP reservations whose tickets were not sold
+    default void cancelVIP(int count) {
+    }
+
+    // Tickets released and not yet taken
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // A recovered store already holds the state of an earlier run of the same event
+    default boolean isRecovered() {
+        return false;
+    }
+
+    // [from, to) runs of ticket numbers a recovered store has never seen released or sold
+    default List<int[]> getUnissuedRanges() {
+        return Collections.emptyList();
+    }
+
+    default int getSoldCount() {
+        return 0;
+    }
+
+    default int getVIPSoldCount() {
+        return 0;
+    }
+}
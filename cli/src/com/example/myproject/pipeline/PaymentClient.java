@@ -0,0 +1,16 @@
+package com.example.myproject.pipeline;
+
+import java.util.concurrent.CompletableFuture;
+
+// Payment provider used by the pay stage. Authorization is asynchronous so a slow provider holds no
+// pipeline thread while it works.
+public interface PaymentClient {
+    enum Outcome {
+        APPROVED,
+        DECLINED,
+        // The provider could not be reached or timed out; the tickets are released like a decline
+        FAILED
+    }
+
+    CompletableFuture<Outcome> authorize(String customerId, long holdId, int ticketCount);
+}
@@ -0,0 +1,166 @@
+package com.example.myproject.pipeline;
+
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.model.TicketPool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Sweeps payment latency and compares purchase throughput of the staged pipeline against a thread pool
+// that holds, pays and confirms inline. The pipeline should stay flat while the inline pool falls off
+// as soon as payment latency exceeds what its threads can cover. The pipeline itself is capped at
+// maxPaymentsInFlight / latency, so size that for the slowest provider expected.
+public class PipelineBenchmark {
+    // Held strongly so the levels set in main are not lost if the loggers are garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    private static final Logger PIPELINE_LOGGER = Logger.getLogger(PurchasePipeline.class.getName());
+    private static final String EVENT_NAME = "PipelineBenchmark";
+
+    // Usage: PipelineBenchmark [purchases] [maxPaymentsInFlight] [inlineThreads] [latencyMillis,...]
+    public static void main(String[] args) throws Exception {
+        int purchases = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int maxPaymentsInFlight = args.length > 1 ? Integer.parseInt(args[1]) : 16_384;
+        int inlineThreads = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        String[] latencies = (args.length > 3 ? args[3] : "0,10,50,100,200").split(",");
+        POOL_LOGGER.setLevel(Level.WARNING);
+        PIPELINE_LOGGER.setLevel(Level.WARNING);
+
+        System.out.println(String.format("%d purchases per run, %d payments in flight, %d inline threads",
+                purchases, maxPaymentsInFlight, inlineThreads));
+        // Untimed run so the first latency in the sweep is not measured on a cold JIT
+        try (SimulatedPaymentClient payments = new SimulatedPaymentClient(0, 0, 0);
+             PurchasePipeline pipeline = new PurchasePipeline(stockedPool(purchases), payments, 8_192, 2, maxPaymentsInFlight, 2)) {
+            runPipeline(pipeline, purchases, maxPaymentsInFlight * 2);
+        }
+        System.out.println(String.format("%-12s %16s %16s", "latency ms", "pipeline /s", "inline /s"));
+        PurchasePipeline lastPipeline = null;
+        for (String latency : latencies) {
+            long latencyMillis = Long.parseLong(latency.trim());
+            double pipelined;
+            try (SimulatedPaymentClient payments = new SimulatedPaymentClient(latencyMillis, 0.02, 0.01)) {
+                TicketPool ticketPool = stockedPool(purchases);
+                PurchasePipeline pipeline = new PurchasePipeline(ticketPool, payments, 8_192, 2, maxPaymentsInFlight, 2);
+                pipelined = runPipeline(pipeline, purchases, maxPaymentsInFlight * 2);
+                pipeline.close();
+                checkSettled(ticketPool);
+                lastPipeline = pipeline;
+            }
+            double inline;
+            try (SimulatedPaymentClient payments = new SimulatedPaymentClient(latencyMillis, 0.02, 0.01)) {
+                TicketPool ticketPool = stockedPool(purchases);
+                inline = runInline(ticketPool, payments, purchases, inlineThreads);
+                checkSettled(ticketPool);
+            }
+            System.out.println(String.format("%-12d %16.0f %16.0f", latencyMillis, pipelined, inline));
+        }
+        if (lastPipeline != null) {
+            System.out.println();
+            System.out.println("Stages in the last pipeline run:");
+            System.out.println(lastPipeline.summary());
+        }
+    }
+
+    private static TicketPool stockedPool(int totalTickets) {
+        TicketPool ticketPool = new TicketPool(EVENT_NAME, totalTickets, totalTickets);
+        TicketProducer stocker = new TicketProducer("Producer-1", ticketPool, 1);
+        while (ticketPool.produceTicket(stocker)) {
+            // Fill the pool up front so the benchmark measures purchases, not production
+        }
+        return ticketPool;
+    }
+
+    // Keeps up to window purchases outstanding and returns completed purchases per second
+    private static double runPipeline(PurchasePipeline pipeline, int purchases, int window) throws InterruptedException {
+        Semaphore outstanding = new Semaphore(window);
+        SteadyRate rate = new SteadyRate(purchases);
+        int submitted = 0;
+        while (submitted < purchases) {
+            outstanding.acquire();
+            CompletableFuture<PurchasePipeline.PurchaseResult> result = pipeline.submit("Customer-" + submitted, 1, false);
+            if (result.isDone() && result.join().getStatus() == PurchasePipeline.Status.REJECTED) {
+                // Back off briefly; a rejected purchase is retried rather than counted
+                outstanding.release();
+                Thread.sleep(1);
+                continue;
+            }
+            result.whenComplete((purchase, error) -> {
+                rate.completed();
+                outstanding.release();
+            });
+            submitted++;
+        }
+        outstanding.acquire(window);
+        return rate.perSecond();
+    }
+
+    // Baseline: each thread holds, waits for the payment and settles before taking the next purchase
+    private static double runInline(TicketPool ticketPool, PaymentClient payments, int purchases, int threads)
+            throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        AtomicInteger remaining = new AtomicInteger(purchases);
+        SteadyRate rate = new SteadyRate(purchases);
+        for (int i = 0; i < threads; i++) {
+            workers.submit(() -> {
+                int n;
+                while ((n = remaining.getAndDecrement()) > 0) {
+                    TicketPool.TicketHold hold = ticketPool.holdTickets("Customer-" + n, 1, false);
+                    if (hold == null) {
+                        rate.completed();
+                        continue;
+                    }
+                    PaymentClient.Outcome outcome = payments.authorize(hold.getCustomerId(), hold.getHoldId(), 1)
+                            .exceptionally(error -> PaymentClient.Outcome.FAILED)
+                            .join();
+                    if (outcome == PaymentClient.Outcome.APPROVED) {
+                        ticketPool.confirmHold(hold.getHoldId());
+                    } else {
+                        ticketPool.releaseHold(hold.getHoldId());
+                    }
+                    rate.completed();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        return rate.perSecond();
+    }
+
+    // Rate over the middle half of the completions, so neither run is measured on its ramp-up or its drain
+    private static class SteadyRate {
+        private final AtomicInteger completed = new AtomicInteger();
+        private final int from;
+        private final int to;
+        private volatile long fromNanos;
+        private volatile long toNanos;
+
+        SteadyRate(int total) {
+            this.from = total / 4;
+            this.to = total - total / 4;
+        }
+
+        void completed() {
+            int count = completed.incrementAndGet();
+            if (count == from) {
+                fromNanos = System.nanoTime();
+            } else if (count == to) {
+                toNanos = System.nanoTime();
+            }
+        }
+
+        double perSecond() {
+            return (to - from) / ((toNanos - fromNanos) / 1e9);
+        }
+    }
+
+    private static void checkSettled(TicketPool ticketPool) {
+        if (ticketPool.getTicketsHeld() != 0) {
+            throw new IllegalStateException(ticketPool.getTicketsHeld() + " tickets still held after the run");
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.myproject.pipeline;
+
+import com.example.myproject.metrics.LatencyHistogram;
+import com.example.myproject.model.Ticket;
+import com.example.myproject.model.TicketPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Purchases as three stages: reserve holds tickets in the pool, pay authorizes with the payment client,
+// settle confirms or releases the hold. Each stage has its own bounded queue and workers, and the pay
+// stage only dispatches authorizations, so payment latency overlaps other purchases instead of holding
+// a thread (or poolLock) for its whole length.
+public class PurchasePipeline implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(PurchasePipeline.class.getName());
+    // An authorization still pending after this long counts as failed, so a provider that never answers
+    // cannot keep the hold, or the in-flight slot, forever
+    public static final long DEFAULT_PAYMENT_TIMEOUT_MILLIS = 30_000;
+
+    public enum Status {
+        CONFIRMED,
+        DECLINED,
+        PAYMENT_FAILED,
+        // Not enough tickets were available to hold
+        UNAVAILABLE,
+        // The reserve queue was full; the caller should back off and retry
+        REJECTED
+    }
+
+    public static class PurchaseResult {
+        private final Status status;
+        private final String customerId;
+        private final List<Ticket> tickets;
+        private final long latencyNanos;
+
+        PurchaseResult(Status status, String customerId, List<Ticket> tickets, long latencyNanos) {
+            this.status = status;
+            this.customerId = customerId;
+            this.tickets = tickets;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getCustomerId() {
+            return customerId;
+        }
+
+        // The tickets sold; empty unless the purchase was confirmed
+        public List<Ticket> getTickets() {
+            return tickets;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PurchaseResult{customer='%s', status=%s, tickets=%d}", customerId, status, tickets.size());
+        }
+    }
+
+    // One purchase as it moves through the stages
+    private static class Purchase {
+        final String customerId;
+        final int count;
+        final boolean vip;
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<PurchaseResult> result = new CompletableFuture<>();
+        long enqueuedNanos;
+        TicketPool.TicketHold hold;
+        PaymentClient.Outcome payment;
+
+        Purchase(String customerId, int count, boolean vip) {
+            this.customerId = customerId;
+            this.count = count;
+            this.vip = vip;
+        }
+    }
+
+    // A bounded queue drained by a fixed set of worker threads; wait is time spent queued, service is
+    // time spent in the handler
+    public static class Stage {
+        private final String name;
+        private final BlockingQueue<Purchase> queue;
+        private final List<Thread> workers = new ArrayList<>();
+        private final Consumer<Purchase> handler;
+        private final LatencyHistogram waitTime = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final LongAdder processed = new LongAdder();
+        private final AtomicInteger peakDepth = new AtomicInteger();
+
+        Stage(String name, int queueCapacity, int workerCount, Consumer<Purchase> handler) {
+            if (queueCapacity <= 0 || workerCount <= 0) {
+                throw new IllegalArgumentException("Stage " + name + " needs a positive queue capacity and worker count");
+            }
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.handler = handler;
+            for (int i = 1; i <= workerCount; i++) {
+                Thread worker = new Thread(this::work, name + "-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+            }
+        }
+
+        void start() {
+            workers.forEach(Thread::start);
+        }
+
+        boolean offer(Purchase purchase) {
+            purchase.enqueuedNanos = System.nanoTime();
+            if (!queue.offer(purchase)) {
+                return false;
+            }
+            peakDepth.accumulateAndGet(queue.size(), Math::max);
+            return true;
+        }
+
+        // Blocks while the stage is full, pushing back on the stage in front of it
+        void put(Purchase purchase) throws InterruptedException {
+            purchase.enqueuedNanos = System.nanoTime();
+            queue.put(purchase);
+            peakDepth.accumulateAndGet(queue.size(), Math::max);
+        }
+
+        private void work() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Purchase purchase;
+                try {
+                    purchase = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                long start = System.nanoTime();
+                waitTime.record(start - purchase.enqueuedNanos);
+                try {
+                    handler.accept(purchase);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Stage " + name + " failed on a purchase for " + purchase.customerId, e);
+                    purchase.result.completeExceptionally(e);
+                }
+                serviceTime.record(System.nanoTime() - start);
+                processed.increment();
+            }
+        }
+
+        void stop() {
+            workers.forEach(Thread::interrupt);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return queue.size();
+        }
+
+        public int getPeakQueueDepth() {
+            return peakDepth.get();
+        }
+
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        public LatencyHistogram getWaitTime() {
+            return waitTime;
+        }
+
+        public LatencyHistogram getServiceTime() {
+            return serviceTime;
+        }
+
+        public String summary() {
+            return String.format("%-8s processed=%d depth=%d peak=%d%n         wait:    %s%n         service: %s",
+                    name, getProcessed(), getQueueDepth(), getPeakQueueDepth(), waitTime.summary(), serviceTime.summary());
+        }
+    }
+
+    private final TicketPool ticketPool;
+    private final PaymentClient paymentClient;
+    private final Stage reserveStage;
+    private final Stage payStage;
+    private final Stage settleStage;
+    // Bounds purchases between dispatching an authorization and a settle worker taking them; the settle queue
+    // is sized to take all of them
+    private final Semaphore paymentsInFlight;
+    private final int maxPaymentsInFlight;
+    private final LatencyHistogram paymentTime = new LatencyHistogram();
+    private final LatencyHistogram endToEnd = new LatencyHistogram();
+    private final LongAdder paymentTimeouts = new LongAdder();
+    private volatile long paymentTimeoutMillis = DEFAULT_PAYMENT_TIMEOUT_MILLIS;
+    private volatile boolean closed;
+
+    public PurchasePipeline(TicketPool ticketPool, PaymentClient paymentClient, int queueCapacity,
+                            int reserveWorkers, int maxPaymentsInFlight, int settleWorkers) {
+        if (maxPaymentsInFlight <= 0) {
+            throw new IllegalArgumentException("At least one payment must be allowed in flight");
+        }
+        this.ticketPool = ticketPool;
+        this.paymentClient = paymentClient;
+        this.paymentsInFlight = new Semaphore(maxPaymentsInFlight);
+        this.maxPaymentsInFlight = maxPaymentsInFlight;
+        this.reserveStage = new Stage("reserve", queueCapacity, reserveWorkers, this::reserve);
+        this.payStage = new Stage("pay", queueCapacity, 1, this::pay);
+        this.settleStage = new Stage("settle", Math.max(queueCapacity, maxPaymentsInFlight), settleWorkers, this::settle);
+        settleStage.start();
+        payStage.start();
+        reserveStage.start();
+        LOGGER.info(String.format("Purchase pipeline started for %s: queue capacity %d, %d reserve workers, "
+                        + "%d payments in flight, %d settle workers",
+                ticketPool.getEventName(), queueCapacity, reserveWorkers, maxPaymentsInFlight, settleWorkers));
+    }
+
+    // Queues a purchase without blocking; the result is REJECTED straight away if the reserve queue is full
+    public CompletableFuture<PurchaseResult> submit(String customerId, int count, boolean vip) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Ticket count must be positive");
+        }
+        Purchase purchase = new Purchase(customerId, count, vip);
+        if (!reserveStage.offer(purchase)) {
+            finish(purchase, Status.REJECTED, Collections.emptyList());
+        }
+        return purchase.result;
+    }
+
+    private void reserve(Purchase purchase) {
+        purchase.hold = ticketPool.holdTickets(purchase.customerId, purchase.count, purchase.vip);
+        if (purchase.hold == null) {
+            finish(purchase, Status.UNAVAILABLE, Collections.emptyList());
+            return;
+        }
+        try {
+            payStage.put(purchase);
+        } catch (InterruptedException e) {
+            ticketPool.releaseHold(purchase.hold.getHoldId());
+            finish(purchase, Status.REJECTED, Collections.emptyList());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs on the single pay worker; it waits only for an in-flight slot, never for the provider itself
+    private void pay(Purchase purchase) {
+        try {
+            paymentsInFlight.acquire();
+        } catch (InterruptedException e) {
+            ticketPool.releaseHold(purchase.hold.getHoldId());
+            finish(purchase, Status.REJECTED, Collections.emptyList());
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long started = System.nanoTime();
+        CompletableFuture<PaymentClient.Outcome> authorization;
+        try {
+            authorization = paymentClient.authorize(purchase.customerId, purchase.hold.getHoldId(), purchase.count);
+        } catch (RuntimeException e) {
+            authorization = CompletableFuture.failedFuture(e);
+        }
+        // A late answer from the provider is ignored; the tickets are already back in the pool
+        authorization.orTimeout(paymentTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((outcome, error) -> {
+            paymentTime.record(System.nanoTime() - started);
+            if (error instanceof TimeoutException) {
+                paymentTimeouts.increment();
+                LOGGER.log(Level.FINE, "Payment for " + purchase.customerId + " timed out after "
+                        + paymentTimeoutMillis + " ms");
+            } else if (error != null) {
+                LOGGER.log(Level.FINE, "Payment for " + purchase.customerId + " failed", error);
+            }
+            purchase.payment = error != null ? PaymentClient.Outcome.FAILED : outcome;
+            // The permit stays with the purchase until a settle worker takes it, so the queue has room unless
+            // close() has run; a purchase that is not queued, or that close() may have missed, is abandoned here
+            if (closed || !settleStage.offer(purchase) || (closed && settleStage.queue.remove(purchase))) {
+                abandon(purchase);
+            }
+        });
+    }
+
+    private void settle(Purchase purchase) {
+        paymentsInFlight.release();
+        long holdId = purchase.hold.getHoldId();
+        if (purchase.payment == PaymentClient.Outcome.APPROVED) {
+            TicketPool.TicketHold confirmed = ticketPool.confirmHold(holdId);
+            if (confirmed != null) {
+                finish(purchase, Status.CONFIRMED, confirmed.getTickets());
+                return;
+            }
+            LOGGER.warning("Hold " + holdId + " for " + purchase.customerId + " was gone before it could be confirmed");
+            finish(purchase, Status.PAYMENT_FAILED, Collections.emptyList());
+            return;
+        }
+        ticketPool.releaseHold(holdId);
+        finish(purchase, purchase.payment == PaymentClient.Outcome.DECLINED ? Status.DECLINED : Status.PAYMENT_FAILED,
+                Collections.emptyList());
+    }
+
+    private void abandon(Purchase purchase) {
+        if (purchase.payment != null) {
+            paymentsInFlight.release();
+        }
+        if (purchase.hold != null) {
+            ticketPool.releaseHold(purchase.hold.getHoldId());
+        }
+        finish(purchase, Status.REJECTED, Collections.emptyList());
+    }
+
+    private void finish(Purchase purchase, Status status, List<Ticket> tickets) {
+        long latency = System.nanoTime() - purchase.submittedNanos;
+        if (status != Status.REJECTED) {
+            endToEnd.record(latency);
+        }
+        purchase.result.complete(new PurchaseResult(status, purchase.customerId, tickets, latency));
+    }
+
+    public List<Stage> getStages() {
+        return List.of(reserveStage, payStage, settleStage);
+    }
+
+    public int getPaymentsInFlight() {
+        return maxPaymentsInFlight - paymentsInFlight.availablePermits();
+    }
+
+    public LatencyHistogram getPaymentTime() {
+        return paymentTime;
+    }
+
+    public long getPaymentTimeouts() {
+        return paymentTimeouts.sum();
+    }
+
+    public long getPaymentTimeoutMillis() {
+        return paymentTimeoutMillis;
+    }
+
+    // Applies to authorizations dispatched from now on
+    public void setPaymentTimeout(long paymentTimeoutMillis) {
+        if (paymentTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Payment timeout must be positive");
+        }
+        this.paymentTimeoutMillis = paymentTimeoutMillis;
+    }
+
+    public LatencyHistogram getEndToEnd() {
+        return endToEnd;
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Stage stage : getStages()) {
+            summary.append(stage.summary()).append(System.lineSeparator());
+        }
+        summary.append(String.format("payment  %s timeouts=%d%n", paymentTime.summary(), getPaymentTimeouts()));
+        summary.append(String.format("total    %s", endToEnd.summary()));
+        return summary.toString();
+    }
+
+    // Stops the workers and rejects whatever is still queued, returning any held tickets to the pool.
+    // Payments still at the provider when this runs are rejected and released once they complete.
+    @Override
+    public void close() {
+        closed = true;
+        List<Purchase> abandoned = new ArrayList<>();
+        for (Stage stage : getStages()) {
+            stage.stop();
+        }
+        for (Stage stage : getStages()) {
+            stage.queue.drainTo(abandoned);
+        }
+        abandoned.forEach(this::abandon);
+        if (!abandoned.isEmpty()) {
+            LOGGER.info("Purchase pipeline closed with " + abandoned.size() + " purchases rejected");
+        }
+    }
+}
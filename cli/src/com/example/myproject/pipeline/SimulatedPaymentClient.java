@@ -0,0 +1,53 @@
+package com.example.myproject.pipeline;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Local stand-in for a payment provider: answers after a random latency between 50% and 150% of the
+// mean, declining or failing a configured share of payments. One timer thread serves every payment in flight.
+public class SimulatedPaymentClient implements PaymentClient, AutoCloseable {
+    private final long meanLatencyMicros;
+    private final double declineRate;
+    private final double failureRate;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "payment-simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SimulatedPaymentClient(long meanLatencyMillis, double declineRate, double failureRate) {
+        if (meanLatencyMillis < 0) {
+            throw new IllegalArgumentException("Payment latency cannot be negative");
+        }
+        if (declineRate < 0 || failureRate < 0 || declineRate + failureRate > 1) {
+            throw new IllegalArgumentException("Decline and failure rates must be between 0 and 1");
+        }
+        this.meanLatencyMicros = TimeUnit.MILLISECONDS.toMicros(meanLatencyMillis);
+        this.declineRate = declineRate;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public CompletableFuture<Outcome> authorize(String customerId, long holdId, int ticketCount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        Outcome outcome = roll < failureRate ? Outcome.FAILED
+                : roll < failureRate + declineRate ? Outcome.DECLINED
+                : Outcome.APPROVED;
+        if (meanLatencyMicros == 0) {
+            return CompletableFuture.completedFuture(outcome);
+        }
+        long latency = meanLatencyMicros / 2 + random.nextLong(meanLatencyMicros + 1);
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        timer.schedule(() -> result.complete(outcome), latency, TimeUnit.MICROSECONDS);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
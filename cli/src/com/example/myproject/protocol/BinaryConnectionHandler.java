@@ -0,0 +1,234 @@
+package com.example.myproject.protocol;
+
+import com.example.myproject.model.Ticket;
+import com.example.myproject.model.TicketPool;
+import com.example.myproject.server.Connection;
+import com.example.myproject.server.ConnectionHandler;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import static com.example.myproject.protocol.TicketProtocol.*;
+
+// Decodes request frames straight out of the connection's direct read buffer and runs each one on the
+// worker executor, so a slow operation never holds up the requests pipelined behind it. Holds taken over a
+// connection and not yet settled are released when it closes.
+public class BinaryConnectionHandler implements ConnectionHandler {
+    private static final int RESPONSE_BUFFER_BYTES = 512;
+    private static final Queue<ByteBuffer> RESPONSE_BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, TicketPool> events;
+    private final Executor workers;
+    // Unsettled holds made over this connection and their pools; hold IDs are only unique within a pool
+    private final Map<TicketPool.TicketHold, TicketPool> openHolds = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public BinaryConnectionHandler(Map<String, TicketPool> events, Executor workers) {
+        this.events = events;
+        this.workers = workers;
+    }
+
+    @Override
+    public void onRead(Connection connection, ByteBuffer buffer) {
+        int frameLength;
+        while ((frameLength = completeFrameLength(buffer)) > 0) {
+            // Fields are read from a view that ends with the frame, so a short frame cannot read into the next one
+            ByteBuffer frame = buffer.slice(buffer.position() + 4, frameLength - 4);
+            buffer.position(buffer.position() + frameLength);
+            int requestId = frame.getInt();
+            byte opcode = frame.hasRemaining() ? frame.get() : 0;
+            Request request;
+            try {
+                request = decodeRequest(frame, requestId, opcode);
+                if (frame.hasRemaining()) {
+                    throw new IllegalArgumentException(frame.remaining() + " bytes after the request fields");
+                }
+            } catch (RuntimeException e) {
+                connection.send(error(requestId, opcode, BAD_REQUEST, "Malformed request"));
+                continue;
+            }
+            workers.execute(() -> connection.send(execute(request)));
+        }
+    }
+
+    @Override
+    public void onWritten(ByteBuffer buffer) {
+        if (buffer.isDirect() && buffer.capacity() == RESPONSE_BUFFER_BYTES) {
+            RESPONSE_BUFFERS.offer(buffer.clear());
+        }
+    }
+
+    private static Request decodeRequest(ByteBuffer buffer, int requestId, byte opcode) {
+        Request request = new Request(requestId, opcode, getString(buffer));
+        switch (opcode) {
+            case BUY:
+                request.customerId = getString(buffer);
+                request.vip = buffer.get() != 0;
+                request.count = 1;
+                break;
+            case BUY_N:
+            case HOLD:
+                request.customerId = getString(buffer);
+                request.vip = buffer.get() != 0;
+                request.count = buffer.getShort() & 0xFFFF;
+                break;
+            case RELEASE:
+            case CONFIRM:
+                request.holdId = buffer.getLong();
+                break;
+            case STATS:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + opcode);
+        }
+        return request;
+    }
+
+    @Override
+    public void onClose(Connection connection) {
+        closed = true;
+        for (TicketPool.TicketHold hold : openHolds.keySet()) {
+            TicketPool ticketPool = openHolds.remove(hold);
+            if (ticketPool != null) {
+                ticketPool.releaseHold(hold.getHoldId());
+            }
+        }
+    }
+
+    private ByteBuffer execute(Request request) {
+        TicketPool ticketPool = events.get(request.eventName);
+        if (ticketPool == null) {
+            return error(request.requestId, request.opcode, NOT_FOUND, "Unknown event " + request.eventName);
+        }
+        if ((request.opcode == BUY_N || request.opcode == HOLD)
+                && (request.count <= 0 || request.count > MAX_TICKETS_PER_REQUEST)) {
+            return error(request.requestId, request.opcode, BAD_REQUEST, "Ticket count must be 1-" + MAX_TICKETS_PER_REQUEST);
+        }
+
+        try {
+            switch (request.opcode) {
+                case BUY:
+                case BUY_N: {
+                    List<Ticket> tickets = ticketPool.purchaseTickets(request.customerId, request.count, request.vip);
+                    if (tickets.isEmpty()) {
+                        return unavailable(request, ticketPool);
+                    }
+                    return tickets(request, 0, tickets);
+                }
+                case HOLD: {
+                    TicketPool.TicketHold hold = ticketPool.holdTickets(request.customerId, request.count, request.vip);
+                    if (hold == null) {
+                        return unavailable(request, ticketPool);
+                    }
+                    openHolds.put(hold, ticketPool);
+                    if (closed && openHolds.remove(hold) != null) {
+                        // The connection closed while the hold was being made; nobody is left to settle it
+                        ticketPool.releaseHold(hold.getHoldId());
+                    }
+                    return tickets(request, hold.getHoldId(), hold.getTickets());
+                }
+                case CONFIRM: {
+                    TicketPool.TicketHold hold = ticketPool.confirmHold(request.holdId);
+                    if (hold == null) {
+                        return error(request.requestId, request.opcode, NOT_FOUND, "Unknown hold " + request.holdId);
+                    }
+                    openHolds.remove(hold);
+                    return tickets(request, 0, hold.getTickets());
+                }
+                case RELEASE: {
+                    TicketPool.TicketHold hold = ticketPool.releaseHold(request.holdId);
+                    if (hold == null) {
+                        return error(request.requestId, request.opcode, NOT_FOUND, "Unknown hold " + request.holdId);
+                    }
+                    openHolds.remove(hold);
+                    ByteBuffer response = begin(request.requestId, OK, request.opcode);
+                    response.putShort((short) hold.getTickets().size());
+                    return finish(response);
+                }
+                default: {
+                    ByteBuffer response = begin(request.requestId, OK, request.opcode);
+                    response.putInt(ticketPool.getTotalTickets())
+                            .putInt(ticketPool.getTicketsProduced())
+                            .putInt(ticketPool.getTicketsConsumed())
+                            .putInt(ticketPool.getVIPTicketsConsumed())
+                            .putInt(ticketPool.getTicketsHeld())
+                            .putInt(ticketPool.getAvailableTickets())
+                            .putInt(ticketPool.getMaxCapacity());
+                    return finish(response);
+                }
+            }
+        } catch (RuntimeException e) {
+            return error(request.requestId, request.opcode, ERROR, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static ByteBuffer unavailable(Request request, TicketPool ticketPool) {
+        if (ticketPool.isAllTicketsConsumed()) {
+            return error(request.requestId, request.opcode, SOLD_OUT, "Sold out");
+        }
+        return error(request.requestId, request.opcode, UNAVAILABLE, "Not enough tickets available, retry shortly");
+    }
+
+    private static ByteBuffer tickets(Request request, long holdId, List<Ticket> tickets) {
+        int size = 16 + 256 * tickets.size();
+        ByteBuffer response = begin(request.requestId, OK, request.opcode, size);
+        if (request.opcode == HOLD) {
+            response.putLong(holdId);
+        }
+        response.putShort((short) tickets.size());
+        for (Ticket ticket : tickets) {
+            putString(response, ticket.getTicketId());
+        }
+        return finish(response);
+    }
+
+    private static ByteBuffer error(int requestId, byte opcode, byte status, String message) {
+        ByteBuffer response = begin(requestId, status, opcode);
+        putString(response, truncate(message, 200));
+        return finish(response);
+    }
+
+    private static ByteBuffer begin(int requestId, byte status, byte opcode) {
+        return begin(requestId, status, opcode, RESPONSE_BUFFER_BYTES);
+    }
+
+    // Responses are encoded directly into pooled direct buffers, which the socket writes without another copy
+    private static ByteBuffer begin(int requestId, byte status, byte opcode, int size) {
+        ByteBuffer response = null;
+        if (size <= RESPONSE_BUFFER_BYTES) {
+            response = RESPONSE_BUFFERS.poll();
+            size = RESPONSE_BUFFER_BYTES;
+        }
+        if (response == null) {
+            response = ByteBuffer.allocateDirect(size);
+        }
+        response.putInt(0).putInt(requestId).put(status).put(opcode);
+        return response;
+    }
+
+    private static ByteBuffer finish(ByteBuffer response) {
+        response.putInt(0, response.position() - 4);
+        return response.flip();
+    }
+
+    private static class Request {
+        private final int requestId;
+        private final byte opcode;
+        private final String eventName;
+        private String customerId;
+        private boolean vip;
+        private int count;
+        private long holdId;
+
+        Request(int requestId, byte opcode, String eventName) {
+            this.requestId = requestId;
+            this.opcode = opcode;
+            this.eventName = eventName;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.myproject.protocol;
+
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.metrics.LatencyHistogram;
+import com.example.myproject.model.TicketPool;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Loopback benchmark: an in-process TicketProtocolServer driven by pipelining clients
+public class ProtocolBenchmark {
+    // Held strongly so the level set in main is not lost if the logger is garbage collected before TicketPool loads
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    private static final String EVENT_NAME = "benchmark";
+
+    // Usage: ProtocolBenchmark [connections] [pipelineDepth] [seconds] [buy|hold|stats] [loopThreads] [workerThreads]
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String operation = args.length > 3 ? args[3] : "buy";
+        int loopThreads = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+        int workerThreads = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+
+        POOL_LOGGER.setLevel(Level.WARNING);
+
+        // Stock the pool up front so the run measures the protocol rather than producer pacing
+        int totalTickets = 1_000_000;
+        TicketPool ticketPool = new TicketPool(EVENT_NAME, totalTickets, totalTickets);
+        TicketProducer stocker = new TicketProducer("Producer-1", ticketPool, 1);
+        while (ticketPool.produceTicket(stocker)) {
+            // keep filling
+        }
+
+        try (TicketProtocolServer server = new TicketProtocolServer(
+                new InetSocketAddress("127.0.0.1", 0), loopThreads, workerThreads)) {
+            server.registerEvent(ticketPool);
+            server.start();
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+
+            LatencyHistogram latency = new LatencyHistogram();
+            Map<Byte, LongAdder> statuses = new ConcurrentHashMap<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Thread> drivers = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int c = 0; c < connections; c++) {
+                int connectionId = c + 1;
+                Thread driver = new Thread(() -> drive(address, connectionId, depth, deadline, operation, latency, statuses));
+                driver.start();
+                drivers.add(driver);
+            }
+            for (Thread driver : drivers) {
+                driver.join();
+            }
+            double elapsed = (System.nanoTime() - started) / 1e9;
+
+            System.out.println(String.format("%s: %d connections x %d pipelined, %d loops, %d workers, %.1f s",
+                    operation, connections, depth, loopThreads, workerThreads, elapsed));
+            System.out.println(String.format("Throughput: %.0f requests/s", latency.getCount() / elapsed));
+            System.out.println("Latency: " + latency.summary());
+            Map<Byte, Long> byStatus = new TreeMap<>();
+            statuses.forEach((status, count) -> byStatus.put(status, count.sum()));
+            System.out.println("Responses by status: " + byStatus);
+            System.out.println(String.format("Pool: sold %d, held %d, available %d",
+                    ticketPool.getTicketsConsumed(), ticketPool.getTicketsHeld(), ticketPool.getAvailableTickets()));
+        }
+    }
+
+    private static void drive(InetSocketAddress address, int connectionId, int depth, long deadline, String operation,
+                              LatencyHistogram latency, Map<Byte, LongAdder> statuses) {
+        Semaphore window = new Semaphore(depth);
+        try (TicketProtocolClient client = new TicketProtocolClient(address)) {
+            long requestNumber = 0;
+            while (System.nanoTime() < deadline) {
+                window.acquire();
+                long sent = System.nanoTime();
+                String customerId = "bench-" + connectionId + "-" + (++requestNumber);
+                CompletableFuture<TicketProtocol.Response> future;
+                switch (operation) {
+                    case "hold":
+                        // Hold then release, so inventory is exercised without being used up; the release is
+                        // sent off the reader thread so a full socket buffer cannot stall response handling
+                        future = client.hold(EVENT_NAME, customerId, 2, false).thenComposeAsync(response -> response.isOk()
+                                ? client.release(EVENT_NAME, response.getHoldId())
+                                : CompletableFuture.completedFuture(response));
+                        break;
+                    case "stats":
+                        future = client.stats(EVENT_NAME);
+                        break;
+                    default:
+                        future = client.buy(EVENT_NAME, customerId, false);
+                        break;
+                }
+                future.whenComplete((response, error) -> {
+                    latency.record(System.nanoTime() - sent);
+                    byte status = error != null ? TicketProtocol.ERROR : response.getStatus();
+                    statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    window.release();
+                });
+            }
+            window.acquire(depth);
+        } catch (Exception e) {
+            System.err.println("Connection " + connectionId + " failed: " + e.getMessage());
+        }
+    }
+}
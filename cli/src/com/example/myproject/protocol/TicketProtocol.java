@@ -0,0 +1,203 @@
+package com.example.myproject.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Wire format shared by TicketProtocolServer and TicketProtocolClient. All integers are big-endian.
+//
+//   frame    = int32 length (bytes that follow) | int32 requestId | payload
+//   request  = opcode:u8 | event:str8 | operation fields
+//     BUY       customer:str8 | vip:u8
+//     BUY_N     customer:str8 | vip:u8 | count:u16
+//     HOLD      customer:str8 | vip:u8 | count:u16
+//     RELEASE   holdId:i64
+//     CONFIRM   holdId:i64
+//     STATS     -
+//   response = status:u8 | opcode:u8 | result fields when status is OK, else message:str8
+//     BUY, BUY_N, CONFIRM   count:u16 | ticketId:str8 ...
+//     HOLD                  holdId:i64 | count:u16 | ticketId:str8 ...
+//     RELEASE               count:u16
+//     STATS                 total, produced, consumed, vipConsumed, held, available, capacity : int32 each
+//
+// Request IDs are chosen by the client; responses carry them back and may arrive in any order.
+public final class TicketProtocol {
+    public static final byte BUY = 1;
+    public static final byte BUY_N = 2;
+    public static final byte HOLD = 3;
+    public static final byte RELEASE = 4;
+    public static final byte CONFIRM = 5;
+    public static final byte STATS = 6;
+
+    public static final byte OK = 0;
+    public static final byte SOLD_OUT = 1;
+    public static final byte UNAVAILABLE = 2;
+    public static final byte NOT_FOUND = 3;
+    public static final byte BAD_REQUEST = 4;
+    public static final byte ERROR = 5;
+
+    public static final int HEADER_BYTES = 8;
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+    public static final int MAX_STRING_BYTES = 255;
+    // The most tickets whose response still fits in one frame when every ticket ID is as long as a string can be:
+    // requestId, status, opcode, holdId and count, then a length byte and the ID for each ticket
+    public static final int MAX_TICKETS_PER_REQUEST = (MAX_FRAME_BYTES - 16) / (1 + MAX_STRING_BYTES);
+
+    private TicketProtocol() {
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String field longer than " + MAX_STRING_BYTES + " bytes: " + value);
+        }
+        buffer.put((byte) bytes.length).put(bytes);
+    }
+
+    // Cuts the value to at most maxBytes of UTF-8 without splitting a character
+    public static String truncate(String value, int maxBytes) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxBytes) {
+            return value;
+        }
+        int end = maxBytes;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Length of the frame starting at the buffer position, or -1 if the whole frame has not arrived yet
+    public static int completeFrameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            return -1;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < 4 || length > MAX_FRAME_BYTES) {
+            throw new IllegalStateException("Invalid frame length " + length);
+        }
+        return buffer.remaining() >= 4 + length ? 4 + length : -1;
+    }
+
+    public static class Response {
+        private final int requestId;
+        private final byte status;
+        private final byte opcode;
+        private final String message;
+        private final long holdId;
+        private final int count;
+        private final List<String> ticketIds;
+        private final int[] stats;
+
+        private Response(int requestId, byte status, byte opcode, String message, long holdId, int count,
+                         List<String> ticketIds, int[] stats) {
+            this.requestId = requestId;
+            this.status = status;
+            this.opcode = opcode;
+            this.message = message;
+            this.holdId = holdId;
+            this.count = count;
+            this.ticketIds = ticketIds;
+            this.stats = stats;
+        }
+
+        // Decodes one complete frame; the buffer is left positioned after it
+        public static Response decode(ByteBuffer buffer) {
+            int end = buffer.position() + 4 + buffer.getInt();
+            int requestId = buffer.getInt();
+            byte status = buffer.get();
+            byte opcode = buffer.get();
+            try {
+                if (status != OK) {
+                    return new Response(requestId, status, opcode, getString(buffer), 0, 0, Collections.emptyList(), null);
+                }
+                long holdId = 0;
+                int count = 0;
+                List<String> ticketIds = Collections.emptyList();
+                int[] stats = null;
+                if (opcode == HOLD) {
+                    holdId = buffer.getLong();
+                }
+                switch (opcode) {
+                    case HOLD:
+                    case BUY:
+                    case BUY_N:
+                    case CONFIRM:
+                        count = buffer.getShort() & 0xFFFF;
+                        ticketIds = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            ticketIds.add(getString(buffer));
+                        }
+                        break;
+                    case RELEASE:
+                        count = buffer.getShort() & 0xFFFF;
+                        break;
+                    case STATS:
+                        stats = new int[7];
+                        for (int i = 0; i < stats.length; i++) {
+                            stats[i] = buffer.getInt();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                return new Response(requestId, status, opcode, null, holdId, count, ticketIds, stats);
+            } finally {
+                buffer.position(end);
+            }
+        }
+
+        public int getRequestId() {
+            return requestId;
+        }
+
+        public byte getStatus() {
+            return status;
+        }
+
+        public boolean isOk() {
+            return status == OK;
+        }
+
+        public byte getOpcode() {
+            return opcode;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getHoldId() {
+            return holdId;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public List<String> getTicketIds() {
+            return ticketIds;
+        }
+
+        // total, produced, consumed, vipConsumed, held, available, capacity
+        public int[] getStats() {
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            return isOk()
+                    ? String.format("Response{id=%d, op=%d, holdId=%d, count=%d, tickets=%s}", requestId, opcode, holdId, count, ticketIds)
+                    : String.format("Response{id=%d, op=%d, status=%d, message='%s'}", requestId, opcode, status, message);
+        }
+    }
+}
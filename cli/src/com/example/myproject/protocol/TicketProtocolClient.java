@@ -0,0 +1,144 @@
+package com.example.myproject.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static com.example.myproject.protocol.TicketProtocol.*;
+
+// Pipelining client: any number of requests may be outstanding on the one connection, each completed by request ID
+public class TicketProtocolClient implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TicketProtocolClient.class.getName());
+
+    private final SocketChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(MAX_FRAME_BYTES);
+    private final Map<Integer, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Thread reader;
+    private volatile boolean closed;
+
+    public TicketProtocolClient(InetSocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.reader = new Thread(this::readResponses, "protocol-client-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    public CompletableFuture<Response> buy(String eventName, String customerId, boolean vip) {
+        return send(BUY, eventName, customerId, vip, 1, 0);
+    }
+
+    public CompletableFuture<Response> buy(String eventName, String customerId, int count, boolean vip) {
+        return send(BUY_N, eventName, customerId, vip, count, 0);
+    }
+
+    public CompletableFuture<Response> hold(String eventName, String customerId, int count, boolean vip) {
+        return send(HOLD, eventName, customerId, vip, count, 0);
+    }
+
+    public CompletableFuture<Response> release(String eventName, long holdId) {
+        return send(RELEASE, eventName, null, false, 0, holdId);
+    }
+
+    public CompletableFuture<Response> confirm(String eventName, long holdId) {
+        return send(CONFIRM, eventName, null, false, 0, holdId);
+    }
+
+    public CompletableFuture<Response> stats(String eventName) {
+        return send(STATS, eventName, null, false, 0, 0);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private CompletableFuture<Response> send(byte opcode, String eventName, String customerId, boolean vip,
+                                             int count, long holdId) {
+        int requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("Client is closed"));
+            return future;
+        }
+        pending.put(requestId, future);
+
+        synchronized (writeBuffer) {
+            try {
+                writeBuffer.clear();
+                writeBuffer.putInt(0).putInt(requestId).put(opcode);
+                putString(writeBuffer, eventName);
+                if (opcode == BUY || opcode == BUY_N || opcode == HOLD) {
+                    putString(writeBuffer, customerId);
+                    writeBuffer.put((byte) (vip ? 1 : 0));
+                    if (opcode != BUY) {
+                        writeBuffer.putShort((short) count);
+                    }
+                } else if (opcode == RELEASE || opcode == CONFIRM) {
+                    writeBuffer.putLong(holdId);
+                }
+                writeBuffer.putInt(0, writeBuffer.position() - 4);
+                writeBuffer.flip();
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                pending.remove(requestId);
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    private void readResponses() {
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(4 * MAX_FRAME_BYTES);
+        try {
+            while (!closed) {
+                if (channel.read(readBuffer) < 0) {
+                    break;
+                }
+                readBuffer.flip();
+                while (completeFrameLength(readBuffer) > 0) {
+                    Response response = Response.decode(readBuffer);
+                    CompletableFuture<Response> future = pending.remove(response.getRequestId());
+                    if (future != null) {
+                        future.complete(response);
+                    }
+                }
+                readBuffer.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                LOGGER.warning("Protocol connection failed: " + e.getMessage());
+            }
+        }
+        failPending(new IOException("Connection closed"));
+    }
+
+    private void failPending(IOException cause) {
+        closed = true;
+        for (Integer requestId : pending.keySet()) {
+            CompletableFuture<Response> future = pending.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        failPending(new IOException("Client closed"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.myproject.protocol;
+
+import com.example.myproject.config.Configuration;
+import com.example.myproject.core.RunController;
+import com.example.myproject.model.TicketPool;
+import com.example.myproject.server.NioServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Binary TicketPool protocol (see TicketProtocol) served from the same event loops as the HTTP front-end
+public class TicketProtocolServer implements AutoCloseable {
+    // Held strongly so the level set in main is not lost if the logger is garbage collected before TicketPool loads
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+
+    private final Map<String, TicketPool> events = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final NioServer server;
+
+    // With zero worker threads requests run inline on the event loop and are answered in order
+    public TicketProtocolServer(InetSocketAddress address, int loopThreads, int workerThreads) throws IOException {
+        this.workers = workerThreads <= 0 ? null : Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "protocol-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Executor dispatcher = workers != null ? workers : Runnable::run;
+        this.server = new NioServer("protocol", address, loopThreads,
+                () -> new BinaryConnectionHandler(events, dispatcher));
+    }
+
+    public void registerEvent(TicketPool ticketPool) {
+        events.put(ticketPool.getEventName(), ticketPool);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public void close() {
+        server.close();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    // Usage: TicketProtocolServer <port> <loopThreads> <workerThreads> <eventName> [<eventName> ...]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: TicketProtocolServer <port> <loopThreads> <workerThreads> <eventName> [<eventName> ...]");
+            return;
+        }
+
+        // Keep per-sale lines off the console so it does not become the bottleneck under load
+        POOL_LOGGER.setLevel(Level.WARNING);
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        List<RunController> runs = new ArrayList<>();
+        TicketProtocolServer protocolServer = new TicketProtocolServer(
+                new InetSocketAddress(Integer.parseInt(args[0])), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        for (int i = 3; i < args.length; i++) {
+            Configuration config = Configuration.loadFromJsonFile(args[i]);
+            if (config == null) {
+                System.out.println("No saved configuration for event: " + args[i]);
+                continue;
+            }
+            TicketPool ticketPool = new TicketPool(config.getEventName(), config.getMaxTicketCapacity(), config.getTotalTickets());
+            RunController runController = new RunController(ticketPool, executorService, config);
+            runController.start();
+            runController.setProducerCount(5);
+            runs.add(runController);
+            protocolServer.registerEvent(ticketPool);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            protocolServer.close();
+            for (RunController runController : runs) {
+                runController.stopAll();
+            }
+            executorService.shutdownNow();
+        }));
+        protocolServer.start();
+        System.out.println("Serving " + runs.size() + " event(s) on port " + protocolServer.getPort());
+    }
+}
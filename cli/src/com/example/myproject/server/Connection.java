@@ -0,0 +1,164 @@
+package com.example.myproject.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+// A keep-alive client connection owned by a single event loop
+public class Connection {
+    private static final Logger LOGGER = Logger.getLogger(Connection.class.getName());
+    private static final int INITIAL_READ_BUFFER = 16 * 1024;
+    private static final int MAX_READ_BUFFER = 1024 * 1024;
+    private static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final NioServer.EventLoop eventLoop;
+    private final ConnectionHandler handler;
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(INITIAL_READ_BUFFER);
+    private SelectionKey key;
+    private boolean closeAfterFlush;
+    private volatile boolean closed;
+
+    Connection(SocketChannel channel, NioServer.EventLoop eventLoop, ConnectionHandler handler) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.handler = handler;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    // Safe to call from any thread; writes issued from other threads are flushed by the event loop
+    public void send(ByteBuffer response) {
+        if (closed) {
+            return;
+        }
+        outbound.add(response);
+        if (!eventLoop.inEventLoop() && flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    // Closes the connection once everything queued so far has been written
+    public void closeAfterWrites() {
+        if (eventLoop.inEventLoop()) {
+            closeAfterFlush = true;
+        } else {
+            eventLoop.execute(() -> {
+                closeAfterFlush = true;
+                flush();
+            });
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public String getRemoteAddress() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    void handleRead() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            handler.onRead(this, readBuffer);
+            readBuffer.compact();
+            if (!readBuffer.hasRemaining()) {
+                growReadBuffer();
+            }
+            flush();
+        } catch (IOException e) {
+            close();
+        } catch (RuntimeException e) {
+            LOGGER.warning("Closing connection " + getRemoteAddress() + " after handler error: " + e.getMessage());
+            close();
+        }
+    }
+
+    // A single message larger than the buffer: grow it, up to a hard limit
+    private void growReadBuffer() {
+        if (readBuffer.capacity() >= MAX_READ_BUFFER) {
+            LOGGER.warning("Closing connection " + getRemoteAddress() + ": message exceeds " + MAX_READ_BUFFER + " bytes");
+            close();
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(readBuffer.capacity() * 2);
+        readBuffer.flip();
+        larger.put(readBuffer);
+        readBuffer = larger;
+    }
+
+    void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            while (!outbound.isEmpty()) {
+                int count = 0;
+                Iterator<ByteBuffer> pending = outbound.iterator();
+                while (count < MAX_GATHER && pending.hasNext()) {
+                    gather[count++] = pending.next();
+                }
+                channel.write(gather, 0, count);
+                for (int i = 0; i < count; i++) {
+                    if (gather[i].hasRemaining()) {
+                        // Socket buffer is full; resume when the channel becomes writable
+                        Arrays.fill(gather, null);
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    handler.onWritten(outbound.poll());
+                }
+                Arrays.fill(gather, 0, count, null);
+            }
+            if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            if (closeAfterFlush) {
+                close();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        outbound.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        handler.onClose(this);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.myproject.server;
+
+import java.nio.ByteBuffer;
+
+// Protocol logic for one connection; always called on the connection's event-loop thread
+public interface ConnectionHandler {
+    // Consumes as many complete messages as the buffer holds and leaves any partial message unread
+    void onRead(Connection connection, ByteBuffer buffer);
+
+    // Called once a buffer passed to Connection.send has been fully written, so it can be reused
+    default void onWritten(ByteBuffer buffer) {
+    }
+
+    default void onClose(Connection connection) {
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.myproject.server;
+
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Minimal HTTP/1.1 parser: keep-alive, pipelined requests answered in order, bodies skipped
+public class HttpConnectionHandler implements ConnectionHandler {
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    private final Function<HttpRequest, HttpResponse> router;
+    private final byte[] headerBytes = new byte[MAX_HEADER_BYTES];
+
+    public HttpConnectionHandler(Function<HttpRequest, HttpResponse> router) {
+        this.router = router;
+    }
+
+    @Override
+    public void onRead(Connection connection, ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int headerEnd = findHeaderEnd(buffer, start);
+            if (headerEnd < 0) {
+                if (buffer.remaining() >= MAX_HEADER_BYTES) {
+                    respondAndClose(connection, HttpResponse.error(431, "Request headers too large"));
+                    buffer.position(buffer.limit());
+                }
+                return;
+            }
+
+            int headerLength = headerEnd - start;
+            buffer.get(headerBytes, 0, headerLength);
+            HttpRequest request = HttpRequest.parse(new String(headerBytes, 0, headerLength, StandardCharsets.US_ASCII));
+            if (request == null) {
+                respondAndClose(connection, HttpResponse.error(400, "Malformed request"));
+                buffer.position(buffer.limit());
+                return;
+            }
+
+            // Wait for the whole body before answering, then skip it
+            if (buffer.remaining() < request.contentLength) {
+                buffer.position(start);
+                return;
+            }
+            buffer.position(buffer.position() + request.contentLength);
+
+            HttpResponse response = router.apply(request);
+            connection.send(response.encode(request.keepAlive));
+            if (!request.keepAlive) {
+                connection.closeAfterWrites();
+                buffer.position(buffer.limit());
+                return;
+            }
+        }
+    }
+
+    private static void respondAndClose(Connection connection, HttpResponse response) {
+        connection.send(response.encode(false));
+        connection.closeAfterWrites();
+    }
+
+    // Returns the index just past the blank line ending the headers, or -1 if it has not arrived yet
+    private static int findHeaderEnd(ByteBuffer buffer, int from) {
+        int limit = Math.min(buffer.limit(), from + MAX_HEADER_BYTES);
+        for (int i = from + 3; i < limit; i++) {
+            if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r'
+                    && buffer.get(i - 2) == '\n' && buffer.get(i - 3) == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    public static class HttpRequest {
+        private final String method;
+        private final String path;
+        private final Map<String, String> query;
+        private final Map<String, String> headers;
+        private final int contentLength;
+        private final boolean keepAlive;
+
+        private HttpRequest(String method, String path, Map<String, String> query, Map<String, String> headers,
+                            int contentLength, boolean keepAlive) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.headers = headers;
+            this.contentLength = contentLength;
+            this.keepAlive = keepAlive;
+        }
+
+        static HttpRequest parse(String head) {
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3) {
+                return null;
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+                }
+            }
+
+            int contentLength;
+            try {
+                contentLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (contentLength < 0) {
+                return null;
+            }
+
+            String connection = headers.getOrDefault("connection", "").toLowerCase();
+            boolean keepAlive = requestLine[2].equals("HTTP/1.1")
+                    ? !connection.equals("close")
+                    : connection.equals("keep-alive");
+
+            String target = requestLine[1];
+            int queryStart = target.indexOf('?');
+            String path = queryStart < 0 ? target : target.substring(0, queryStart);
+            Map<String, String> query = new HashMap<>();
+            if (queryStart >= 0) {
+                for (String pair : target.substring(queryStart + 1).split("&")) {
+                    int equals = pair.indexOf('=');
+                    if (equals > 0) {
+                        query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+                    } else if (!pair.isEmpty()) {
+                        query.put(decode(pair), "");
+                    }
+                }
+            }
+            return new HttpRequest(requestLine[0], decode(path), query, headers, contentLength, keepAlive);
+        }
+
+        private static String decode(String value) {
+            try {
+                return URLDecoder.decode(value, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return value;
+            }
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getQueryParameter(String name) {
+            return query.get(name);
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase());
+        }
+    }
+
+    public static class HttpResponse {
+        private final int status;
+        private final String body;
+
+        public HttpResponse(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public static HttpResponse error(int status, String message) {
+            return new HttpResponse(status, "{\"error\":" + json(message) + "}");
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        ByteBuffer encode(boolean keepAlive) {
+            byte[] content = body.getBytes(StandardCharsets.UTF_8);
+            String head = "HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + content.length + "\r\n"
+                    + (keepAlive ? "" : "Connection: close\r\n")
+                    + "\r\n";
+            byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer encoded = ByteBuffer.allocate(headBytes.length + content.length);
+            encoded.put(headBytes).put(content).flip();
+            return encoded;
+        }
+
+        private static String reason(int status) {
+            switch (status) {
+                case 200: return "OK";
+                case 400: return "Bad Request";
+                case 404: return "Not Found";
+                case 403: return "Forbidden";
+                case 405: return "Method Not Allowed";
+                case 409: return "Conflict";
+                case 410: return "Gone";
+                case 431: return "Request Header Fields Too Large";
+                case 503: return "Service Unavailable";
+                default: return "Status";
+            }
+        }
+
+        public static String json(String value) {
+            StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.myproject.server;
+
+import com.example.myproject.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closed-loop load generator: each connection keeps one request in flight over a keep-alive socket
+public class HttpLoadGenerator {
+    private final InetSocketAddress address;
+    private final String eventName;
+    private final String operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    public HttpLoadGenerator(InetSocketAddress address, String eventName, String operation) {
+        this.address = address;
+        this.eventName = eventName;
+        this.operation = operation;
+    }
+
+    public void run(int connections, int durationSeconds) throws InterruptedException {
+        long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+        CountDownLatch finished = new CountDownLatch(connections);
+        long started = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            int connectionId = i + 1;
+            Thread worker = new Thread(() -> {
+                try {
+                    drive(connectionId, deadline);
+                } finally {
+                    finished.countDown();
+                }
+            }, "load-" + connectionId);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        finished.await();
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.println(String.format("%s %s: %d connections, %.1f s", operation, eventName, connections, elapsedSeconds));
+        System.out.println(String.format("Throughput: %.0f requests/s", latency.getCount() / elapsedSeconds));
+        System.out.println("Latency: " + latency.summary());
+        Map<Integer, Long> statuses = new TreeMap<>();
+        statusCounts.forEach((status, count) -> statuses.put(status, count.sum()));
+        System.out.println("Responses by status: " + statuses + ", connection errors: " + errors.sum());
+    }
+
+    private void drive(int connectionId, long deadline) {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer in = ByteBuffer.allocateDirect(16 * 1024);
+            long requestNumber = 0;
+            while (System.nanoTime() < deadline) {
+                ByteBuffer request = buildRequest(connectionId, ++requestNumber);
+                long sent = System.nanoTime();
+                while (request.hasRemaining()) {
+                    channel.write(request);
+                }
+                int status = readResponse(channel, in);
+                latency.record(System.nanoTime() - sent);
+                statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+            }
+        } catch (IOException e) {
+            errors.increment();
+        }
+    }
+
+    private ByteBuffer buildRequest(int connectionId, long requestNumber) {
+        String request;
+        if (operation.equals("purchase")) {
+            request = "POST /events/" + eventName + "/purchase?customer=load-" + connectionId + "-" + requestNumber
+                    + " HTTP/1.1\r\nHost: " + address.getHostString() + "\r\nContent-Length: 0\r\n\r\n";
+        } else {
+            request = "GET /events/" + eventName + "/" + operation
+                    + " HTTP/1.1\r\nHost: " + address.getHostString() + "\r\n\r\n";
+        }
+        return ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Reads exactly one response and returns its status code
+    private static int readResponse(SocketChannel channel, ByteBuffer in) throws IOException {
+        in.clear();
+        int headerEnd = -1;
+        while (headerEnd < 0) {
+            if (channel.read(in) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            headerEnd = indexOf(in, "\r\n\r\n");
+        }
+        byte[] headBytes = new byte[headerEnd];
+        in.get(0, headBytes);
+        String head = new String(headBytes, StandardCharsets.US_ASCII);
+        int status = Integer.parseInt(head.substring(9, 12));
+        int lengthStart = head.toLowerCase().indexOf("content-length:") + "content-length:".length();
+        int lengthEnd = head.indexOf("\r\n", lengthStart);
+        int contentLength = Integer.parseInt(head.substring(lengthStart, lengthEnd < 0 ? head.length() : lengthEnd).trim());
+
+        int total = headerEnd + 4 + contentLength;
+        while (in.position() < total) {
+            if (channel.read(in) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+        }
+        return status;
+    }
+
+    private static int indexOf(ByteBuffer buffer, String marker) {
+        int end = buffer.position() - marker.length();
+        outer:
+        for (int i = 0; i <= end; i++) {
+            for (int j = 0; j < marker.length(); j++) {
+                if (buffer.get(i + j) != marker.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Usage: HttpLoadGenerator <host> <port> <eventName> <connections> <seconds> [purchase|availability|stats]
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 5) {
+            System.out.println("Usage: HttpLoadGenerator <host> <port> <eventName> <connections> <seconds> [purchase|availability|stats]");
+            return;
+        }
+        String operation = args.length > 5 ? args[5] : "purchase";
+        HttpLoadGenerator generator = new HttpLoadGenerator(
+                new InetSocketAddress(args[0], Integer.parseInt(args[1])), args[2], operation);
+        generator.run(Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.myproject.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Remembers the outcome of recent requests by request ID so a retried request gets the original answer
+// instead of running again. Keys are spread over lock-striped segments, each an access-ordered
+// LinkedHashMap with its own share of the entry limit, so a lookup costs one hash and one uncontended
+// lock and a flood of new IDs evicts the least recently used entries rather than growing the heap.
+// Entries also expire after a fixed time to live.
+public class IdempotencyCache<V> {
+    private static final Logger LOGGER = Logger.getLogger(IdempotencyCache.class.getName());
+
+    private static class Entry<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        final long createdNanos = System.nanoTime();
+    }
+
+    private static class Segment<V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+    private final int maxEntriesPerSegment;
+    private final long ttlNanos;
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public IdempotencyCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Idempotency cache needs a positive size and time to live");
+        }
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(64, maxEntries / 16)));
+        this.segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>();
+        }
+        this.segmentMask = segmentCount - 1;
+        this.maxEntriesPerSegment = Math.max(1, maxEntries / segmentCount);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        LOGGER.info(String.format("Idempotency cache holds up to %d results for %d ms in %d segments",
+                maxEntriesPerSegment * segmentCount, ttlMillis, segmentCount));
+    }
+
+    // Runs the operation once per request ID. Later calls with the same ID get its result; calls made while
+    // the first is still running get inProgress's answer at once rather than blocking the caller's thread.
+    // Results the predicate rejects (e.g. "retry shortly") are not kept, so the next retry runs the operation
+    // again; neither are exceptions.
+    public V execute(String requestId, Supplier<V> operation, Predicate<? super V> keep, Supplier<V> inProgress) {
+        Segment<V> segment = segments[spread(requestId.hashCode()) & segmentMask];
+        Entry<V> entry;
+        Entry<V> existing;
+        segment.lock.lock();
+        try {
+            existing = segment.entries.get(requestId);
+            if (existing != null && System.nanoTime() - existing.createdNanos > ttlNanos) {
+                segment.entries.remove(requestId);
+                existing = null;
+            }
+            if (existing == null) {
+                entry = new Entry<>();
+                segment.entries.put(requestId, entry);
+                evictOverflow(segment);
+            } else {
+                entry = existing;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+
+        if (existing != null) {
+            replays.increment();
+            // An exceptional original has already been forgotten, so the caller's retry will run it afresh
+            return existing.result.isDone() && !existing.result.isCompletedExceptionally()
+                    ? existing.result.join() : inProgress.get();
+        }
+        misses.increment();
+        V result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            forget(segment, requestId, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        if (!keep.test(result)) {
+            forget(segment, requestId, entry);
+        }
+        entry.result.complete(result);
+        return result;
+    }
+
+    // Drops expired entries from the least recently used end, then anything over the segment's share
+    private void evictOverflow(Segment<V> segment) {
+        long now = System.nanoTime();
+        Iterator<Entry<V>> eldest = segment.entries.values().iterator();
+        int size = segment.entries.size();
+        while (eldest.hasNext()) {
+            Entry<V> entry = eldest.next();
+            if (size <= maxEntriesPerSegment && now - entry.createdNanos <= ttlNanos) {
+                break;
+            }
+            eldest.remove();
+            size--;
+            evictions.increment();
+        }
+    }
+
+    private void forget(Segment<V> segment, String requestId, Entry<V> entry) {
+        segment.lock.lock();
+        try {
+            segment.entries.remove(requestId, entry);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IdempotencyCache{entries=%d, replays=%d, misses=%d, evictions=%d}",
+                size(), getReplays(), getMisses(), getEvictions());
+    }
+}
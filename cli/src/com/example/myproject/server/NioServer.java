@@ -0,0 +1,165 @@
+package com.example.myproject.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Selector-based TCP server: one acceptor thread hands connections round-robin to a few event loops
+public class NioServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(NioServer.class.getName());
+
+    private final String name;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] eventLoops;
+    private final Supplier<ConnectionHandler> handlerFactory;
+    private final Thread acceptThread;
+    private volatile boolean running;
+
+    public NioServer(String name, InetSocketAddress address, int loopThreads,
+                     Supplier<ConnectionHandler> handlerFactory) throws IOException {
+        if (loopThreads <= 0) {
+            throw new IllegalArgumentException("Event loop thread count must be positive");
+        }
+        this.name = name;
+        this.handlerFactory = handlerFactory;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.serverChannel.bind(address, 1024);
+        this.eventLoops = new EventLoop[loopThreads];
+        for (int i = 0; i < loopThreads; i++) {
+            eventLoops[i] = new EventLoop(name + "-loop-" + (i + 1));
+        }
+        this.acceptThread = new Thread(this::acceptConnections, name + "-acceptor");
+    }
+
+    public void start() {
+        running = true;
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.thread.start();
+        }
+        acceptThread.start();
+        LOGGER.info(String.format("%s listening on port %d with %d event loops", name, getPort(), eventLoops.length));
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void acceptConnections() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                eventLoops[next].register(channel, handlerFactory.get());
+                next = (next + 1) % eventLoops.length;
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.warning(name + " failed to accept connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+    }
+
+    public static class EventLoop implements Runnable {
+        private final Thread thread;
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+        private volatile boolean running = true;
+
+        EventLoop(String threadName) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, threadName);
+        }
+
+        public boolean inEventLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        // Runs the task on the loop thread; wakes the selector at most once per batch of tasks
+        public void execute(Runnable task) {
+            tasks.add(task);
+            if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        void register(SocketChannel channel, ConnectionHandler handler) {
+            execute(() -> {
+                Connection connection = new Connection(channel, this, handler);
+                try {
+                    channel.configureBlocking(false);
+                    connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                } catch (IOException e) {
+                    connection.close();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    wakeupPending.set(false);
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isValid() && key.isReadable()) {
+                            connection.handleRead();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.warning(thread.getName() + " selector error: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    LOGGER.severe(thread.getName() + " unexpected error: " + e.getMessage());
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.myproject.server;
+
+import com.example.myproject.admission.WaitingRoom;
+import com.example.myproject.config.Configuration;
+import com.example.myproject.core.RunController;
+import com.example.myproject.model.AvailabilitySnapshot;
+import com.example.myproject.model.Ticket;
+import com.example.myproject.model.TicketPool;
+import com.example.myproject.server.HttpConnectionHandler.HttpRequest;
+import com.example.myproject.server.HttpConnectionHandler.HttpResponse;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// HTTP front-end for one or more running events:
+//   POST /events/{event}/purchase?customer={id}[&vip=true]
+//   GET  /events/{event}/availability
+//   GET  /events/{event}/stats
+// Events with a waiting room take purchases only from admitted tokens:
+//   POST /events/{event}/join?customer={id}
+//   GET  /events/{event}/queue?token={token}
+//   POST /events/{event}/purchase?token={token}[&vip=true]
+// Tokens are random 64-bit handles (16 hex digits) held per room, so one event's token means nothing to another.
+// A purchase carrying an Idempotency-Key header (or requestId parameter) is run at most once; retries with
+// the same key get the original response without touching the pool, or 409 while the original is still running.
+public class TicketHttpServer implements AutoCloseable {
+    // Held strongly so the level set in main is not lost if the logger is garbage collected before TicketPool loads
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    private static final int MAX_REQUEST_ID_LENGTH = 128;
+    private static final int RECENT_PURCHASES = 100_000;
+    private static final long PURCHASE_REPLAY_MILLIS = 10 * 60 * 1000;
+    private static final int MIN_TOKEN_SWEEP = 1024;
+
+    private final Map<String, TicketPool> events = new ConcurrentHashMap<>();
+    private final Map<String, Room> waitingRooms = new ConcurrentHashMap<>();
+    private final SecureRandom tokenRandom = new SecureRandom();
+    private final IdempotencyCache<HttpResponse> recentPurchases = new IdempotencyCache<>(RECENT_PURCHASES, PURCHASE_REPLAY_MILLIS);
+    private final int port;
+    private final int loopThreads;
+    private volatile NioServer server;
+
+    public TicketHttpServer(int port, int loopThreads) {
+        if (loopThreads <= 0) {
+            throw new IllegalArgumentException("Event loop thread count must be positive");
+        }
+        this.port = port;
+        this.loopThreads = loopThreads;
+    }
+
+    public void registerEvent(TicketPool ticketPool) {
+        events.put(ticketPool.getEventName(), ticketPool);
+    }
+
+    public void registerWaitingRoom(WaitingRoom waitingRoom) {
+        registerEvent(waitingRoom.getTicketPool());
+        waitingRooms.put(waitingRoom.getTicketPool().getEventName(), new Room(waitingRoom));
+    }
+
+    // Binds the port and starts serving; events can be registered before or after
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        NioServer started = new NioServer("http", new InetSocketAddress(port), loopThreads,
+                () -> new HttpConnectionHandler(this::handle));
+        started.start();
+        server = started;
+    }
+
+    // The bound port once started, otherwise the one asked for
+    public int getPort() {
+        NioServer current = server;
+        return current == null ? port : current.getPort();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    HttpResponse handle(HttpRequest request) {
+        String[] segments = request.getPath().split("/");
+        if (segments.length != 4 || !segments[1].equals("events")) {
+            return HttpResponse.error(404, "Unknown path " + request.getPath());
+        }
+        TicketPool ticketPool = events.get(segments[2]);
+        if (ticketPool == null) {
+            return HttpResponse.error(404, "Unknown event " + segments[2]);
+        }
+
+        switch (segments[3]) {
+            case "purchase":
+                if (!request.getMethod().equals("POST")) {
+                    return HttpResponse.error(405, "Use POST to purchase");
+                }
+                return idempotentPurchase(segments[2], ticketPool, request);
+            case "join":
+                if (!request.getMethod().equals("POST")) {
+                    return HttpResponse.error(405, "Use POST to join the queue");
+                }
+                return join(segments[2], request);
+            case "queue":
+                return queueStatus(segments[2], request);
+            case "availability": {
+                // Served from the published snapshot so polling clients never contend with sales
+                AvailabilitySnapshot snapshot = ticketPool.getAvailability();
+                return new HttpResponse(200, String.format(
+                        "{\"event\":%s,\"version\":%d,\"available\":%d,\"sold\":%d,\"vipRemaining\":%d,\"soldOut\":%b}",
+                        HttpResponse.json(snapshot.getEventName()),
+                        snapshot.getVersion(),
+                        snapshot.getAvailable(),
+                        snapshot.getSold(),
+                        snapshot.getVIPRemaining(),
+                        snapshot.isSoldOut()));
+            }
+            case "stats":
+                return new HttpResponse(200, String.format(
+                        "{\"event\":%s,\"totalTickets\":%d,\"produced\":%d,\"consumed\":%d,\"vipConsumed\":%d,\"available\":%d,\"capacity\":%d}",
+                        HttpResponse.json(ticketPool.getEventName()),
+                        ticketPool.getTotalTickets(),
+                        ticketPool.getTicketsProduced(),
+                        ticketPool.getTicketsConsumed(),
+                        ticketPool.getVIPTicketsConsumed(),
+                        ticketPool.getAvailableTickets(),
+                        ticketPool.getMaxCapacity()));
+            default:
+                return HttpResponse.error(404, "Unknown operation " + segments[3]);
+        }
+    }
+
+    private HttpResponse idempotentPurchase(String eventName, TicketPool ticketPool, HttpRequest request) {
+        Room waitingRoom = waitingRooms.get(eventName);
+        String requestId = request.getHeader("Idempotency-Key");
+        if (requestId == null) {
+            requestId = request.getQueryParameter("requestId");
+        }
+        if (requestId == null || requestId.isEmpty()) {
+            return waitingRoom != null ? purchase(waitingRoom, request) : purchase(ticketPool, request);
+        }
+        if (requestId.length() > MAX_REQUEST_ID_LENGTH) {
+            return HttpResponse.error(400, "Request ID longer than " + MAX_REQUEST_ID_LENGTH + " characters");
+        }
+        // Scoped to the buyer so one customer's key can never replay another customer's ticket
+        String buyer = waitingRoom != null ? request.getQueryParameter("token") : request.getQueryParameter("customer");
+        String key = eventName + '\n' + buyer + '\n' + requestId;
+        return recentPurchases.execute(key,
+                () -> waitingRoom != null ? purchase(waitingRoom, request) : purchase(ticketPool, request),
+                response -> response.getStatus() != 503 && response.getStatus() != 403,
+                () -> HttpResponse.error(409, "A purchase with this request ID is still in progress, retry shortly"));
+    }
+
+    public IdempotencyCache<HttpResponse> getRecentPurchases() {
+        return recentPurchases;
+    }
+
+    private HttpResponse purchase(TicketPool ticketPool, HttpRequest request) {
+        String customerId = request.getQueryParameter("customer");
+        if (customerId == null || customerId.isEmpty()) {
+            return HttpResponse.error(400, "Missing customer parameter");
+        }
+        boolean vip = "true".equals(request.getQueryParameter("vip"));
+
+        Ticket ticket = ticketPool.purchaseTicket(customerId, vip);
+        if (ticket != null) {
+            return new HttpResponse(200, String.format("{\"ticketId\":%s,\"event\":%s,\"customer\":%s}",
+                    HttpResponse.json(ticket.getTicketId()),
+                    HttpResponse.json(ticket.getEventName()),
+                    HttpResponse.json(customerId)));
+        }
+        if (ticketPool.isAllTicketsConsumed()) {
+            return HttpResponse.error(409, "Sold out");
+        }
+        if (vip && ticketPool.getVIPTicketsConsumed() >= ticketPool.getMaxVIPTickets()) {
+            return HttpResponse.error(409, "VIP allocation sold out");
+        }
+        return HttpResponse.error(503, "No tickets released yet, retry shortly");
+    }
+
+    private HttpResponse join(String eventName, HttpRequest request) {
+        Room room = waitingRooms.get(eventName);
+        if (room == null) {
+            return HttpResponse.error(404, "Event " + eventName + " has no waiting room");
+        }
+        String customerId = request.getQueryParameter("customer");
+        if (customerId == null || customerId.isEmpty()) {
+            return HttpResponse.error(400, "Missing customer parameter");
+        }
+        WaitingRoom.Token token = room.waitingRoom.join(customerId);
+        long handle;
+        do {
+            handle = tokenRandom.nextLong();
+        } while (room.tokens.putIfAbsent(handle, token) != null);
+        room.sweepIfDue();
+        return queueResponse(room.waitingRoom, handle, token);
+    }
+
+    private HttpResponse queueStatus(String eventName, HttpRequest request) {
+        Room room = waitingRooms.get(eventName);
+        if (room == null) {
+            return HttpResponse.error(404, "Event " + eventName + " has no waiting room");
+        }
+        long handle = parseToken(request);
+        WaitingRoom.Token token = room.tokens.get(handle);
+        if (token == null) {
+            return HttpResponse.error(404, "Unknown token");
+        }
+        HttpResponse response = queueResponse(room.waitingRoom, handle, token);
+        if (Room.isFinished(room.waitingRoom.getStatus(token))) {
+            room.tokens.remove(handle);
+        }
+        return response;
+    }
+
+    private static HttpResponse queueResponse(WaitingRoom waitingRoom, long handle, WaitingRoom.Token token) {
+        return new HttpResponse(200, String.format("{\"token\":\"%016x\",\"status\":\"%s\",\"ahead\":%d}",
+                handle, waitingRoom.getStatus(token), waitingRoom.getPeopleAhead(token)));
+    }
+
+    // 0 for a missing or malformed token; the chance of 0 being issued is negligible and it would merely be unusable
+    private static long parseToken(HttpRequest request) {
+        String token = request.getQueryParameter("token");
+        if (token == null || token.isEmpty() || token.length() > 16) {
+            return 0;
+        }
+        try {
+            return Long.parseUnsignedLong(token, 16);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private HttpResponse purchase(Room room, HttpRequest request) {
+        long handle = parseToken(request);
+        WaitingRoom.Token token = room.tokens.get(handle);
+        if (token == null) {
+            return HttpResponse.error(400, "Join the queue first and purchase with its token");
+        }
+        WaitingRoom waitingRoom = room.waitingRoom;
+        boolean vip = "true".equals(request.getQueryParameter("vip"));
+        List<Ticket> tickets = waitingRoom.purchase(token, 1, vip);
+        if (!tickets.isEmpty()) {
+            room.tokens.remove(handle);
+            Ticket ticket = tickets.get(0);
+            return new HttpResponse(200, String.format("{\"ticketId\":%s,\"event\":%s,\"customer\":%s}",
+                    HttpResponse.json(ticket.getTicketId()),
+                    HttpResponse.json(ticket.getEventName()),
+                    HttpResponse.json(token.getCustomerId())));
+        }
+        switch (waitingRoom.getStatus(token)) {
+            case WAITING:
+                return HttpResponse.error(403, "Not admitted yet, " + waitingRoom.getPeopleAhead(token) + " ahead");
+            case ADMITTED:
+                return HttpResponse.error(503, "No tickets released yet, retry shortly");
+            case EXPIRED:
+                room.tokens.remove(handle);
+                return HttpResponse.error(410, "Admission expired, join the queue again");
+            default:
+                room.tokens.remove(handle);
+                return HttpResponse.error(409, "Sold out");
+        }
+    }
+
+    // A waiting room and the tokens handed out for it. Tokens leave when bought with, when a poll or purchase
+    // finds them finished, or in a sweep once the map has doubled since the last one (for abandoned tokens).
+    private static class Room {
+        final WaitingRoom waitingRoom;
+        final Map<Long, WaitingRoom.Token> tokens = new ConcurrentHashMap<>();
+        private volatile int sweepAt = MIN_TOKEN_SWEEP;
+
+        Room(WaitingRoom waitingRoom) {
+            this.waitingRoom = waitingRoom;
+        }
+
+        static boolean isFinished(WaitingRoom.Status status) {
+            return status == WaitingRoom.Status.DONE || status == WaitingRoom.Status.EXPIRED
+                    || status == WaitingRoom.Status.SOLD_OUT;
+        }
+
+        void sweepIfDue() {
+            if (tokens.size() < sweepAt) {
+                return;
+            }
+            synchronized (this) {
+                if (tokens.size() < sweepAt) {
+                    return;
+                }
+                tokens.values().removeIf(token -> isFinished(waitingRoom.getStatus(token)));
+                sweepAt = Math.max(MIN_TOKEN_SWEEP, tokens.size() * 2);
+            }
+        }
+    }
+
+    // Usage: TicketHttpServer <port> <loopThreads> [--waiting-room <maxActiveBuyers>] <eventName> [<eventName> ...]
+    // Each event is loaded from its saved <eventName>.json and stocked by simulated producers.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: TicketHttpServer <port> <loopThreads> [--waiting-room <maxActiveBuyers>] <eventName> [<eventName> ...]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int loopThreads = Integer.parseInt(args[1]);
+        int firstEvent = 2;
+        int maxActiveBuyers = 0;
+        if (args[2].equals("--waiting-room") && args.length > 4) {
+            maxActiveBuyers = Integer.parseInt(args[3]);
+            firstEvent = 4;
+        }
+
+        // Keep per-sale lines off the console so it does not become the bottleneck under load
+        POOL_LOGGER.setLevel(Level.WARNING);
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        List<RunController> runs = new ArrayList<>();
+        TicketHttpServer httpServer = new TicketHttpServer(port, loopThreads);
+        List<WaitingRoom> waitingRooms = new ArrayList<>();
+        for (int i = firstEvent; i < args.length; i++) {
+            Configuration config = Configuration.loadFromJsonFile(args[i]);
+            if (config == null) {
+                System.out.println("No saved configuration for event: " + args[i]);
+                continue;
+            }
+            TicketPool ticketPool = new TicketPool(config.getEventName(), config.getMaxTicketCapacity(), config.getTotalTickets());
+            RunController runController = new RunController(ticketPool, executorService, config);
+            runController.start();
+            runController.setProducerCount(5);
+            runs.add(runController);
+            if (maxActiveBuyers > 0) {
+                WaitingRoom waitingRoom = new WaitingRoom(ticketPool, WaitingRoom.Ordering.FIFO, maxActiveBuyers,
+                        maxActiveBuyers, 30_000);
+                waitingRoom.open();
+                waitingRooms.add(waitingRoom);
+                httpServer.registerWaitingRoom(waitingRoom);
+            } else {
+                httpServer.registerEvent(ticketPool);
+            }
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            httpServer.close();
+            System.out.println(httpServer.getRecentPurchases());
+            for (WaitingRoom waitingRoom : waitingRooms) {
+                waitingRoom.close();
+                System.out.println(waitingRoom);
+            }
+            for (RunController runController : runs) {
+                runController.stopAll();
+                TicketPool ticketPool = runController.getTicketPool();
+                System.out.println(String.format("%s: produced %d, sold %d (VIP %d)", ticketPool.getEventName(),
+                        ticketPool.getTicketsProduced(), ticketPool.getTicketsConsumed(), ticketPool.getVIPTicketsConsumed()));
+            }
+            executorService.shutdownNow();
+        }));
+        httpServer.start();
+        System.out.println("Serving " + runs.size() + " event(s) on port " + httpServer.getPort());
+    }
+}
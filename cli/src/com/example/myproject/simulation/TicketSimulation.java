@@ -0,0 +1,388 @@
+package com.example.myproject.simulation;
+
+import com.example.myproject.actor.TicketConsumer;
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.config.Configuration;
+import com.example.myproject.metrics.LatencyHistogram;
+import com.example.myproject.model.Ticket;
+import com.example.myproject.model.TicketPool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Discrete-event run of a sale: the real TicketPool and the producer/consumer pacing rules, driven by a
+// virtual millisecond clock and an event queue on a single thread, so nothing ever sleeps and a given
+// seed always gives the same result.
+//
+// Where a thread would block in the live system (an empty pool for a customer, a full pool for a
+// producer) the actor is parked and woken at the virtual time the blocking call would have returned.
+// Parked customers are served VIPs first and then in arrival order.
+public class TicketSimulation {
+    // Held strongly so the level set in main is not lost if the logger is garbage collected before TicketPool loads
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+
+    private final Configuration config;
+    private final TicketPool ticketPool;
+    private final TicketProducer[] producers;
+    private final Random random;
+
+    // Customer state in flat arrays so millions of customers cost a few bytes each
+    private final String[] customerIds;
+    private final boolean[] vip;
+    private final int[] wanted;
+    private final int[] bought;
+    private final long[] waitingSince;
+
+    private final EventQueue events;
+    private final IntQueue vipWaiters = new IntQueue();
+    private final IntQueue regularWaiters = new IntQueue();
+    private final IntQueue producerWaiters = new IntQueue();
+    // Actors woken at the current virtual time skip the heap
+    private final IntQueue ready = new IntQueue();
+    private final LatencyHistogram waits = new LatencyHistogram();
+    private long now = 0;
+    private long eventsProcessed = 0;
+    private long soldOutAt = -1;
+
+    private TicketSimulation(Configuration config, int producerCount, String[] customerIds, boolean[] vip,
+                             int[] wanted, long[] arrivals, Random random) {
+        if (producerCount <= 0) {
+            throw new IllegalArgumentException("Producer count must be positive");
+        }
+        this.config = config;
+        this.ticketPool = new TicketPool(config.getEventName(), config.getMaxTicketCapacity(), config.getTotalTickets());
+        this.random = random;
+        this.producers = new TicketProducer[producerCount];
+        this.customerIds = customerIds;
+        this.vip = vip;
+        this.wanted = wanted;
+        this.bought = new int[vip.length];
+        this.waitingSince = new long[vip.length];
+        Arrays.fill(waitingSince, -1);
+
+        this.events = new EventQueue(producerCount + vip.length);
+        for (int i = 0; i < producerCount; i++) {
+            producers[i] = new TicketProducer("Producer-" + (i + 1), ticketPool, config.getTicketReleaseRate());
+            events.schedule(i, 0);
+        }
+        for (int i = 0; i < vip.length; i++) {
+            events.schedule(producerCount + i, arrivals[i]);
+        }
+    }
+
+    // Customers behave like the live TicketConsumers: all start within the first retrieval interval, regular
+    // customers buy until the event sells out, and every fourth one is a VIP capped at totalTickets / 8
+    public static TicketSimulation generated(Configuration config, int producers, int customers, long seed) {
+        Random random = new Random(seed);
+        boolean[] vip = new boolean[customers];
+        int[] wanted = new int[customers];
+        long[] arrivals = new long[customers];
+        for (int i = 0; i < customers; i++) {
+            vip[i] = i % 4 == 0;
+            wanted[i] = vip[i] ? Math.max(1, config.getTotalTickets() / 8) : Integer.MAX_VALUE;
+            arrivals[i] = random.nextInt(config.getCustomerRetrievalRate());
+        }
+        return new TicketSimulation(config, producers, null, vip, wanted, arrivals, random);
+    }
+
+    // Replays recorded arrivals. Each line is "arrivalMillis,customerId,vip,tickets"; blank lines and lines
+    // starting with # are skipped. A replayed customer buys the given number of tickets, one per retrieval
+    // interval, and leaves.
+    public static TicketSimulation fromTrace(Configuration config, int producers, Path trace, long seed) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(trace)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException("Trace line " + lineNumber + " should have 4 fields: " + line);
+                }
+                rows.add(fields);
+            }
+        }
+
+        String[] customerIds = new String[rows.size()];
+        boolean[] vip = new boolean[rows.size()];
+        int[] wanted = new int[rows.size()];
+        long[] arrivals = new long[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            String[] fields = rows.get(i);
+            arrivals[i] = Long.parseLong(fields[0].trim());
+            customerIds[i] = fields[1].trim();
+            vip[i] = Boolean.parseBoolean(fields[2].trim());
+            wanted[i] = Integer.parseInt(fields[3].trim());
+            if (arrivals[i] < 0 || wanted[i] <= 0) {
+                throw new IllegalArgumentException("Invalid trace entry for customer " + customerIds[i]);
+            }
+        }
+        return new TicketSimulation(config, producers, customerIds, vip, wanted, arrivals, new Random(seed));
+    }
+
+    public void run() {
+        while (!ready.isEmpty() || !events.isEmpty()) {
+            int actor;
+            if (!ready.isEmpty()) {
+                actor = ready.poll();
+            } else {
+                now = events.peekTime();
+                actor = events.poll();
+            }
+            eventsProcessed++;
+            if (actor < producers.length) {
+                produce(actor);
+            } else {
+                consume(actor - producers.length);
+            }
+        }
+    }
+
+    private void produce(int producer) {
+        if (ticketPool.isAllTicketsProduced()) {
+            return;
+        }
+        // produceTicket would block on a full pool; park the producer until a sale frees a slot instead
+        if (ticketPool.getAvailableTickets() + ticketPool.getTicketsHeld() >= ticketPool.getMaxCapacity()) {
+            producerWaiters.add(producer);
+            return;
+        }
+        if (ticketPool.produceTicket(producers[producer])) {
+            wakeCustomer();
+        }
+        events.schedule(producer, now + TicketProducer.nextReleaseDelay(random, config.getTicketReleaseRate()));
+    }
+
+    private void consume(int customer) {
+        if (bought[customer] >= wanted[customer] || soldOutAt >= 0) {
+            return;
+        }
+
+        Ticket ticket = ticketPool.purchaseTicket(customerId(customer), vip[customer]);
+        if (ticket != null) {
+            if (waitingSince[customer] >= 0) {
+                waits.record((now - waitingSince[customer]) * 1_000_000L);
+                waitingSince[customer] = -1;
+            }
+            bought[customer]++;
+            if (!producerWaiters.isEmpty()) {
+                ready.add(producerWaiters.poll());
+            }
+            if (ticketPool.isAllTicketsConsumed()) {
+                soldOutAt = now;
+                return;
+            }
+            if (bought[customer] < wanted[customer]) {
+                events.schedule(producers.length + customer,
+                        now + TicketConsumer.nextRetrievalDelay(random, config.getCustomerRetrievalRate()));
+            }
+            return;
+        }
+
+        if (ticketPool.isAllTicketsConsumed()) {
+            return;
+        }
+        if (ticketPool.getAvailableTickets() == 0) {
+            if (waitingSince[customer] < 0) {
+                waitingSince[customer] = now;
+            }
+            (vip[customer] ? vipWaiters : regularWaiters).add(customer);
+            return;
+        }
+        // Tickets are there but this VIP has hit the VIP cap, so it drops out and the next customer gets a turn
+        wakeCustomer();
+    }
+
+    private void wakeCustomer() {
+        IntQueue waiters = !vipWaiters.isEmpty() ? vipWaiters : regularWaiters;
+        if (!waiters.isEmpty()) {
+            ready.add(producers.length + waiters.poll());
+        }
+    }
+
+    private String customerId(int customer) {
+        if (customerIds != null) {
+            return customerIds[customer];
+        }
+        return (vip[customer] ? "Priority-Consumer-" : "Consumer-") + (customer + 1);
+    }
+
+    public TicketPool getTicketPool() {
+        return ticketPool;
+    }
+
+    public long getSoldOutAtMillis() {
+        return soldOutAt;
+    }
+
+    public long getEventsProcessed() {
+        return eventsProcessed;
+    }
+
+    public String report() {
+        int served = 0;
+        for (int count : bought) {
+            if (count > 0) {
+                served++;
+            }
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Simulated %s: %d tickets, %d producers, %d customers%n",
+                config.getEventName(), config.getTotalTickets(), producers.length, bought.length));
+        report.append(soldOutAt >= 0
+                ? String.format("Sold out at virtual time %.3f s%n", soldOutAt / 1000.0)
+                : String.format("Not sold out; last event at virtual time %.3f s%n", now / 1000.0));
+        report.append(String.format("Sold %d (VIP %d), produced %d, left in pool %d%n",
+                ticketPool.getTicketsConsumed(), ticketPool.getVIPTicketsConsumed(),
+                ticketPool.getTicketsProduced(), ticketPool.getAvailableTickets()));
+        report.append(String.format("Customers served %d, still waiting %d%n",
+                served, vipWaiters.size() + regularWaiters.size()));
+        report.append(String.format("Waits for an empty pool: count=%d p50=%dms p90=%dms p99=%dms max=%dms%n",
+                waits.getCount(),
+                waits.getPercentileNanos(50) / 1_000_000, waits.getPercentileNanos(90) / 1_000_000,
+                waits.getPercentileNanos(99) / 1_000_000, waits.getMaxNanos() / 1_000_000));
+        report.append(String.format("Events processed %d", eventsProcessed));
+        return report.toString();
+    }
+
+    // Min-heap of pending actor wake-ups. Time and actor index are packed into one long, time in the high
+    // bits, so a single comparison orders by virtual time and breaks ties the same way on every run. Each
+    // actor has at most one pending event, so the array never grows.
+    private static class EventQueue {
+        private static final int ACTOR_BITS = 24;
+        private static final long ACTOR_MASK = (1L << ACTOR_BITS) - 1;
+
+        private final long[] keys;
+        private int size = 0;
+
+        EventQueue(int actorCount) {
+            if (actorCount > ACTOR_MASK) {
+                throw new IllegalArgumentException("At most " + ACTOR_MASK + " actors can be simulated");
+            }
+            this.keys = new long[actorCount];
+        }
+
+        void schedule(int actor, long time) {
+            long key = (time << ACTOR_BITS) | actor;
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[index] = keys[parent];
+                index = parent;
+            }
+            keys[index] = key;
+        }
+
+        int poll() {
+            int first = (int) (keys[0] & ACTOR_MASK);
+            long key = keys[--size];
+            int index = 0;
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[index] = keys[child];
+                index = child;
+            }
+            keys[index] = key;
+            return first;
+        }
+
+        long peekTime() {
+            return keys[0] >>> ACTOR_BITS;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    private static class IntQueue {
+        private int[] elements = new int[16];
+        private int head = 0;
+        private int size = 0;
+
+        void add(int value) {
+            if (size == elements.length) {
+                int[] grown = new int[elements.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = elements[(head + i) % elements.length];
+                }
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + size) % elements.length] = value;
+            size++;
+        }
+
+        int poll() {
+            int value = elements[head];
+            head = (head + 1) % elements.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    // Usage: TicketSimulation <totalTickets> <customers> [producers] [releaseRateMs] [retrievalRateMs] [capacity] [seed]
+    //        TicketSimulation --trace <file> <totalTickets> [producers] [releaseRateMs] [retrievalRateMs] [capacity] [seed]
+    public static void main(String[] args) throws IOException {
+        boolean replay = args.length > 0 && args[0].equals("--trace");
+        int offset = replay ? 2 : 0;
+        if (args.length < (replay ? 3 : 2)) {
+            System.out.println("Usage: TicketSimulation <totalTickets> <customers> [producers] [releaseRateMs] [retrievalRateMs] [capacity] [seed]");
+            System.out.println("       TicketSimulation --trace <file> <totalTickets> [producers] [releaseRateMs] [retrievalRateMs] [capacity] [seed]");
+            return;
+        }
+
+        // The pool's per-sale log lines would dominate the run time
+        POOL_LOGGER.setLevel(Level.WARNING);
+
+        int totalTickets = Integer.parseInt(args[offset]);
+        int customers = replay ? 0 : Integer.parseInt(args[offset + 1]);
+        int next = replay ? offset + 1 : offset + 2;
+        int producers = args.length > next ? Integer.parseInt(args[next]) : 10;
+        int releaseRate = args.length > next + 1 ? Integer.parseInt(args[next + 1]) : 2;
+        int retrievalRate = args.length > next + 2 ? Integer.parseInt(args[next + 2]) : 1000;
+        int capacity = args.length > next + 3 ? Integer.parseInt(args[next + 3]) : Math.min(totalTickets, 1000);
+        long seed = args.length > next + 4 ? Long.parseLong(args[next + 4]) : 42L;
+        Configuration config = new Configuration("Simulation", totalTickets, releaseRate, retrievalRate, capacity);
+
+        long started = System.nanoTime();
+        TicketSimulation simulation = replay
+                ? fromTrace(config, producers, Paths.get(args[1]), seed)
+                : generated(config, producers, customers, seed);
+        simulation.run();
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        System.out.println(simulation.report());
+        System.out.println(String.format("Wall time %.2f s (%.0f events/s)", elapsed, simulation.getEventsProcessed() / elapsed));
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.myproject.stress;
+
+import com.example.myproject.actor.TicketConsumer;
+import com.example.myproject.actor.TicketProducer;
+import com.example.myproject.model.OffHeapTicketStore;
+import com.example.myproject.model.SharedTicketStore;
+import com.example.myproject.model.TicketEngine;
+import com.example.myproject.model.TicketLease;
+import com.example.myproject.model.TicketPool;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Concurrency stress test for TicketEngine implementations, kept out of the model package as it is a test
+// tool. TicketPool is the only engine so far, so the registered engines are TicketPool over each of its
+// ticket stores (on-heap queue, off-heap, shared memory); register() adds others. Every round builds a fresh
+// engine per registration and runs the same randomly drawn scenario against each: blocking producers
+// and consumers (regular and VIP), non-blocking purchasers, random yields and pauses between calls, and a
+// thread that keeps interrupting the others. After the run sells out it checks that nothing was oversold,
+// no ticket ID was sold twice, the VIP cap held, no more was sold than produced, and that the engine,
+// its sale listener and the callers all agree on what was sold.
+//
+// Throughput of every round is appended to a results file, and an engine whose mean falls well below its
+// recorded mean for the same seed is reported as a regression.
+public class EngineStressHarness {
+    // Held strongly so the levels set in main are not lost if the loggers are garbage collected first
+    private static final Logger POOL_LOGGER = Logger.getLogger(TicketPool.class.getName());
+    private static final Logger SHARED_STORE_LOGGER = Logger.getLogger(SharedTicketStore.class.getName());
+
+    private static final long ROUND_TIMEOUT_MILLIS = 30_000;
+    private static final long STOP_TIMEOUT_MILLIS = 5_000;
+    // A mean throughput below this share of the recorded mean is reported as a regression
+    private static final double REGRESSION_RATIO = 0.8;
+    private static final String RESULTS_HEADER = "timestamp,engine,seed,round,tickets,capacity,threads,interrupts,elapsedMillis,salesPerSecond,violations";
+
+    // Builds a fresh engine for one round; anything to release after the round goes in resources
+    public interface EngineFactory {
+        TicketEngine create(String eventName, int maxCapacity, int totalTickets, List<AutoCloseable> resources)
+                throws IOException;
+    }
+
+    private static final Map<String, EngineFactory> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("pool", (eventName, maxCapacity, totalTickets, resources) ->
+                new TicketPool(eventName, maxCapacity, totalTickets));
+        ENGINES.put("pool-offheap", (eventName, maxCapacity, totalTickets, resources) -> {
+            OffHeapTicketStore store = OffHeapTicketStore.allocate(eventName, totalTickets);
+            resources.add(store);
+            return new TicketPool(eventName, maxCapacity, totalTickets, null, store);
+        });
+        ENGINES.put("pool-shared", (eventName, maxCapacity, totalTickets, resources) -> {
+            Path file = Files.createTempFile("engine-stress-", ".tbl");
+            resources.add(() -> Files.deleteIfExists(file));
+            SharedTicketStore store = SharedTicketStore.open(file, eventName, totalTickets);
+            resources.add(store);
+            return new TicketPool(eventName, maxCapacity, totalTickets, store, store);
+        });
+    }
+
+    // Adds an engine to every later run, replacing one registered under the same name
+    public static void register(String name, EngineFactory factory) {
+        ENGINES.put(name, factory);
+    }
+
+    // One round's workload, drawn from the round's seed so every engine faces the same one
+    private static class Scenario {
+        final long seed;
+        final int totalTickets;
+        final int maxCapacity;
+        final int producers;
+        final int consumers;
+        final int vipConsumers;
+        final int purchasers;
+        final int vipPurchasers;
+        final int interruptMicros;
+        // Threads selling VIP and regular tickets from leased blocks, racing the pool's own VIP sales
+        final int leaseSellers;
+
+        Scenario(long seed) {
+            Random random = new Random(seed);
+            this.seed = seed;
+            this.totalTickets = 5_000 + random.nextInt(20_000);
+            // Small pools keep producers and consumers blocking on each other
+            this.maxCapacity = 1 + random.nextInt(128);
+            this.producers = 1 + random.nextInt(6);
+            this.consumers = 1 + random.nextInt(12);
+            this.vipConsumers = random.nextInt(4);
+            this.purchasers = random.nextInt(6);
+            this.vipPurchasers = random.nextInt(3);
+            this.interruptMicros = 200 + random.nextInt(2_000);
+            // Drawn last so the fields above stay what earlier results for the same seed were recorded with
+            this.leaseSellers = random.nextInt(3);
+        }
+
+        int threads() {
+            return producers + consumers + vipConsumers + purchasers + vipPurchasers + leaseSellers;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tickets, capacity %d, %d producers, %d+%d VIP consumers, %d+%d VIP purchasers, "
+                            + "%d lease sellers, interrupt every %d us",
+                    totalTickets, maxCapacity, producers, consumers, vipConsumers, purchasers, vipPurchasers,
+                    leaseSellers, interruptMicros);
+        }
+    }
+
+    private static class RoundResult {
+        final String engine;
+        final int round;
+        final Scenario scenario;
+        final List<String> violations = new ArrayList<>();
+        long elapsedNanos;
+        int sold;
+        long interrupts;
+        long timeouts;
+
+        RoundResult(String engine, int round, Scenario scenario) {
+            this.engine = engine;
+            this.round = round;
+            this.scenario = scenario;
+        }
+
+        double salesPerSecond() {
+            return elapsedNanos == 0 ? 0 : sold / (elapsedNanos / 1e9);
+        }
+    }
+
+    private static RoundResult runRound(String engineName, EngineFactory factory, int round, Scenario scenario)
+            throws IOException, InterruptedException {
+        RoundResult result = new RoundResult(engineName, round, scenario);
+        List<AutoCloseable> resources = new ArrayList<>();
+        try {
+            TicketEngine engine = factory.create("Stress", scenario.maxCapacity, scenario.totalTickets, resources);
+            Set<String> soldIds = ConcurrentHashMap.newKeySet();
+            AtomicInteger listenerSales = new AtomicInteger();
+            AtomicInteger listenerVIPSales = new AtomicInteger();
+            AtomicInteger duplicates = new AtomicInteger();
+            AtomicReference<String> firstDuplicate = new AtomicReference<>();
+            LongAdder callerSales = new LongAdder();
+            LongAdder timeouts = new LongAdder();
+            engine.setSaleListener((customerId, ticket, vip) -> {
+                if (!soldIds.add(ticket.getTicketId())) {
+                    duplicates.incrementAndGet();
+                    firstDuplicate.compareAndSet(null, ticket.getTicketId());
+                }
+                listenerSales.incrementAndGet();
+                if (vip) {
+                    listenerVIPSales.incrementAndGet();
+                }
+            });
+
+            Random random = new Random(scenario.seed);
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < scenario.producers; i++) {
+                TicketProducer producer = new TicketProducer("Producer-" + (i + 1), engine, 2);
+                workers.add(worker(producer.getProducerId(), random.nextLong(), jitter -> {
+                    while (!engine.isRunComplete() && !engine.isAllTicketsProduced()) {
+                        try {
+                            engine.produceTicket(producer);
+                        } catch (TicketPool.TicketException e) {
+                            timeouts.increment();
+                            Thread.interrupted();
+                        }
+                        jitter.run();
+                    }
+                }));
+            }
+            for (int i = 0; i < scenario.consumers + scenario.vipConsumers; i++) {
+                boolean vip = i >= scenario.consumers;
+                TicketConsumer consumer = vip
+                        ? new TicketConsumer.VIPTicketConsumer("Priority-Consumer-" + (i + 1), engine, 2, Integer.MAX_VALUE)
+                        : new TicketConsumer("Consumer-" + (i + 1), engine, 2, false);
+                workers.add(worker(consumer.getConsumerId(), random.nextLong(), jitter -> {
+                    while (!engine.isRunComplete()) {
+                        try {
+                            if (vip ? engine.consumeVIPTicket(consumer) : engine.consumeTicket(consumer)) {
+                                callerSales.increment();
+                            } else if (vip) {
+                                // The VIP cap is reached
+                                return;
+                            }
+                        } catch (TicketPool.TicketException e) {
+                            timeouts.increment();
+                            Thread.interrupted();
+                        }
+                        jitter.run();
+                    }
+                }));
+            }
+            for (int i = 0; i < scenario.purchasers + scenario.vipPurchasers; i++) {
+                boolean vip = i >= scenario.purchasers;
+                String customerId = (vip ? "Priority-Customer-" : "Customer-") + (i + 1);
+                workers.add(worker(customerId, random.nextLong(), jitter -> {
+                    while (!engine.isRunComplete()) {
+                        if (engine.purchaseTicket(customerId, vip) != null) {
+                            callerSales.increment();
+                        } else {
+                            LockSupport.parkNanos(1_000 + ThreadLocalRandom.current().nextInt(50_000));
+                        }
+                        Thread.interrupted();
+                        jitter.run();
+                    }
+                }));
+            }
+            for (int i = 0; i < scenario.leaseSellers; i++) {
+                String sellerId = "Lease-Seller-" + (i + 1);
+                workers.add(worker(sellerId, random.nextLong(), jitter -> {
+                    boolean vipAllowed = true;
+                    try (TicketLease lease = engine.openLease(sellerId, 16)) {
+                        while (!engine.isRunComplete()) {
+                            boolean vip = vipAllowed && ThreadLocalRandom.current().nextBoolean();
+                            if (lease.sell(sellerId + "-Customer", vip) != null) {
+                                callerSales.increment();
+                            } else if (vip) {
+                                vipAllowed = false;
+                            } else {
+                                // Every ticket number has been issued
+                                return;
+                            }
+                            Thread.interrupted();
+                            jitter.run();
+                        }
+                    }
+                }));
+            }
+            Collections.shuffle(workers, random);
+
+            LongAdder interrupts = new LongAdder();
+            Random chaosRandom = new Random(random.nextLong());
+            Thread chaos = new Thread(() -> {
+                while (!engine.isRunComplete()) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(scenario.interruptMicros));
+                    workers.get(chaosRandom.nextInt(workers.size())).interrupt();
+                    interrupts.increment();
+                }
+            }, "stress-interrupter");
+            chaos.setDaemon(true);
+
+            long started = System.nanoTime();
+            workers.forEach(Thread::start);
+            chaos.start();
+            long deadline = started + TimeUnit.MILLISECONDS.toNanos(ROUND_TIMEOUT_MILLIS);
+            while (!engine.isRunComplete() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            result.elapsedNanos = System.nanoTime() - started;
+            if (!engine.isRunComplete()) {
+                result.violations.add(String.format("stalled: sold %d of %d after %d s",
+                        engine.getTicketsConsumed(), scenario.totalTickets, ROUND_TIMEOUT_MILLIS / 1000));
+                engine.cancel();
+            }
+            chaos.join(STOP_TIMEOUT_MILLIS);
+            for (Thread worker : workers) {
+                worker.join(STOP_TIMEOUT_MILLIS);
+                if (worker.isAlive()) {
+                    result.violations.add(worker.getName() + " did not stop after the run completed");
+                    worker.interrupt();
+                }
+            }
+
+            result.sold = engine.getTicketsConsumed();
+            result.interrupts = interrupts.sum();
+            result.timeouts = timeouts.sum();
+            checkInvariants(engine, scenario, result, listenerSales.get(), listenerVIPSales.get(),
+                    callerSales.sum(), duplicates.get(), firstDuplicate.get());
+        } finally {
+            for (int i = resources.size() - 1; i >= 0; i--) {
+                try {
+                    resources.get(i).close();
+                } catch (Exception e) {
+                    result.violations.add("could not release " + resources.get(i) + ": " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void checkInvariants(TicketEngine engine, Scenario scenario, RoundResult result, int listenerSales,
+                                        int listenerVIPSales, long callerSales, int duplicates, String firstDuplicate) {
+        int sold = engine.getTicketsConsumed();
+        int vipSold = engine.getVIPTicketsConsumed();
+        int produced = engine.getTicketsProduced();
+        List<String> violations = result.violations;
+        if (sold > scenario.totalTickets || listenerSales > scenario.totalTickets) {
+            violations.add(String.format("oversold: engine counts %d, listener saw %d, of %d tickets",
+                    sold, listenerSales, scenario.totalTickets));
+        }
+        if (duplicates > 0) {
+            violations.add(String.format("%d ticket IDs sold more than once, first %s", duplicates, firstDuplicate));
+        }
+        if (vipSold > engine.getMaxVIPTickets() || listenerVIPSales > engine.getMaxVIPTickets()) {
+            violations.add(String.format("VIP cap of %d exceeded: engine counts %d, listener saw %d",
+                    engine.getMaxVIPTickets(), vipSold, listenerVIPSales));
+        }
+        if (produced < sold) {
+            violations.add(String.format("sold %d but only produced %d", sold, produced));
+        }
+        if (listenerSales != sold || callerSales != sold || listenerVIPSales != vipSold) {
+            violations.add(String.format("sales miscounted: engine %d (VIP %d), listener %d (VIP %d), callers %d",
+                    sold, vipSold, listenerSales, listenerVIPSales, callerSales));
+        }
+        if (produced - sold != engine.getAvailableTickets()) {
+            violations.add(String.format("tickets lost: produced %d, sold %d, but %d available",
+                    produced, sold, engine.getAvailableTickets()));
+        }
+        if (engine.isRunComplete() && sold != scenario.totalTickets && violations.isEmpty()) {
+            violations.add(String.format("run completed with %d of %d sold", sold, scenario.totalTickets));
+        }
+    }
+
+    private static Thread worker(String name, long seed, WorkerBody body) {
+        Random random = new Random(seed);
+        // Shifts the interleaving from call to call: mostly straight on, sometimes a yield or a short pause
+        Runnable jitter = () -> {
+            int roll = random.nextInt(16);
+            if (roll == 0) {
+                Thread.yield();
+            } else if (roll == 1) {
+                LockSupport.parkNanos(random.nextInt(20_000));
+            }
+        };
+        Thread thread = new Thread(() -> body.run(jitter), "stress-" + name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private interface WorkerBody {
+        void run(Runnable jitter);
+    }
+
+    // Mean sales per second of the clean rounds recorded for each engine under this seed
+    private static Map<String, double[]> readBaselines(Path results, long seed) throws IOException {
+        Map<String, double[]> baselines = new LinkedHashMap<>();
+        if (!Files.exists(results)) {
+            return baselines;
+        }
+        for (String line : Files.readAllLines(results, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",");
+            if (fields.length != 11 || fields[0].equals("timestamp") || Long.parseLong(fields[2]) != seed
+                    || Integer.parseInt(fields[10]) != 0) {
+                continue;
+            }
+            double[] sum = baselines.computeIfAbsent(fields[1], engine -> new double[2]);
+            sum[0] += Double.parseDouble(fields[9]);
+            sum[1]++;
+        }
+        return baselines;
+    }
+
+    private static void appendResults(Path results, long seed, List<RoundResult> rounds) throws IOException {
+        boolean header = !Files.exists(results) || Files.size(results) == 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) {
+                writer.write(RESULTS_HEADER);
+                writer.newLine();
+            }
+            long now = System.currentTimeMillis();
+            for (RoundResult result : rounds) {
+                writer.write(String.format("%d,%s,%d,%d,%d,%d,%d,%d,%d,%.0f,%d", now, result.engine, seed, result.round,
+                        result.scenario.totalTickets, result.scenario.maxCapacity, result.scenario.threads(),
+                        result.interrupts, TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos), result.salesPerSecond(),
+                        result.violations.size()));
+                writer.newLine();
+            }
+        }
+    }
+
+    // Usage: EngineStressHarness [rounds] [seed] [resultsFile] [engine ...]
+    // Runs every registered engine (pool, pool-offheap, pool-shared) unless engines are named; exits with
+    // status 1 if any invariant was broken
+    public static void main(String[] args) throws IOException, InterruptedException {
+        POOL_LOGGER.setLevel(Level.WARNING);
+        SHARED_STORE_LOGGER.setLevel(Level.WARNING);
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        Path results = Paths.get(args.length > 2 ? args[2] : "engine_stress_results.csv");
+        List<String> engines = args.length > 3 ? Arrays.asList(args).subList(3, args.length) : new ArrayList<>(ENGINES.keySet());
+        for (String engine : engines) {
+            if (!ENGINES.containsKey(engine)) {
+                throw new IllegalArgumentException("Unknown engine " + engine + ", expected one of " + ENGINES.keySet());
+            }
+        }
+
+        Map<String, double[]> baselines = readBaselines(results, seed);
+        List<RoundResult> all = new ArrayList<>();
+        for (int round = 1; round <= rounds; round++) {
+            Scenario scenario = new Scenario(seed * 1_000_003L + round);
+            System.out.println(String.format("Round %d: %s", round, scenario));
+            for (String engine : engines) {
+                RoundResult result = runRound(engine, ENGINES.get(engine), round, scenario);
+                all.add(result);
+                System.out.println(String.format("  %-14s %,10.0f sales/s  %6d interrupts  %6d timeouts  %s",
+                        engine, result.salesPerSecond(), result.interrupts, result.timeouts,
+                        result.violations.isEmpty() ? "ok" : "FAILED " + result.violations));
+            }
+        }
+        appendResults(results, seed, all);
+
+        boolean failed = false;
+        System.out.println(String.format("%-14s %14s %14s %s", "engine", "mean sales/s", "recorded", "verdict"));
+        for (String engine : engines) {
+            double sum = 0;
+            int clean = 0;
+            int violations = 0;
+            for (RoundResult result : all) {
+                if (result.engine.equals(engine)) {
+                    violations += result.violations.size();
+                    if (result.violations.isEmpty()) {
+                        sum += result.salesPerSecond();
+                        clean++;
+                    }
+                }
+            }
+            double mean = clean == 0 ? 0 : sum / clean;
+            double[] baseline = baselines.get(engine);
+            double recorded = baseline == null ? 0 : baseline[0] / baseline[1];
+            String verdict = violations > 0 ? violations + " invariant violations"
+                    : recorded > 0 && mean < recorded * REGRESSION_RATIO ? String.format("REGRESSION, %.0f%% of recorded", 100 * mean / recorded)
+                    : "ok";
+            failed |= violations > 0;
+            System.out.println(String.format("%-14s %,14.0f %,14.0f %s", engine, mean, recorded, verdict));
+        }
+        System.out.println("Results appended to " + results.toAbsolutePath());
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}